@@ -0,0 +1,64 @@
+package com.ai.ollama.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Deterministic synthetic corpora and vectors so runs are comparable across commits
+public final class SyntheticData {
+
+    private static final String[] SYLLABLES = {
+            "au", "dit", "fin", "ance", "doc", "u", "ment", "ver", "i", "fy", "stor", "age", "search",
+            "fil", "ter", "pro", "cess", "da", "ta", "base", "on", "line", "staff", "re", "port", "ing"
+    };
+
+    private static final String[] PUNCT = {"", "", "", ",", ".", ";", ":", "(", ")", "\"", "-"};
+
+    private SyntheticData() {}
+
+    // Vocabulary of pseudo-words; Zipf-like sampling keeps the distribution realistic
+    public static String[] vocabulary(int size, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        String[] words = new String[size];
+        for (int i = 0; i < size; i++) {
+            StringBuilder sb = new StringBuilder();
+            int parts = 1 + rnd.nextInt(4);
+            for (int p = 0; p < parts; p++) {
+                sb.append(SYLLABLES[rnd.nextInt(SYLLABLES.length)]);
+            }
+            words[i] = sb.toString();
+        }
+        return words;
+    }
+
+    public static List<String> lines(int count, int wordsPerLine, String[] vocabulary, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int w = 0; w < wordsPerLine; w++) {
+                if (w > 0) sb.append(' ');
+                String word = vocabulary[zipf(rnd, vocabulary.length)];
+                sb.append(rnd.nextInt(8) == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+                sb.append(PUNCT[rnd.nextInt(PUNCT.length)]);
+            }
+            lines.add(sb.toString());
+        }
+        return lines;
+    }
+
+    public static double[] vector(int dims, SplittableRandom rnd) {
+        double[] v = new double[dims];
+        for (int i = 0; i < dims; i++) {
+            v[i] = rnd.nextDouble(-1.0, 1.0);
+        }
+        return v;
+    }
+
+    private static int zipf(SplittableRandom rnd, int n) {
+        // Inverse of a 1/x density: small indexes are picked far more often
+        double u = rnd.nextDouble();
+        int idx = (int) Math.floor(Math.pow(n + 1.0, u)) - 1;
+        return Math.min(Math.max(idx, 0), n - 1);
+    }
+}
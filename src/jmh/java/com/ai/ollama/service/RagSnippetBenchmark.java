@@ -0,0 +1,68 @@
+package com.ai.ollama.service;
+
+import com.ai.ollama.benchmark.SyntheticData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class RagSnippetBenchmark {
+
+    // Search results for snippetsByDoc and document lines for lineSnippet
+    @Param({"10000", "100000", "1000000"})
+    int size;
+
+    private List<VectorIndex.SearchResult> results;
+    private List<String> lines;
+    private Set<Integer> hits;
+
+    @Setup
+    public void setup() {
+        SplittableRandom rnd = new SplittableRandom(7);
+        String[] vocab = SyntheticData.vocabulary(5_000, 7);
+        List<String> chunks = SyntheticData.lines(1_000, 60, vocab, 7);
+        results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int start = 1 + i * 15;
+            results.add(new VectorIndex.SearchResult("doc-" + rnd.nextInt(64), start, start + 19,
+                    chunks.get(i % chunks.size()), rnd.nextDouble()));
+        }
+        lines = SyntheticData.lines(size, 12, vocab, 11);
+        hits = new TreeSet<>();
+        for (int i = 0; i < 200; i++) {
+            hits.add(1 + rnd.nextInt(size));
+        }
+    }
+
+    @Benchmark
+    public Map<String, String> snippetsByDoc() {
+        return RagService.snippetsByDoc(results, 2);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String lineSnippet() {
+        return RagService.lineSnippet(lines, hits, 60);
+    }
+}
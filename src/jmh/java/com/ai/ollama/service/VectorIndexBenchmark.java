@@ -0,0 +1,66 @@
+package com.ai.ollama.service;
+
+import com.ai.ollama.benchmark.SyntheticData;
+import com.ai.ollama.utils.DocumentStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class VectorIndexBenchmark {
+
+    // Number of indexed chunks; 1M x 384 dims is ~3 GB of vectors
+    @Param({"10000", "100000", "1000000"})
+    int entries;
+
+    @Param({"384"})
+    int dims;
+
+    private VectorIndex index;
+    private double[] query;
+    private double[] other;
+
+    @Setup
+    public void setup() {
+        RagMetrics metrics = new RagMetrics(new SimpleMeterRegistry());
+        index = new VectorIndex(new EmbeddingRouter(new HuggingFaceEmbeddingClient(WebClient.builder()), null, metrics), metrics,
+                new DocumentStore(false), new ChunkerFactory("lines", 200, 400, 20, 5, 32));
+        SplittableRandom rnd = new SplittableRandom(42);
+        for (int i = 0; i < entries; i++) {
+            int start = 1 + i * 15;
+            index.add(new VectorIndex.Entry("doc-" + (i % 100), start, start + 19, i, SyntheticData.vector(dims, rnd)));
+        }
+        query = SyntheticData.vector(dims, rnd);
+        other = SyntheticData.vector(dims, rnd);
+    }
+
+    @Benchmark
+    public List<VectorIndex.SearchResult> searchTop8() {
+        return index.searchVector(query, 8);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double cosine() {
+        return VectorIndex.cosine(query, other);
+    }
+}
@@ -0,0 +1,111 @@
+package com.ai.ollama.utils;
+
+import com.ai.ollama.benchmark.SyntheticData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class DocumentTrieBenchmark {
+
+    // Distinct words in the trie
+    @Param({"10000", "100000", "1000000"})
+    int vocabulary;
+
+    private String[] words;
+    private DocumentTrie trie;
+    private String present;
+    private String misspelled;
+    private List<String> phrase;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        words = SyntheticData.vocabulary(vocabulary, 3);
+        for (int i = 0; i < words.length; i++) {
+            // Make every word unique so the vocabulary size is what the param says
+            words[i] = words[i] + toLetters(i);
+        }
+        trie = populated(words);
+        present = words[words.length / 2];
+        misspelled = present.substring(1) + "x";
+        // Word i lands in doc-(i % 32), so words 32 apart are adjacent tokens of the same document
+        int mid = words.length / 2;
+        phrase = List.of(words[mid], words[mid + 32], words[mid + 64]);
+    }
+
+    // Inserts go into a copy rebuilt every iteration, so the trie the search benchmarks read never changes and
+    // the "bench" postings start empty each iteration
+    @State(Scope.Thread)
+    public static class InsertState {
+        DocumentTrie trie;
+        int cursor;
+
+        @Setup(Level.Iteration)
+        public void reset(DocumentTrieBenchmark benchmark) {
+            trie = populated(benchmark.words);
+            cursor = 0;
+        }
+    }
+
+    @Benchmark
+    public void insert(InsertState state) {
+        String w = words[state.cursor++ % words.length];
+        state.trie.insert(w, "bench", state.cursor);
+    }
+
+    @Benchmark
+    public Map<String, List<Integer>> searchDocuments() {
+        return trie.searchDocuments(present);
+    }
+
+    @Benchmark
+    public Map<String, List<Integer>> searchPhrase() {
+        return trie.searchPhrase(phrase);
+    }
+
+    @Benchmark
+    public Map<String, List<Integer>> searchNear() {
+        return trie.searchNear(List.of(phrase.get(2), phrase.get(0), phrase.get(1)), 4);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Map<String, List<Integer>> fuzzySearch() {
+        return trie.fuzzySearch(misspelled);
+    }
+
+    private static DocumentTrie populated(String[] words) {
+        DocumentTrie trie = new DocumentTrie();
+        for (int i = 0; i < words.length; i++) {
+            trie.insert(words[i], "doc-" + (i % 32), 1 + i % 5_000);
+        }
+        return trie;
+    }
+
+    private static String toLetters(int n) {
+        StringBuilder sb = new StringBuilder();
+        do {
+            sb.append((char) ('a' + n % 26));
+            n /= 26;
+        } while (n > 0);
+        return sb.toString();
+    }
+}
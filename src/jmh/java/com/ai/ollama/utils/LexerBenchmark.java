@@ -0,0 +1,66 @@
+package com.ai.ollama.utils;
+
+import com.ai.ollama.benchmark.SyntheticData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class LexerBenchmark {
+
+    // Lines of ~12 words each (100k lines is a ~10 MB document)
+    @Param({"10000", "100000", "1000000"})
+    int lines;
+
+    private List<String> corpus;
+
+    @Setup
+    public void setup() {
+        corpus = SyntheticData.lines(lines, 12, SyntheticData.vocabulary(20_000, 5), 5);
+    }
+
+    @Benchmark
+    public void tokenize(Blackhole bh) {
+        for (String line : corpus) {
+            Lexer lex = new Lexer(line);
+            while (lex.hasNext()) {
+                bh.consume(lex.next());
+            }
+        }
+    }
+
+    @Benchmark
+    public void tokenizeInPlace(Blackhole bh) {
+        Lexer lex = new Lexer();
+        for (String line : corpus) {
+            lex.reset(line);
+            while (lex.advance()) {
+                bh.consume(lex.length());
+            }
+        }
+    }
+
+    @Benchmark
+    public DocumentSearch indexDocument() {
+        DocumentSearch ds = new DocumentSearch(new DocumentStore(false), 8);
+        ds.indexDocument("bench", corpus);
+        return ds;
+    }
+}
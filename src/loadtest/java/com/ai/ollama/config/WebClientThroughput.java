@@ -0,0 +1,123 @@
+package com.ai.ollama.config;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Embedding-call throughput of the previous WebClient setup (HttpClient.create() with timeouts only) versus the
+ * per-upstream pools from WebClientConfig, against StubOllamaServer (start it with -Dstub.gzip=true to see the
+ * effect of compression). Tuned settings come from -Dhttp.client.* system properties (application.properties is
+ * not read), e.g. -Dhttp.client.huggingface.compress=true -Dhttp.client.huggingface.max-connections=32.
+ *
+ * Options (system properties):
+ *   wc.target=http://localhost:11434/hf/stub-embedding   endpoint (Hugging Face feature extraction on the stub)
+ *   wc.concurrency=64                                     requests in flight
+ *   wc.requests=5000                                      measured requests per variant (plus 10% warm-up)
+ *   wc.upstream=huggingface                               settings prefix for the tuned variant
+ */
+public class WebClientThroughput {
+
+    public static void main(String[] args) {
+        String target = System.getProperty("wc.target", "http://localhost:11434/hf/stub-embedding");
+        int concurrency = Integer.getInteger("wc.concurrency", 64);
+        int requests = Integer.getInteger("wc.requests", 5000);
+        String upstream = System.getProperty("wc.upstream", WebClientConfig.HUGGING_FACE);
+
+        Wire baselineWire = new Wire();
+        HttpClient baseline = baselineWire.attach(HttpClient.create());
+        run("baseline", WebClientConfig.newBuilder(baseline, 32).build(), target, concurrency, requests, baselineWire);
+
+        WebClientConfig.UpstreamSettings settings = WebClientConfig.UpstreamSettings.from(new StandardEnvironment(),
+                upstream, "HTTP11");
+        ConnectionProvider provider = WebClientConfig.connectionProvider(settings);
+        Wire tunedWire = new Wire();
+        HttpClient tuned = tunedWire.attach(WebClientConfig.httpClient(settings, provider));
+        System.out.printf(Locale.ROOT, "[WebClientThroughput] tuned: maxConnections=%d compress=%s protocols=%s%n",
+                settings.maxConnections(), settings.compress(), Arrays.toString(settings.protocols()));
+        run("tuned", WebClientConfig.newBuilder(tuned, 32).build(), target, concurrency, requests, tunedWire);
+        provider.disposeLater().block();
+    }
+
+    // Counts sockets opened and bytes received off the wire (before gzip inflation)
+    private static final class Wire {
+        final AtomicLong connections = new AtomicLong();
+        final AtomicLong bytesIn = new AtomicLong();
+
+        HttpClient attach(HttpClient client) {
+            return client.doOnChannelInit((observer, channel, address) -> {
+                connections.incrementAndGet();
+                channel.pipeline().addFirst(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        if (msg instanceof ByteBuf buf) bytesIn.addAndGet(buf.readableBytes());
+                        ctx.fireChannelRead(msg);
+                    }
+                });
+            });
+        }
+
+        void reset() {
+            connections.set(0);
+            bytesIn.set(0);
+        }
+    }
+
+    private static void run(String variant, WebClient client, String target, int concurrency, int requests,
+                            Wire wire) {
+        call(client, target, concurrency, Math.max(1, requests / 10), new ConcurrentLinkedQueue<>());
+        wire.reset();
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        long start = System.nanoTime();
+        long errors = call(client, target, concurrency, requests, latencies);
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        System.out.printf(Locale.ROOT,
+                "[WebClientThroughput] %-8s %.0f req/s  p50=%.1fms p99=%.1fms  errors=%d  new connections=%d  %.1f KB/response%n",
+                variant, sorted.length / seconds, percentile(sorted, 0.50), percentile(sorted, 0.99), errors,
+                wire.connections.get(), wire.bytesIn.get() / 1024.0 / Math.max(1, requests));
+    }
+
+    private static long call(WebClient client, String target, int concurrency, int requests,
+                             ConcurrentLinkedQueue<Long> latencies) {
+        AtomicLong errors = new AtomicLong();
+        Flux.range(0, requests)
+                .flatMap(i -> {
+                    long t0 = System.nanoTime();
+                    return client.post()
+                            .uri(target)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .bodyValue(Map.of("inputs", "text " + (i % 512)))
+                            .retrieve()
+                            .bodyToMono(List.class)
+                            .doOnSuccess(v -> latencies.add(System.nanoTime() - t0))
+                            .onErrorResume(ex -> {
+                                errors.incrementAndGet();
+                                return Mono.empty();
+                            });
+                }, concurrency)
+                .blockLast(Duration.ofMinutes(30));
+        return errors.get();
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.min(Math.max(idx, 0), sorted.length - 1)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,131 @@
+package com.ai.ollama.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Open-model load driver: requests arrive on a Poisson schedule at a fixed rate regardless of how fast the
+ * service answers, and latency is measured from the scheduled send time so queueing delay is not hidden
+ * (no coordinated omission).
+ *
+ * Options (system properties):
+ *   load.target=http://localhost:8080   service under test
+ *   load.endpoint=/api/chat             /api/chat or /api/chat/docs
+ *   load.rate=10                        arrivals per second
+ *   load.duration-s=60                  measured phase
+ *   load.warmup-s=10                    warm-up phase, not reported
+ *   load.timeout-s=600                  per-request timeout
+ *   load.body=...                       request JSON; defaults to a small body for the chosen endpoint
+ */
+public class LoadDriver {
+
+    public static void main(String[] args) throws Exception {
+        String target = System.getProperty("load.target", "http://localhost:8080");
+        String endpoint = System.getProperty("load.endpoint", "/api/chat");
+        double rate = Double.parseDouble(System.getProperty("load.rate", "10"));
+        int durationS = Integer.getInteger("load.duration-s", 60);
+        int warmupS = Integer.getInteger("load.warmup-s", 10);
+        int timeoutS = Integer.getInteger("load.timeout-s", 600);
+        String body = System.getProperty("load.body", defaultBody(endpoint));
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(target + endpoint))
+                .timeout(Duration.ofSeconds(timeoutS))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        System.out.printf(Locale.ROOT, "[LoadDriver] %s%s rate=%.1f/s warmup=%ds duration=%ds%n",
+                target, endpoint, rate, warmupS, durationS);
+        run(client, request, rate, warmupS, "warmup");
+        Result result = run(client, request, rate, durationS, "measured");
+        result.print();
+    }
+
+    static Result run(HttpClient client, HttpRequest request, double rate, int seconds, String phase) {
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicLong errors = new AtomicLong();
+        ConcurrentLinkedQueue<CompletableFuture<?>> inFlight = new ConcurrentLinkedQueue<>();
+        long meanGapNanos = (long) (1_000_000_000L / rate);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long next = start;
+        long sent = 0;
+        while (next < end) {
+            long now = System.nanoTime();
+            if (now < next) {
+                LockSupport.parkNanos(next - now);
+                continue;
+            }
+            long intended = next;
+            sent++;
+            CompletableFuture<?> f = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((resp, ex) -> {
+                        if (ex != null || resp.statusCode() >= 400) {
+                            errors.incrementAndGet();
+                        } else {
+                            latencies.add(System.nanoTime() - intended);
+                        }
+                    });
+            inFlight.add(f);
+            inFlight.removeIf(CompletableFuture::isDone);
+            // Exponential inter-arrival times give a Poisson arrival process
+            double u = ThreadLocalRandom.current().nextDouble();
+            next += (long) (-Math.log(1.0 - u) * meanGapNanos);
+        }
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).exceptionally(ex -> null).join();
+        long elapsed = System.nanoTime() - start;
+        return new Result(phase, sent, errors.get(), latencies.stream().mapToLong(Long::longValue).toArray(), elapsed);
+    }
+
+    private static String defaultBody(String endpoint) {
+        if (endpoint.endsWith("/docs")) {
+            return "{\"prompt\":\"Summarize the auditing problem and the proposed solution.\"}";
+        }
+        return "{\"messages\":[{\"role\":\"user\",\"content\":\"Say hello in one short sentence.\"}]}";
+    }
+
+    static class Result {
+        final String phase;
+        final long sent;
+        final long errors;
+        final long[] latenciesNanos;
+        final long elapsedNanos;
+
+        Result(String phase, long sent, long errors, long[] latenciesNanos, long elapsedNanos) {
+            this.phase = phase;
+            this.sent = sent;
+            this.errors = errors;
+            this.latenciesNanos = latenciesNanos;
+            this.elapsedNanos = elapsedNanos;
+            Arrays.sort(this.latenciesNanos);
+        }
+
+        double percentileMs(double p) {
+            if (latenciesNanos.length == 0) return 0;
+            int idx = (int) Math.ceil(p * latenciesNanos.length) - 1;
+            return latenciesNanos[Math.min(Math.max(idx, 0), latenciesNanos.length - 1)] / 1_000_000.0;
+        }
+
+        void print() {
+            double seconds = elapsedNanos / 1_000_000_000.0;
+            System.out.printf(Locale.ROOT, "[LoadDriver] %s: sent=%d ok=%d errors=%d throughput=%.2f req/s%n",
+                    phase, sent, latenciesNanos.length, errors, latenciesNanos.length / seconds);
+            System.out.printf(Locale.ROOT, "[LoadDriver] latency ms: p50=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                    percentileMs(0.50), percentileMs(0.99), percentileMs(0.999), percentileMs(1.0));
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.ai.ollama.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * Fake Ollama + Hugging Face feature-extraction server for load tests.
+ *
+ * Ollama:       POST /api/chat, /api/generate, /api/embeddings, /api/embed, GET /api/ps
+ * Hugging Face: POST /hf/** (point huggingface.api.base-url at http://host:port/hf)
+ *
+ * Options (system properties):
+ *   stub.port=11434             listen port
+ *   stub.latency-ms=50          fixed latency before the first byte of every response
+ *   stub.jitter-ms=20           uniform extra latency on top of latency-ms
+ *   stub.tokens-per-sec=30      generation speed for chat/generate (0 = instant)
+ *   stub.response-tokens=64     tokens produced per chat response
+ *   stub.embed-latency-ms=15    latency of embedding endpoints
+ *   stub.dims=384               embedding dimensions
+ *   stub.error-rate=0.0         fraction of requests answered with HTTP 500
+ *   stub.gzip=false             gzip JSON responses when the client sends Accept-Encoding: gzip
+ *   stub.prefill-tokens-per-sec=0  prompt evaluation speed for chat/generate (0 = free, no slots)
+ *   stub.slots=4                number of parallel slots (OLLAMA_NUM_PARALLEL) when prefill is simulated
+ *
+ * With prefill simulated, each slot remembers the last prompt it evaluated and a request takes the free slot
+ * holding the longest common prefix, as Ollama's runner does: only the tokens after that prefix cost prefill time,
+ * and prompt_eval_count / prompt_eval_duration report just those (tokens estimated as chars / 4).
+ *
+ * On shutdown it prints request, error and distinct client connection counts (connection churn), and the share of
+ * prompt tokens served from slot caches.
+ */
+public class StubOllamaServer {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final boolean GZIP = Boolean.getBoolean("stub.gzip");
+
+    private final int port = Integer.getInteger("stub.port", 11434);
+    private final long latencyMs = Long.getLong("stub.latency-ms", 50);
+    private final long jitterMs = Long.getLong("stub.jitter-ms", 20);
+    private final double tokensPerSec = Double.parseDouble(System.getProperty("stub.tokens-per-sec", "30"));
+    private final int responseTokens = Integer.getInteger("stub.response-tokens", 64);
+    private final long embedLatencyMs = Long.getLong("stub.embed-latency-ms", 15);
+    private final int dims = Integer.getInteger("stub.dims", 384);
+    private final double errorRate = Double.parseDouble(System.getProperty("stub.error-rate", "0.0"));
+    private final double prefillTokensPerSec = Double.parseDouble(System.getProperty("stub.prefill-tokens-per-sec", "0"));
+
+    private final String[] slotPrompts = new String[Math.max(1, Integer.getInteger("stub.slots", 4))];
+    private final boolean[] slotBusy = new boolean[slotPrompts.length];
+    private final long[] slotUsed = new long[slotPrompts.length];
+    private long slotClock;
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong cachedTokens = new AtomicLong();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final Set<String> connections = ConcurrentHashMap.newKeySet();
+
+    public static void main(String[] args) throws IOException {
+        new StubOllamaServer().start();
+    }
+
+    public void start() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/api/chat", ex -> handle(ex, this::chat));
+        server.createContext("/api/generate", ex -> handle(ex, this::generate));
+        server.createContext("/api/embeddings", ex -> handle(ex, this::embeddings));
+        server.createContext("/api/embed", ex -> handle(ex, this::embed));
+        server.createContext("/api/ps", ex -> handle(ex, this::ps));
+        server.createContext("/hf", ex -> handle(ex, this::featureExtraction));
+        server.start();
+        System.out.printf("[StubOllamaServer] Listening on :%d latency=%d+%dms tokens/s=%.1f errorRate=%.3f dims=%d gzip=%s prefill=%.0f tokens/s slots=%d%n",
+                port, latencyMs, jitterMs, tokensPerSec, errorRate, dims, GZIP, prefillTokensPerSec, slotPrompts.length);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.printf(
+                "[StubOllamaServer] requests=%d errors=%d connections=%d promptTokens=%d cachedTokens=%d%n",
+                getRequests(), getErrors(), getConnections(), promptTokens.get(), cachedTokens.get())));
+    }
+
+    private interface Handler {
+        void handle(HttpExchange ex, Map<String, Object> body) throws Exception;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handle(HttpExchange ex, Handler handler) throws IOException {
+        requests.incrementAndGet();
+        connections.add(ex.getRemoteAddress().toString());
+        try {
+            byte[] raw = ex.getRequestBody().readAllBytes();
+            Map<String, Object> body = raw.length == 0 ? Map.of() : MAPPER.readValue(raw, Map.class);
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                sleep(latencyMs);
+                send(ex, 500, Map.of("error", "stub injected failure"));
+                return;
+            }
+            handler.handle(ex, body);
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            System.err.println("[StubOllamaServer] " + ex.getRequestURI() + " failed: " + e);
+        } finally {
+            ex.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void chat(HttpExchange ex, Map<String, Object> body) throws Exception {
+        String model = String.valueOf(body.getOrDefault("model", "stub"));
+        // Rendered roughly like a chat template, so the prefix of two calls matches as far as their messages do
+        StringBuilder prompt = new StringBuilder();
+        if (body.get("messages") instanceof List<?> messages) {
+            for (Object m : messages) {
+                if (m instanceof Map<?, ?> msg && msg.get("content") instanceof String c) {
+                    prompt.append("<|").append(msg.get("role")).append("|>\n").append(c).append('\n');
+                }
+            }
+        }
+        generateTokens(ex, body, model, prompt.toString(), true);
+    }
+
+    private void generate(HttpExchange ex, Map<String, Object> body) throws Exception {
+        String model = String.valueOf(body.getOrDefault("model", "stub"));
+        Object prompt = body.get("prompt");
+        if (prompt == null) {
+            // Load-only request (keep-alive ping)
+            send(ex, 200, Map.of("model", model, "created_at", Instant.now().toString(), "response", "", "done", true));
+            return;
+        }
+        generateTokens(ex, body, model, String.valueOf(prompt), false);
+    }
+
+    private void generateTokens(HttpExchange ex, Map<String, Object> body, String model, String prompt, boolean chat) throws Exception {
+        sleep(latencyMs + jitter());
+        if (prefillTokensPerSec <= 0) {
+            generateTokens(ex, body, model, Math.max(1, prompt.length() / 4), 0, chat);
+            return;
+        }
+        String key = model + '\u0000' + prompt;
+        int[] cachedChars = new int[1];
+        int slot = acquireSlot(key, cachedChars);
+        try {
+            int total = Math.max(1, key.length() / 4);
+            int evaluated = Math.max(1, total - cachedChars[0] / 4);
+            promptTokens.addAndGet(total);
+            cachedTokens.addAndGet(total - evaluated);
+            long prefillNanos = (long) (evaluated * 1_000_000_000L / prefillTokensPerSec);
+            sleepNanos(prefillNanos);
+            generateTokens(ex, body, model, evaluated, prefillNanos, chat);
+        } finally {
+            releaseSlot(slot, key);
+        }
+    }
+
+    // Free slot with the longest common prefix; ties go to the least recently used one
+    private int acquireSlot(String key, int[] cachedChars) throws InterruptedException {
+        synchronized (slotPrompts) {
+            while (true) {
+                int best = -1;
+                int bestPrefix = -1;
+                for (int i = 0; i < slotPrompts.length; i++) {
+                    if (slotBusy[i]) continue;
+                    int prefix = commonPrefix(slotPrompts[i], key);
+                    if (prefix > bestPrefix || (prefix == bestPrefix && slotUsed[i] < slotUsed[best])) {
+                        best = i;
+                        bestPrefix = prefix;
+                    }
+                }
+                if (best >= 0) {
+                    slotBusy[best] = true;
+                    cachedChars[0] = bestPrefix;
+                    return best;
+                }
+                slotPrompts.wait();
+            }
+        }
+    }
+
+    private void releaseSlot(int slot, String key) {
+        synchronized (slotPrompts) {
+            slotPrompts[slot] = key;
+            slotBusy[slot] = false;
+            slotUsed[slot] = ++slotClock;
+            slotPrompts.notifyAll();
+        }
+    }
+
+    private static int commonPrefix(String a, String b) {
+        if (a == null) return 0;
+        int n = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < n && a.charAt(i) == b.charAt(i)) i++;
+        return i;
+    }
+
+    private void generateTokens(HttpExchange ex, Map<String, Object> body, String model, int promptEvalCount,
+                                long prefillNanos, boolean chat) throws Exception {
+        boolean stream = !Boolean.FALSE.equals(body.get("stream"));
+        long perTokenNanos = tokensPerSec <= 0 ? 0 : (long) (1_000_000_000L / tokensPerSec);
+        long start = System.nanoTime();
+        if (!stream) {
+            sleepNanos(perTokenNanos * responseTokens);
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < responseTokens; i++) text.append(token(i));
+            send(ex, 200, finalChunk(model, text.toString(), promptEvalCount, prefillNanos, System.nanoTime() - start, chat));
+            return;
+        }
+        ex.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+        ex.sendResponseHeaders(200, 0);
+        OutputStream out = ex.getResponseBody();
+        for (int i = 0; i < responseTokens; i++) {
+            sleepNanos(perTokenNanos);
+            Map<String, Object> chunk = new LinkedHashMap<>();
+            chunk.put("model", model);
+            chunk.put("created_at", Instant.now().toString());
+            if (chat) {
+                chunk.put("message", Map.of("role", "assistant", "content", token(i)));
+            } else {
+                chunk.put("response", token(i));
+            }
+            chunk.put("done", false);
+            writeLine(out, chunk);
+        }
+        writeLine(out, finalChunk(model, "", promptEvalCount, prefillNanos, System.nanoTime() - start, chat));
+    }
+
+    private Map<String, Object> finalChunk(String model, String text, int promptEvalCount, long prefillNanos,
+                                           long evalNanos, boolean chat) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("model", model);
+        m.put("created_at", Instant.now().toString());
+        if (chat) {
+            m.put("message", Map.of("role", "assistant", "content", text));
+        } else {
+            m.put("response", text);
+        }
+        m.put("done", true);
+        m.put("done_reason", "stop");
+        m.put("total_duration", prefillNanos + evalNanos);
+        m.put("load_duration", 0);
+        m.put("prompt_eval_count", promptEvalCount);
+        m.put("prompt_eval_duration", prefillNanos);
+        m.put("eval_count", responseTokens);
+        m.put("eval_duration", evalNanos);
+        return m;
+    }
+
+    private void embeddings(HttpExchange ex, Map<String, Object> body) throws Exception {
+        sleep(embedLatencyMs);
+        send(ex, 200, Map.of("embedding", vector(String.valueOf(body.get("prompt")))));
+    }
+
+    private void embed(HttpExchange ex, Map<String, Object> body) throws Exception {
+        sleep(embedLatencyMs);
+        List<List<Double>> out = new ArrayList<>();
+        Object input = body.get("input");
+        if (input instanceof List<?> list) {
+            for (Object o : list) out.add(vector(String.valueOf(o)));
+        } else {
+            out.add(vector(String.valueOf(input)));
+        }
+        send(ex, 200, Map.of("model", String.valueOf(body.get("model")), "embeddings", out));
+    }
+
+    private void featureExtraction(HttpExchange ex, Map<String, Object> body) throws Exception {
+        sleep(embedLatencyMs);
+        Object inputs = body.get("inputs");
+        if (inputs instanceof List<?> list) {
+            List<List<Double>> out = new ArrayList<>();
+            for (Object o : list) out.add(vector(String.valueOf(o)));
+            send(ex, 200, out);
+        } else {
+            send(ex, 200, vector(String.valueOf(inputs)));
+        }
+    }
+
+    private void ps(HttpExchange ex, Map<String, Object> body) throws Exception {
+        send(ex, 200, Map.of("models", List.of()));
+    }
+
+    // Same text always maps to the same vector so retrieval is stable between runs
+    private List<Double> vector(String text) {
+        SplittableRandom rnd = new SplittableRandom(text.hashCode());
+        List<Double> v = new ArrayList<>(dims);
+        for (int i = 0; i < dims; i++) v.add(rnd.nextDouble(-1.0, 1.0));
+        return v;
+    }
+
+    private static String token(int i) {
+        return i == 0 ? "stub" : " tok" + i;
+    }
+
+    private long jitter() {
+        return jitterMs <= 0 ? 0 : ThreadLocalRandom.current().nextLong(jitterMs + 1);
+    }
+
+    private static void send(HttpExchange ex, int status, Object body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        String accept = ex.getRequestHeaders().getFirst("Accept-Encoding");
+        if (GZIP && accept != null && accept.contains("gzip")) {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(bytes.length / 2);
+            try (GZIPOutputStream gz = new GZIPOutputStream(buf)) {
+                gz.write(bytes);
+            }
+            bytes = buf.toByteArray();
+            ex.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        ex.sendResponseHeaders(status, bytes.length);
+        ex.getResponseBody().write(bytes);
+    }
+
+    private static void writeLine(OutputStream out, Object chunk) throws IOException {
+        out.write(MAPPER.writeValueAsBytes(chunk));
+        out.write('\n');
+        out.flush();
+    }
+
+    private static void sleep(long ms) throws InterruptedException {
+        if (ms > 0) Thread.sleep(ms);
+    }
+
+    private static void sleepNanos(long nanos) throws InterruptedException {
+        if (nanos > 0) Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public int getConnections() {
+        return connections.size();
+    }
+}
@@ -0,0 +1,143 @@
+package com.ai.ollama.service;
+
+import com.ai.ollama.utils.DocumentStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/*
+ * Compares chunking strategies on a docs directory: index size and retrieval hit rate.
+ *
+ * Probes are generated from the corpus itself: a run of consecutive words from a random line is the query and
+ * the line it came from is the expected hit. Vectors come from a hashed bag-of-words embedding so the run is
+ * offline and deterministic; absolute hit rates are lower than with a neural model but the ranking between
+ * strategies is what this is for.
+ *
+ * Options (system properties):
+ *   eval.docs=src/main/resources/docs  directory to index (recursively)
+ *   eval.probes=200                    number of probe queries
+ *   eval.target-tokens=200, eval.max-tokens=400
+ *
+ * Run: ./mvnw -P loadtest test-compile exec:exec -Dloadtest.main=com.ai.ollama.service.ChunkingEvaluation
+ */
+public class ChunkingEvaluation {
+
+    private static final int DIMS = 512;
+    private static final int[] K = {1, 3, 8};
+
+    record Probe(String doc, int line, String query) {}
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(System.getProperty("eval.docs", "src/main/resources/docs"));
+        int probeCount = Integer.getInteger("eval.probes", 200);
+        int target = Integer.getInteger("eval.target-tokens", 200);
+        int max = Integer.getInteger("eval.max-tokens", 400);
+
+        Map<String, List<String>> docs = load(root);
+        List<Probe> probes = probes(docs, probeCount, new SplittableRandom(17));
+        System.out.printf(Locale.ROOT, "[ChunkingEvaluation] %d documents, %d probes, target=%d max=%d tokens%n",
+                docs.size(), probes.size(), target, max);
+        System.out.printf(Locale.ROOT, "%-10s %8s %10s %12s %10s %7s %7s %7s %7s%n",
+                "strategy", "chunks", "avgLines", "embedChars", "vectorKB", "hit@1", "hit@3", "hit@8", "MRR");
+
+        for (String strategy : ChunkerFactory.STRATEGIES) {
+            HashingEmbedder embedder = new HashingEmbedder();
+            RagMetrics metrics = new RagMetrics(new SimpleMeterRegistry());
+            VectorIndex index = new VectorIndex(new EmbeddingRouter(embedder, null, metrics), metrics,
+                    new DocumentStore(false), new ChunkerFactory(strategy, target, max, 20, 5, 32));
+            for (Map.Entry<String, List<String>> d : docs.entrySet()) {
+                index.indexDocument(d.getKey(), d.getValue());
+            }
+            long indexedChars = embedder.chars.get();
+
+            int[] hits = new int[K.length];
+            double rr = 0;
+            long lines = 0;
+            for (Probe p : probes) {
+                List<VectorIndex.SearchResult> results = index.search(p.query(), K[K.length - 1]);
+                for (int rank = 0; rank < results.size(); rank++) {
+                    VectorIndex.SearchResult r = results.get(rank);
+                    if (r.docName.equals(p.doc()) && r.startLine <= p.line() && p.line() <= r.endLine) {
+                        for (int k = 0; k < K.length; k++) {
+                            if (rank < K[k]) hits[k]++;
+                        }
+                        rr += 1.0 / (rank + 1);
+                        break;
+                    }
+                }
+            }
+            for (VectorIndex.SearchResult r : index.searchVector(new double[DIMS], Integer.MAX_VALUE)) {
+                lines += r.endLine - r.startLine + 1;
+            }
+            int n = Math.max(1, probes.size());
+            System.out.printf(Locale.ROOT, "%-10s %8d %10.1f %12d %10d %7.3f %7.3f %7.3f %7.3f%n",
+                    strategy, index.size(), index.size() == 0 ? 0.0 : (double) lines / index.size(), indexedChars,
+                    (long) index.size() * DIMS * Double.BYTES / 1024,
+                    hits[0] / (double) n, hits[1] / (double) n, hits[2] / (double) n, rr / n);
+        }
+    }
+
+    private static Map<String, List<String>> load(Path root) throws IOException {
+        Map<String, List<String>> docs = new LinkedHashMap<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) paths.filter(Files::isRegularFile).sorted()::iterator) {
+                docs.put(root.relativize(p).toString(), Files.readAllLines(p, StandardCharsets.UTF_8));
+            }
+        }
+        return docs;
+    }
+
+    private static List<Probe> probes(Map<String, List<String>> docs, int count, SplittableRandom rnd) {
+        List<Probe> candidates = new ArrayList<>();
+        for (Map.Entry<String, List<String>> d : docs.entrySet()) {
+            List<String> lines = d.getValue();
+            for (int i = 0; i < lines.size(); i++) {
+                String[] words = lines.get(i).trim().split("\\s+");
+                if (words.length < 8) continue;
+                int from = rnd.nextInt(words.length - 5);
+                candidates.add(new Probe(d.getKey(), i + 1, String.join(" ", List.of(words).subList(from, from + 6))));
+            }
+        }
+        List<Probe> out = new ArrayList<>();
+        while (!candidates.isEmpty() && out.size() < count) {
+            out.add(candidates.remove(rnd.nextInt(candidates.size())));
+        }
+        return out;
+    }
+
+    // Signed feature hashing of lowercase word unigrams; stands in for the HF endpoint
+    static class HashingEmbedder extends HuggingFaceEmbeddingClient {
+        final AtomicLong chars = new AtomicLong();
+
+        HashingEmbedder() {
+            super(WebClient.builder());
+        }
+
+        @Override
+        public List<Double> embed(String text) {
+            chars.addAndGet(text.length());
+            double[] v = new double[DIMS];
+            for (String tok : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (tok.length() < 2 || tok.equals("line")) continue;
+                int h = tok.hashCode();
+                v[Math.floorMod(h, DIMS)] += (h & 0x40000000) == 0 ? 1.0 : -1.0;
+            }
+            List<Double> out = new ArrayList<>(DIMS);
+            for (double d : v) out.add(d);
+            return out;
+        }
+    }
+}
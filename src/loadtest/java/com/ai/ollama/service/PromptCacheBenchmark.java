@@ -0,0 +1,174 @@
+package com.ai.ollama.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Prefill cost of the RAG prompt layouts against StubOllamaServer with prefix caching simulated
+ * (-Dstub.prefill-tokens-per-sec=500 -Dstub.slots=4). Each simulated RAG request makes the keyword call and one
+ * summarization call per retrieved chunk; chunks come from a fixed pool with a skewed popularity, so some are
+ * retrieved again by later questions. "previous" is the layout before this benchmark (question before document,
+ * instructions after the variable parts), "stable" the one RagService uses now.
+ *
+ * Options (system properties):
+ *   pc.target=http://localhost:11434   stub base URL
+ *   pc.requests=150                    simulated RAG requests per layout
+ *   pc.docs-per-request=3              summarization calls per request
+ *   pc.chunks=40                       size of the chunk pool
+ *   pc.concurrency=4                   requests in flight (match stub.slots to model OLLAMA_NUM_PARALLEL)
+ *
+ * Run: ./mvnw -P loadtest test-compile exec:exec -Dloadtest.main=com.ai.ollama.service.PromptCacheBenchmark
+ */
+public class PromptCacheBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String[] TOPICS = {"audit", "invoice", "retention", "approval", "access", "backup",
+            "vendor", "budget", "compliance", "migration", "search", "archive"};
+
+    private static final String PREVIOUS_KEYWORD_SYSTEM = "You extract 3-8 concise search keywords from a user's request strictly as a single comma-separated line. No explanations.";
+    private static final String PREVIOUS_SUMMARY_SYSTEM = "You are a helpful assistant. Summarize only using the provided document lines. Cite line numbers inline when relevant. Be concise.";
+
+    interface Layout {
+        List<Map<String, String>> keyword(String question);
+
+        List<Map<String, String>> summary(String question, String doc, String snippet);
+    }
+
+    static final Layout PREVIOUS = new Layout() {
+        public List<Map<String, String>> keyword(String question) {
+            return messages(PREVIOUS_KEYWORD_SYSTEM, "User request: " + question + "\nReturn only keywords, comma-separated.");
+        }
+
+        public List<Map<String, String>> summary(String question, String doc, String snippet) {
+            return messages(PREVIOUS_SUMMARY_SYSTEM, "User request: " + question + "\nDocument: " + doc
+                    + "\nRelevant lines (do not hallucinate beyond these):\n```\n" + snippet
+                    + "```\nProvide a short summary that answers the user's request using only this content.");
+        }
+    };
+
+    static final Layout STABLE = new Layout() {
+        public List<Map<String, String>> keyword(String question) {
+            return messages(RagService.KEYWORD_SYSTEM, RagService.keywordUserPrompt(question));
+        }
+
+        public List<Map<String, String>> summary(String question, String doc, String snippet) {
+            return messages(RagService.SUMMARY_SYSTEM, RagService.summaryUserPrompt(question, doc, snippet));
+        }
+    };
+
+    record Chunk(String doc, String snippet) {}
+
+    public static void main(String[] args) throws Exception {
+        String target = System.getProperty("pc.target", "http://localhost:11434");
+        int requests = Integer.getInteger("pc.requests", 150);
+        int docsPerRequest = Integer.getInteger("pc.docs-per-request", 3);
+        int chunkCount = Integer.getInteger("pc.chunks", 40);
+        int concurrency = Integer.getInteger("pc.concurrency", 4);
+
+        List<Chunk> chunks = chunks(chunkCount);
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        try {
+            run("previous", PREVIOUS, target, requests, docsPerRequest, chunks, http, pool);
+            run("stable", STABLE, target, requests, docsPerRequest, chunks, http, pool);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void run(String name, Layout layout, String target, int requests, int docsPerRequest,
+                            List<Chunk> chunks, HttpClient http, ExecutorService pool) throws Exception {
+        AtomicLong calls = new AtomicLong();
+        AtomicLong evaluated = new AtomicLong();
+        AtomicLong prefillNanos = new AtomicLong();
+        // Same seed for both layouts: identical questions and retrieved chunks
+        SplittableRandom rnd = new SplittableRandom(42);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int r = 0; r < requests; r++) {
+            String question = question(rnd);
+            List<Chunk> retrieved = new ArrayList<>();
+            for (int d = 0; d < docsPerRequest; d++) retrieved.add(chunks.get(zipf(rnd, chunks.size())));
+            futures.add(pool.submit(() -> {
+                List<List<Map<String, String>>> prompts = new ArrayList<>();
+                prompts.add(layout.keyword(question));
+                for (Chunk c : retrieved) prompts.add(layout.summary(question, c.doc(), c.snippet()));
+                for (List<Map<String, String>> messages : prompts) {
+                    Map<?, ?> response = chat(http, target, messages);
+                    calls.incrementAndGet();
+                    evaluated.addAndGet(((Number) response.get("prompt_eval_count")).longValue());
+                    prefillNanos.addAndGet(((Number) response.get("prompt_eval_duration")).longValue());
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : futures) f.get();
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        System.out.printf(Locale.ROOT,
+                "[PromptCacheBenchmark] %-8s calls=%d  evaluated tokens/call=%.0f  prefill/call=%.1fms  wall=%.1fs%n",
+                name, calls.get(), evaluated.get() / (double) calls.get(),
+                prefillNanos.get() / 1_000_000.0 / calls.get(), seconds);
+    }
+
+    private static Map<?, ?> chat(HttpClient http, String target, List<Map<String, String>> messages) throws Exception {
+        byte[] body = MAPPER.writeValueAsBytes(Map.of("model", "stub", "stream", false, "messages", messages));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(target + "/api/chat"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) throw new IllegalStateException("HTTP " + response.statusCode());
+        return MAPPER.readValue(response.body(), Map.class);
+    }
+
+    private static List<Map<String, String>> messages(String system, String user) {
+        return List.of(Map.of("role", "system", "content", system), Map.of("role", "user", "content", user));
+    }
+
+    private static List<Chunk> chunks(int count) {
+        SplittableRandom rnd = new SplittableRandom(7);
+        List<Chunk> chunks = new ArrayList<>();
+        for (int c = 0; c < count; c++) {
+            StringBuilder snippet = new StringBuilder();
+            int firstLine = 1 + rnd.nextInt(400);
+            for (int l = 0; l < 12; l++) {
+                snippet.append(firstLine + l).append(": ");
+                for (int w = 0; w < 14; w++) snippet.append(TOPICS[rnd.nextInt(TOPICS.length)]).append(w % 5 == 4 ? ". " : " ");
+                snippet.append('\n');
+            }
+            chunks.add(new Chunk("policy-" + (c % 12) + ".md", snippet.toString()));
+        }
+        return chunks;
+    }
+
+    private static String question(SplittableRandom rnd) {
+        return "What does the policy say about " + TOPICS[rnd.nextInt(TOPICS.length)] + " and "
+                + TOPICS[rnd.nextInt(TOPICS.length)] + " for request " + rnd.nextInt(10_000) + "?";
+    }
+
+    // Popularity rank ~ 1/(rank+1): a handful of chunks answer most questions
+    private static int zipf(SplittableRandom rnd, int n) {
+        double norm = 0;
+        for (int i = 1; i <= n; i++) norm += 1.0 / i;
+        double u = rnd.nextDouble() * norm;
+        for (int i = 1; i <= n; i++) {
+            u -= 1.0 / i;
+            if (u <= 0) return i - 1;
+        }
+        return n - 1;
+    }
+}
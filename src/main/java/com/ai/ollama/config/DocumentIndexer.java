@@ -1,58 +1,177 @@
 package com.ai.ollama.config;
 
+import com.ai.ollama.service.DocumentIngestor;
+import com.ai.ollama.service.IndexSnapshot;
 import com.ai.ollama.service.VectorIndex;
-import com.ai.ollama.utils.DocumentSearch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
 
+// Indexes the packaged docs before DocumentWatcher indexes docs.watch.root; readiness waits for both
 @Component
+@Order(1)
 public class DocumentIndexer implements ApplicationRunner {
 
     private static final Logger log = LoggerFactory.getLogger(DocumentIndexer.class);
 
-    private final DocumentSearch documentSearch;
+    private final DocumentIngestor documentIngestor;
+    private final IndexSnapshot indexSnapshot;
+    private final IndexReadiness indexReadiness;
     private final VectorIndex vectorIndex;
+    private final ResourceLoader resourceLoader;
 
-    public DocumentIndexer(DocumentSearch documentSearch, VectorIndex vectorIndex) {
-        this.documentSearch = documentSearch;
+    // Prebuilt indexes (see IndexSnapshotBuilder); used when they match the packaged docs and current settings
+    @Value("${index.snapshot.enabled:true}")
+    private boolean snapshotEnabled;
+
+    // A file: location is memory-mapped; the classpath default is read out of the jar
+    @Value("${index.snapshot.location:classpath:/index/index-snapshot.bin}")
+    private String snapshotLocation;
+
+    // When set, the indexes are written there once loaded (the build step)
+    @Value("${index.snapshot.write:}")
+    private String snapshotWrite;
+
+    public DocumentIndexer(DocumentIngestor documentIngestor, IndexSnapshot indexSnapshot, IndexReadiness indexReadiness,
+                           VectorIndex vectorIndex, ResourceLoader resourceLoader) {
+        this.documentIngestor = documentIngestor;
+        this.indexSnapshot = indexSnapshot;
+        this.indexReadiness = indexReadiness;
         this.vectorIndex = vectorIndex;
+        this.resourceLoader = resourceLoader;
     }
 
     @Override
     public void run(ApplicationArguments args) throws Exception {
+        long start = System.currentTimeMillis();
         PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
-        Resource[] resources = resolver.getResources("classpath:/docs/**");
-        int indexedFiles = 0;
-        for (Resource res : resources) {
-            if (!res.isReadable() || res.isFile() == false) {
-                // Still try to read if readable
+        Resource docsRoot = resolver.getResource("classpath:/docs/");
+        Map<String, Resource> resources = new TreeMap<>();
+        for (Resource res : resolver.getResources("classpath:/docs/**")) {
+            String name = documentName(docsRoot, res);
+            if (name != null) resources.put(name, res);
+        }
+        String fingerprint = fingerprint(resources);
+
+        IndexSnapshot.Loaded loaded = null;
+        if (snapshotEnabled) {
+            try {
+                loaded = indexSnapshot.load(resourceLoader.getResource(snapshotLocation), fingerprint);
+            } catch (Exception e) {
+                log.warn("[DocumentIndexer] Index snapshot {} unusable, indexing documents: {}", snapshotLocation, e.toString());
             }
-            if (res.getFilename() == null) continue;
-            // Skip directories by checking if it has an extension or is readable stream
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(res.getInputStream(), StandardCharsets.UTF_8))) {
-                List<String> lines = new ArrayList<>();
-                String line;
-                while ((line = br.readLine()) != null) {
-                    lines.add(line);
-                }
-                documentSearch.indexDocument(res.getFilename(), lines);
-                vectorIndex.indexDocument(res.getFilename(), lines);
+        }
+        int failedFiles = 0;
+        if (loaded != null) {
+            indexReadiness.packagedIndexed("snapshot", loaded.documents(), System.currentTimeMillis() - start);
+        } else {
+            int indexedFiles = index(resources);
+            failedFiles = resources.size() - indexedFiles;
+            indexReadiness.packagedIndexed("rebuilt", indexedFiles, System.currentTimeMillis() - start);
+        }
+        if (snapshotWrite != null && !snapshotWrite.isBlank()) {
+            // A snapshot missing documents or chunks would be served as complete; fail the build instead
+            if (failedFiles > 0 || vectorIndex.unembeddedChunks() > 0 || vectorIndex.size() == 0) {
+                throw new IllegalStateException("Not writing index snapshot: " + failedFiles + " documents failed, "
+                        + vectorIndex.unembeddedChunks() + " chunks failed to embed, " + vectorIndex.size() + " chunks indexed");
+            }
+            indexSnapshot.write(Paths.get(snapshotWrite), fingerprint);
+        }
+    }
+
+    private int index(Map<String, Resource> resources) {
+        int indexedFiles = 0;
+        for (Map.Entry<String, Resource> doc : resources.entrySet()) {
+            try {
+                ingest(doc.getKey(), doc.getValue());
                 indexedFiles++;
             } catch (Exception e) {
-                log.warn("[DocumentIndexer] Failed to index resource {}: {}", res.getFilename(), e.toString());
+                log.warn("[DocumentIndexer] Failed to index resource {}: {}", doc.getKey(), e.toString());
             }
         }
         log.info("[DocumentIndexer] Indexed {} documents from classpath:/docs/**", indexedFiles);
+        return indexedFiles;
+    }
+
+    // Indexes a packaged document again, e.g. once the watched file that replaced it is deleted; false if there is none
+    boolean reindexPackaged(String name) throws IOException {
+        Resource res = resourceLoader.getResource("classpath:/docs/" + name);
+        if (!res.exists()) return false;
+        ingest(name, res);
+        return true;
+    }
+
+    private void ingest(String name, Resource res) throws IOException {
+        if (res.isFile()) {
+            documentIngestor.ingestFile(name, res.getFile().toPath());
+        } else {
+            try (InputStream in = res.getInputStream()) {
+                documentIngestor.ingest(name, in);
+            }
+        }
+    }
+
+    // A packaged document is named by its path under classpath:/docs ("billing/refunds.md"), as files under
+    // docs.watch.root are, so subdirectories become collections there too. Null for directories
+    static String documentName(Resource docsRoot, Resource res) throws IOException {
+        if (res.isFile()) {
+            File file = res.getFile();
+            if (file.isDirectory()) return null;
+            if (docsRoot.isFile()) {
+                Path relative = docsRoot.getFile().toPath().toAbsolutePath().normalize()
+                        .relativize(file.toPath().toAbsolutePath().normalize());
+                if (!relative.startsWith("..")) return relative.toString().replace('\\', '/');
+            }
+            return file.getName();
+        }
+        // Inside a jar: the entry path after the last "!/", e.g. jar:file:app.jar!/BOOT-INF/classes!/docs/a.md
+        String url = res.getURL().toString();
+        if (url.endsWith("/")) return null;
+        if (!url.contains("!/")) return res.getFilename();
+        String entry = StringUtils.uriDecode(url.substring(url.lastIndexOf("!/") + 2), StandardCharsets.UTF_8);
+        return entry.startsWith("docs/") ? entry.substring("docs/".length()) : res.getFilename();
+    }
+
+    // Names and contents of the packaged docs, the same whether read from target/classes or from the jar; an edit
+    // that keeps a file's size still invalidates the snapshot
+    static String fingerprint(Map<String, Resource> resources) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] buffer = new byte[8192];
+        int files = 0;
+        for (Map.Entry<String, Resource> doc : resources.entrySet()) {
+            if (!doc.getValue().isReadable() || doc.getValue().contentLength() <= 0) continue;
+            digest.update((doc.getKey() + '\u0000').getBytes(StandardCharsets.UTF_8));
+            long length = 0;
+            try (InputStream in = doc.getValue().getInputStream()) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, n);
+                    length += n;
+                }
+            }
+            digest.update(('\u0000' + Long.toString(length) + '\n').getBytes(StandardCharsets.UTF_8));
+            files++;
+        }
+        return files + ":" + HexFormat.of().formatHex(digest.digest(), 0, 8);
     }
 }
@@ -0,0 +1,245 @@
+package com.ai.ollama.config;
+
+import com.ai.ollama.service.DocumentIngestor;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Optional filesystem docs root (docs.watch.root). Files are indexed at startup and then kept in sync:
+// changes are debounced, applied in batches, and unchanged files are skipped by content hash.
+// Runs after DocumentIndexer, so a watched file replaces the packaged document of the same name; deleting that
+// file brings the packaged document back.
+@Component
+@Order(2)
+public class DocumentWatcher implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentWatcher.class);
+
+    private final DocumentIngestor documentIngestor;
+    private final DocumentIndexer documentIndexer;
+    private final IndexReadiness indexReadiness;
+
+    @Value("${docs.watch.root:}")
+    private String root;
+
+    // Quiet period after the last event before a batch is applied
+    @Value("${docs.watch.debounce-ms:1000}")
+    private long debounceMs;
+
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+    private final Map<String, String> fileHashes = new HashMap<>();
+    // Watched files that replaced a packaged document of the same name
+    private final Set<String> shadowed = new HashSet<>();
+    private volatile WatchService watchService;
+    private Path rootPath;
+
+    public DocumentWatcher(DocumentIngestor documentIngestor, DocumentIndexer documentIndexer, IndexReadiness indexReadiness) {
+        this.documentIngestor = documentIngestor;
+        this.documentIndexer = documentIndexer;
+        this.indexReadiness = indexReadiness;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        long start = System.currentTimeMillis();
+        boolean watching = indexRoot();
+        // Reported with watching off too, since readiness waits for it
+        indexReadiness.watchedIndexed(fileHashes.size(), System.currentTimeMillis() - start);
+        if (!watching) return;
+
+        Thread t = new Thread(this::watchLoop, "docs-watcher");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // Initial indexing of docs.watch.root; false when watching is off
+    private boolean indexRoot() throws IOException {
+        if (root == null || root.isBlank()) return false;
+        rootPath = Paths.get(root).toAbsolutePath().normalize();
+        if (!Files.isDirectory(rootPath)) {
+            log.warn("[DocumentWatcher] docs.watch.root {} is not a directory; watching disabled", rootPath);
+            return false;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        Set<Path> initial = new LinkedHashSet<>();
+        registerTree(rootPath, initial);
+        apply(initial);
+        log.info("[DocumentWatcher] Indexed {} documents from {}; watching for changes", fileHashes.size(), rootPath);
+        return true;
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        WatchService ws = watchService;
+        watchService = null;
+        if (ws != null) ws.close();
+    }
+
+    private void watchLoop() {
+        Set<Path> pending = new LinkedHashSet<>();
+        try {
+            while (watchService != null) {
+                // Block for the first event, then keep collecting until the directory has been quiet for debounceMs
+                WatchKey key = pending.isEmpty() ? watchService.take() : watchService.poll(debounceMs, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    apply(pending);
+                    pending.clear();
+                    continue;
+                }
+                Path dir = watchedDirs.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Events were lost; rescan everything we know about plus whatever is on disk now
+                        fileHashes.keySet().forEach(name -> pending.add(rootPath.resolve(name)));
+                        registerTree(rootPath, pending);
+                        continue;
+                    }
+                    if (dir == null) continue;
+                    Path child = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+                        registerTree(child, pending);
+                    } else {
+                        pending.add(child);
+                    }
+                }
+                if (!key.reset()) {
+                    watchedDirs.remove(key);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // stopped
+        } catch (Exception e) {
+            log.error("[DocumentWatcher] Watch loop stopped: {}", e.toString());
+        }
+    }
+
+    private void registerTree(Path start, Set<Path> files) throws IOException {
+        try (Stream<Path> paths = Files.walk(start)) {
+            for (Path p : (Iterable<Path>) paths::iterator) {
+                if (Files.isDirectory(p)) {
+                    WatchKey key = p.register(watchService,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY,
+                            StandardWatchEventKinds.ENTRY_DELETE);
+                    watchedDirs.put(key, p);
+                } else if (Files.isRegularFile(p)) {
+                    files.add(p);
+                }
+            }
+        }
+    }
+
+    private void apply(Set<Path> batch) {
+        if (batch.isEmpty()) return;
+        long start = System.currentTimeMillis();
+        int updated = 0, removed = 0, unchanged = 0;
+        Deque<Path> work = new ArrayDeque<>(batch);
+        Set<Path> seen = new HashSet<>();
+        while (!work.isEmpty()) {
+            Path path = work.poll();
+            if (!seen.add(path)) continue;
+            String name = rootPath.relativize(path).toString().replace('\\', '/');
+            try {
+                if (Files.isDirectory(path)) {
+                    // A modified directory (touch, chmod, or a polling watcher reporting changes inside it) still
+                    // holds its documents: rescan it instead of treating it as deleted
+                    Set<Path> files = new LinkedHashSet<>();
+                    registerTree(path, files);
+                    work.addAll(files);
+                    continue;
+                }
+                if (Files.notExists(path)) {
+                    // A deleted directory only reports itself, so drop everything that lived under it too
+                    List<String> gone = fileHashes.keySet().stream()
+                            .filter(n -> n.equals(name) || n.startsWith(name + "/"))
+                            .toList();
+                    for (String doc : gone) {
+                        fileHashes.remove(doc);
+                        if (!shadowed.remove(doc) || !restorePackaged(doc)) {
+                            documentIngestor.remove(doc);
+                        }
+                        removed++;
+                    }
+                    continue;
+                }
+                if (!Files.isRegularFile(path)) continue;
+                String hash = sha256(path);
+                if (hash.equals(fileHashes.get(name))) {
+                    unchanged++;
+                    continue;
+                }
+                if (!fileHashes.containsKey(name) && documentIngestor.contains(name)) {
+                    log.warn("[DocumentWatcher] {} replaces the packaged document of the same name", name);
+                    shadowed.add(name);
+                }
+                documentIngestor.ingestFile(name, path);
+                fileHashes.put(name, hash);
+                updated++;
+            } catch (Exception e) {
+                log.warn("[DocumentWatcher] Failed to apply change for {}: {}", name, e.toString());
+            }
+        }
+        log.info("[DocumentWatcher] Applied batch of {} paths in {}ms: updated={} removed={} unchanged={}",
+                seen.size(), System.currentTimeMillis() - start, updated, removed, unchanged);
+    }
+
+    private boolean restorePackaged(String name) {
+        try {
+            if (!documentIndexer.reindexPackaged(name)) return false;
+            log.info("[DocumentWatcher] {} deleted; restored the packaged document of the same name", name);
+            return true;
+        } catch (Exception e) {
+            log.warn("[DocumentWatcher] Failed to restore the packaged document {}: {}", name, e.toString());
+            return false;
+        }
+    }
+
+    // Streams the file through the digest so large files are never read whole
+    private static String sha256(Path path) throws IOException, NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                md.update(buf, 0, n);
+            }
+        }
+        byte[] digest = md.digest();
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,78 @@
+package com.ai.ollama.config;
+
+import com.ai.ollama.service.VectorIndex;
+import com.ai.ollama.utils.DocumentSearch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Part of the readiness group (/actuator/health/readiness): OUT_OF_SERVICE until the packaged docs (DocumentIndexer)
+// and the docs.watch.root files (DocumentWatcher, which reports even when watching is off) are indexed, then UP
+// with where the indexes came from and the startup-to-ready time measured from JVM start, which covers class
+// loading (and so shows the effect of a CDS archive) as well as context refresh and indexing.
+@Component("indexes")
+public class IndexReadiness implements HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexReadiness.class);
+
+    private final VectorIndex vectorIndex;
+    private final DocumentSearch documentSearch;
+
+    private Map<String, Object> packaged;
+    private Map<String, Object> watched;
+    private volatile Map<String, Object> details;
+
+    public IndexReadiness(VectorIndex vectorIndex, DocumentSearch documentSearch) {
+        this.vectorIndex = vectorIndex;
+        this.documentSearch = documentSearch;
+    }
+
+    public synchronized void packagedIndexed(String source, int documents, long indexMs) {
+        Map<String, Object> d = new LinkedHashMap<>();
+        d.put("source", source);
+        d.put("documents", documents);
+        d.put("indexMs", indexMs);
+        packaged = d;
+        readyWhenBothIndexed();
+    }
+
+    public synchronized void watchedIndexed(int documents, long indexMs) {
+        Map<String, Object> d = new LinkedHashMap<>();
+        d.put("documents", documents);
+        d.put("indexMs", indexMs);
+        watched = d;
+        readyWhenBothIndexed();
+    }
+
+    private void readyWhenBothIndexed() {
+        if (packaged == null || watched == null || details != null) return;
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        long startupToReadyMs = System.currentTimeMillis() - runtime.getStartTime();
+        boolean cds = runtime.getInputArguments().stream()
+                .anyMatch(a -> a.startsWith("-XX:SharedArchiveFile") || a.equals("-XX:+AutoCreateSharedArchive"));
+        Map<String, Object> d = new LinkedHashMap<>();
+        d.put("packaged", packaged);
+        d.put("watched", watched);
+        d.put("chunks", vectorIndex.size());
+        d.put("keywordTerms", documentSearch.termCount());
+        d.put("startupToReadyMs", startupToReadyMs);
+        d.put("cds", cds);
+        details = d;
+        log.info("[IndexReadiness] Ready {}ms after JVM start (packaged docs {}: {} in {}ms, watched docs: {} in {}ms, "
+                        + "{} chunks, cds={})", startupToReadyMs, packaged.get("source"), packaged.get("documents"),
+                packaged.get("indexMs"), watched.get("documents"), watched.get("indexMs"), d.get("chunks"), cds);
+    }
+
+    @Override
+    public Health health() {
+        Map<String, Object> d = details;
+        return d == null ? Health.outOfService().withDetail("indexes", "loading").build() : Health.up().withDetails(d).build();
+    }
+}
@@ -0,0 +1,39 @@
+package com.ai.ollama.config;
+
+import com.ai.ollama.OllamaApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+
+import java.util.Arrays;
+import java.util.Map;
+
+// Build step for the index snapshot: starts the application without a web server, indexes classpath:/docs/**
+// with the configured embedding provider (which must be reachable), writes the snapshot and exits. Exits non-zero,
+// writing nothing, when a document or chunk could not be indexed or the index came out empty.
+// Run through the index-snapshot Maven profile so the file lands in target/classes and is packaged in the jar:
+//   ./mvnw -P index-snapshot package
+// Further arguments are passed on as Spring arguments, e.g. --huggingface.api.base-url=...
+public class IndexSnapshotBuilder {
+
+    public static void main(String[] args) {
+        String out = args.length > 0 && !args[0].startsWith("--") ? args[0] : "target/classes/index/index-snapshot.bin";
+        SpringApplication app = new SpringApplication(OllamaApplication.class);
+        app.setWebApplicationType(WebApplicationType.NONE);
+        // System properties, not default properties: application.properties sets these keys too and would win over
+        // defaults. Command-line arguments still override them
+        Map.of("index.snapshot.enabled", "false",
+                "index.snapshot.write", out,
+                "ollama.lifecycle.enabled", "false",
+                "docs.watch.root", "").forEach(System::setProperty);
+        String[] springArgs = args.length > 0 && !args[0].startsWith("--")
+                ? Arrays.copyOfRange(args, 1, args.length) : args;
+        int code;
+        try {
+            code = SpringApplication.exit(app.run(springArgs));
+        } catch (RuntimeException e) {
+            // Already logged by Spring Boot; a non-zero exit fails the Maven build rather than packaging a partial index
+            code = 1;
+        }
+        System.exit(code);
+    }
+}
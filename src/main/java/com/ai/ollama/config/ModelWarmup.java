@@ -0,0 +1,22 @@
+package com.ai.ollama.config;
+
+import com.ai.ollama.service.ModelLifecycleManager;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ModelWarmup implements ApplicationRunner {
+
+    private final ModelLifecycleManager modelLifecycleManager;
+
+    public ModelWarmup(ModelLifecycleManager modelLifecycleManager) {
+        this.modelLifecycleManager = modelLifecycleManager;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // Preload runs on the lifecycle thread so document indexing is not delayed by model loads
+        modelLifecycleManager.start();
+    }
+}
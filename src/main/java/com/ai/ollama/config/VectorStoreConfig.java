@@ -6,5 +6,5 @@ import org.springframework.context.annotation.Configuration;
 public class VectorStoreConfig {
     // Placeholder configuration.
     // Note: In-memory vector indexing is implemented by com.ai.ollama.service.VectorIndex
-    // which uses Ollama embeddings via OllamaEmbeddingClient.
+    // which embeds through EmbeddingRouter (Hugging Face and/or Ollama embedding clients).
 }
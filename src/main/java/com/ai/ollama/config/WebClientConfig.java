@@ -3,30 +3,93 @@ package com.ai.ollama.config;
 import io.netty.channel.ChannelOption;
 import io.netty.handler.timeout.ReadTimeoutHandler;
 import io.netty.handler.timeout.WriteTimeoutHandler;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestClientCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Scope;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.ReactorClientHttpRequestFactory;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
+// One connection pool per upstream. Ollama (chat, generate, embeddings, and Spring AI's own clients) and
+// Hugging Face each get a named ConnectionProvider with limits, idle/lifetime eviction and pool metrics
+// (reactor.netty.connection.provider.* tagged with the pool name). Settings are read from
+// http.client.<upstream>.* and fall back to http.client.*.
 @Configuration
 public class WebClientConfig {
 
-    @Bean
-    public WebClient.Builder webClientBuilder(
-            @Value("${http.client.connect-timeout-ms:10000}") int connectTimeoutMs,
-            @Value("${http.client.response-timeout-ms:0}") long responseTimeoutMs,
-            @Value("${http.client.read-timeout-ms:0}") long readTimeoutMs,
-            @Value("${http.client.write-timeout-ms:0}") long writeTimeoutMs,
-            @Value("${http.client.max-in-memory-size-mb:16}") int maxInMemorySizeMb
-    ) {
-        HttpClient httpClient = HttpClient.create()
-                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs);
+    static final String OLLAMA = "ollama";
+    static final String HUGGING_FACE = "huggingface";
+
+    record UpstreamSettings(String name, int maxConnections, int pendingAcquireMaxCount, long pendingAcquireTimeoutMs,
+                            long maxIdleTimeMs, long maxLifeTimeMs, long evictIntervalMs, HttpProtocol[] protocols,
+                            boolean compress, boolean poolMetrics, int connectTimeoutMs, long responseTimeoutMs,
+                            long readTimeoutMs, long writeTimeoutMs) {
+
+        static UpstreamSettings from(Environment env, String name, String defaultProtocols) {
+            String protocols = setting(env, name, "protocols", String.class, defaultProtocols);
+            return new UpstreamSettings(name,
+                    setting(env, name, "max-connections", Integer.class, 64),
+                    setting(env, name, "pending-acquire-max-count", Integer.class, 1000),
+                    setting(env, name, "pending-acquire-timeout-ms", Long.class, 45000L),
+                    setting(env, name, "max-idle-time-ms", Long.class, 30000L),
+                    setting(env, name, "max-life-time-ms", Long.class, 300000L),
+                    setting(env, name, "evict-interval-ms", Long.class, 30000L),
+                    Arrays.stream(protocols.split(","))
+                            .map(p -> HttpProtocol.valueOf(p.trim().toUpperCase(Locale.ROOT)))
+                            .toArray(HttpProtocol[]::new),
+                    setting(env, name, "compress", Boolean.class, false),
+                    setting(env, name, "pool-metrics", Boolean.class, true),
+                    setting(env, name, "connect-timeout-ms", Integer.class, 10000),
+                    setting(env, name, "response-timeout-ms", Long.class, 0L),
+                    setting(env, name, "read-timeout-ms", Long.class, 0L),
+                    setting(env, name, "write-timeout-ms", Long.class, 0L));
+        }
+
+        private static <T> T setting(Environment env, String upstream, String key, Class<T> type, T defaultValue) {
+            T value = env.getProperty("http.client." + upstream + "." + key, type);
+            return value != null ? value : env.getProperty("http.client." + key, type, defaultValue);
+        }
+    }
+
+    static ConnectionProvider connectionProvider(UpstreamSettings s) {
+        return ConnectionProvider.builder(s.name())
+                .maxConnections(s.maxConnections())
+                .pendingAcquireMaxCount(s.pendingAcquireMaxCount())
+                .pendingAcquireTimeout(Duration.ofMillis(s.pendingAcquireTimeoutMs()))
+                // Close idle sockets before the upstream does, so a request never lands on a half-closed connection
+                .maxIdleTime(Duration.ofMillis(s.maxIdleTimeMs()))
+                .maxLifeTime(Duration.ofMillis(s.maxLifeTimeMs()))
+                .evictInBackground(Duration.ofMillis(s.evictIntervalMs()))
+                .metrics(s.poolMetrics())
+                .build();
+    }
+
+    static HttpClient httpClient(UpstreamSettings s, ConnectionProvider provider) {
+        HttpClient httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, s.connectTimeoutMs())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .keepAlive(true)
+                // Sends Accept-Encoding: gzip and inflates compressed responses (large JSON float arrays)
+                .compress(s.compress())
+                // HTTP11 only, H2C (cleartext HTTP/2 upgrade) or H2 (TLS ALPN); list several to allow fallback
+                .protocol(s.protocols());
+        long responseTimeoutMs = s.responseTimeoutMs();
+        long readTimeoutMs = s.readTimeoutMs();
+        long writeTimeoutMs = s.writeTimeoutMs();
         if (responseTimeoutMs > 0) {
             httpClient = httpClient.responseTimeout(Duration.ofMillis(responseTimeoutMs));
         }
@@ -40,13 +103,59 @@ public class WebClientConfig {
                 }
             });
         }
+        return httpClient;
+    }
 
+    static WebClient.Builder newBuilder(HttpClient httpClient, int maxInMemorySizeMb) {
         ExchangeStrategies strategies = ExchangeStrategies.builder()
                 .codecs(cfg -> cfg.defaultCodecs().maxInMemorySize(maxInMemorySizeMb * 1024 * 1024))
                 .build();
-
         return WebClient.builder()
                 .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .exchangeStrategies(strategies);
     }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider ollamaConnectionProvider(Environment env) {
+        return connectionProvider(UpstreamSettings.from(env, OLLAMA, "HTTP11"));
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider huggingFaceConnectionProvider(Environment env) {
+        return connectionProvider(UpstreamSettings.from(env, HUGGING_FACE, "H2,HTTP11"));
+    }
+
+    @Bean
+    public HttpClient ollamaHttpClient(Environment env, @Qualifier("ollamaConnectionProvider") ConnectionProvider provider) {
+        return httpClient(UpstreamSettings.from(env, OLLAMA, "HTTP11"), provider);
+    }
+
+    @Bean
+    public HttpClient huggingFaceHttpClient(Environment env,
+                                            @Qualifier("huggingFaceConnectionProvider") ConnectionProvider provider) {
+        return httpClient(UpstreamSettings.from(env, HUGGING_FACE, "H2,HTTP11"), provider);
+    }
+
+    // Prototype: every consumer gets its own builder (Spring AI sets a base URL on the one it receives),
+    // while all of them share the Ollama connection pool
+    @Bean
+    @Primary
+    @Scope("prototype")
+    public WebClient.Builder webClientBuilder(@Qualifier("ollamaHttpClient") HttpClient httpClient,
+                                              @Value("${http.client.max-in-memory-size-mb:16}") int maxInMemorySizeMb) {
+        return newBuilder(httpClient, maxInMemorySizeMb);
+    }
+
+    @Bean
+    @Scope("prototype")
+    public WebClient.Builder huggingFaceWebClientBuilder(@Qualifier("huggingFaceHttpClient") HttpClient httpClient,
+                                                         @Value("${http.client.max-in-memory-size-mb:16}") int maxInMemorySizeMb) {
+        return newBuilder(httpClient, maxInMemorySizeMb);
+    }
+
+    // Spring AI's blocking Ollama calls go through RestClient; route them over the same pool
+    @Bean
+    public RestClientCustomizer ollamaRestClientCustomizer(@Qualifier("ollamaHttpClient") HttpClient httpClient) {
+        return builder -> builder.requestFactory(new ReactorClientHttpRequestFactory(httpClient));
+    }
 }
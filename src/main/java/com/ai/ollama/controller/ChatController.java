@@ -1,14 +1,34 @@
 package com.ai.ollama.controller;
 
+import com.ai.ollama.model.BatchResult;
 import com.ai.ollama.model.ChatRequest;
 import com.ai.ollama.model.ChatResponse;
 import com.ai.ollama.model.RagRequest;
+import com.ai.ollama.service.BatchChatService;
+import com.ai.ollama.service.MetadataFilter;
+import com.ai.ollama.service.ModelLifecycleManager;
 import com.ai.ollama.service.OllamaClient;
+import com.ai.ollama.service.RagJobService;
 import com.ai.ollama.service.RagService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/api/chat")
@@ -18,10 +38,19 @@ public class ChatController {
 
     private final OllamaClient ollamaClient;
     private final RagService ragService;
+    private final ModelLifecycleManager modelLifecycleManager;
+    private final BatchChatService batchChatService;
+    private final RagJobService ragJobService;
+    private final ObjectMapper objectMapper;
 
-    public ChatController(OllamaClient ollamaClient, RagService ragService) {
+    public ChatController(OllamaClient ollamaClient, RagService ragService, ModelLifecycleManager modelLifecycleManager,
+                          BatchChatService batchChatService, RagJobService ragJobService, ObjectMapper objectMapper) {
         this.ollamaClient = ollamaClient;
         this.ragService = ragService;
+        this.modelLifecycleManager = modelLifecycleManager;
+        this.batchChatService = batchChatService;
+        this.ragJobService = ragJobService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -47,6 +76,7 @@ public class ChatController {
         long start = System.currentTimeMillis();
         log.info("[ChatController] /api/chat/docs called: model={} promptChars={}", request.getModel(),
                 request.getPrompt() == null ? 0 : request.getPrompt().length());
+        validateFilters(request);
         try {
             ChatResponse resp = ragService.chatWithDocs(request);
             long took = System.currentTimeMillis() - start;
@@ -59,4 +89,134 @@ public class ChatController {
             throw e;
         }
     }
+
+    // Non-blocking variant of /docs: the request thread is released while embeddings, searches and model calls
+    // are in flight. A bad filter answers 400 and a missed deadline 504.
+    @PostMapping(value = "/docs/reactive", produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ChatResponse> chatWithDocsReactive(@RequestBody RagRequest request) {
+        long start = System.currentTimeMillis();
+        log.info("[ChatController] /api/chat/docs/reactive called: model={} promptChars={}", request.getModel(),
+                request.getPrompt() == null ? 0 : request.getPrompt().length());
+        validateFilters(request);
+        return ragService.chatWithDocsReactive(request)
+                .doOnSuccess(resp -> log.info("[ChatController] /api/chat/docs/reactive success: model={} took={}ms responseChars={}",
+                        request.getModel(), System.currentTimeMillis() - start,
+                        resp == null || resp.getResponse() == null ? 0 : resp.getResponse().length()))
+                .doOnError(e -> log.error("[ChatController] /api/chat/docs/reactive failed: model={} took={}ms error={}",
+                        request.getModel(), System.currentTimeMillis() - start, e.toString()))
+                .onErrorMap(IllegalArgumentException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()))
+                .onErrorMap(TimeoutException.class, e -> new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "RAG request timed out"));
+    }
+
+    // Async variant of /docs: answers 202 with a job id right away; poll the Location for status and the
+    // per-document summaries produced so far
+    @PostMapping(value = "/docs/jobs", produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> submitDocsJob(@RequestBody RagRequest request) {
+        validateFilters(request);
+        try {
+            Map<String, Object> job = ragJobService.submit(request);
+            log.info("[ChatController] /api/chat/docs/jobs accepted: jobId={} model={}", job.get("jobId"), request.getModel());
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/chat/docs/jobs/" + job.get("jobId")))
+                    .body(job);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "RAG job queue is full");
+        }
+    }
+
+    @GetMapping(value = "/docs/jobs/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> docsJob(@PathVariable String jobId) {
+        Map<String, Object> job = ragJobService.status(jobId);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown or expired job " + jobId);
+        }
+        return job;
+    }
+
+    @DeleteMapping(value = "/docs/jobs/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> cancelDocsJob(@PathVariable String jobId) {
+        Map<String, Object> job = ragJobService.cancel(jobId);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown or expired job " + jobId);
+        }
+        return job;
+    }
+
+    // Streams one BatchResult per line as requests complete; pass the X-Batch-Job-Id of an interrupted run as
+    // jobId (with the same batch) to replay finished results and run only the rest
+    @PostMapping(value = "/batch", produces = MediaType.APPLICATION_NDJSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> batch(@RequestBody List<ChatRequest> requests,
+                                                     @RequestParam(required = false) String jobId) {
+        return streamBatch(jobId, requests);
+    }
+
+    @PostMapping(value = "/batch", produces = MediaType.APPLICATION_NDJSON_VALUE, consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> batchNdjson(@RequestBody String body,
+                                                           @RequestParam(required = false) String jobId) {
+        List<ChatRequest> requests;
+        try {
+            requests = batchChatService.parseNdjson(body);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return streamBatch(jobId, requests);
+    }
+
+    @GetMapping(value = "/batch/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> batchStatus(@PathVariable String jobId) {
+        Map<String, Object> status = batchChatService.status(jobId);
+        if (status == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown batch job " + jobId);
+        }
+        return status;
+    }
+
+    // A bad filter expression is the client's error on every /docs variant, checked before any work is accepted
+    private static void validateFilters(RagRequest request) {
+        try {
+            MetadataFilter.parse(request.getFilters());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private ResponseEntity<ResponseBodyEmitter> streamBatch(String jobId, List<ChatRequest> requests) {
+        BatchChatService.BatchJob job;
+        try {
+            job = batchChatService.open(jobId, requests);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+        log.info("[ChatController] /api/chat/batch started: jobId={} requests={}", job.getId(), requests.size());
+        // No async timeout: a batch streams for as long as it has work
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(0L);
+        Disposable subscription = batchChatService.run(job, requests).subscribe(
+                result -> send(emitter, result),
+                emitter::completeWithError,
+                emitter::complete);
+        // Client went away: stop scheduling further requests; finished ones stay recorded for a resume
+        emitter.onError(ex -> subscription.dispose());
+        emitter.onTimeout(subscription::dispose);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header("X-Batch-Job-Id", job.getId())
+                .body(emitter);
+    }
+
+    private void send(ResponseBodyEmitter emitter, BatchResult result) {
+        try {
+            emitter.send(objectMapper.writeValueAsString(result) + "\n", MediaType.TEXT_PLAIN);
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    @GetMapping(value = "/models", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> models() {
+        return modelLifecycleManager.snapshot();
+    }
 }
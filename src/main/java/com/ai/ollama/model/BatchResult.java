@@ -0,0 +1,79 @@
+package com.ai.ollama.model;
+
+// One NDJSON line of a /api/chat/batch response
+public class BatchResult {
+    private String jobId;
+    private int index; // position of the request in the submitted batch
+    private String model;
+    private String response;
+    private String error; // set instead of response when the request failed; failed items run again on resume
+    private long tookMs;
+    private boolean resumed; // replayed from an earlier run of the same job
+
+    public BatchResult() {}
+
+    public BatchResult(String jobId, int index, String model, String response, String error, long tookMs) {
+        this.jobId = jobId;
+        this.index = index;
+        this.model = model;
+        this.response = response;
+        this.error = error;
+        this.tookMs = tookMs;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public String getResponse() {
+        return response;
+    }
+
+    public void setResponse(String response) {
+        this.response = response;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public long getTookMs() {
+        return tookMs;
+    }
+
+    public void setTookMs(long tookMs) {
+        this.tookMs = tookMs;
+    }
+
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    public void setResumed(boolean resumed) {
+        this.resumed = resumed;
+    }
+}
@@ -4,9 +4,10 @@ import java.util.List;
 import java.util.Map;
 
 public class ChatRequest {
-    private String model = "gemma3:4b"; // default model name; override in request
+    private String model; // optional; falls back to spring.ai.ollama.chat.options.model
     private List<Message> messages;
     private Map<String, Object> options; // optional generation options
+    private String conversationId; // optional; keys the cached summary of compacted history
 
     public String getModel() {
         return model;
@@ -32,6 +33,14 @@ public class ChatRequest {
         this.options = options;
     }
 
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
     public static class Message {
         private String role; // system|user|assistant
         private String content;
@@ -1,11 +1,15 @@
 package com.ai.ollama.model;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 public class RagRequest {
     private String model; // optional override
     private String prompt;
     private Map<String, Object> options; // optional generation options
+    private List<String> collections; // optional; restricts retrieval to these document collections
+    private List<String> filters; // optional metadata filters, e.g. "tag=billing", "modified>=2024-06-01"
 
     public String getModel() {
         return model;
@@ -30,4 +34,26 @@ public class RagRequest {
     public void setOptions(Map<String, Object> options) {
         this.options = options;
     }
+
+    public List<String> getCollections() {
+        return collections;
+    }
+
+    // Normalized once as the request is read: names trimmed, blank and repeated ones dropped
+    public void setCollections(List<String> collections) {
+        this.collections = collections == null ? null : collections.stream()
+                .filter(Objects::nonNull)
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    public List<String> getFilters() {
+        return filters;
+    }
+
+    public void setFilters(List<String> filters) {
+        this.filters = filters;
+    }
 }
@@ -0,0 +1,355 @@
+package com.ai.ollama.service;
+
+import com.ai.ollama.model.BatchResult;
+import com.ai.ollama.model.ChatRequest;
+import com.ai.ollama.model.ChatResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Runs batches of chat requests through OllamaClient. All batches share one bounded scheduler, so the number of
+// chat calls in flight never exceeds chat.batch.concurrency however many jobs run at once; set it to Ollama's
+// OLLAMA_NUM_PARALLEL to keep every slot busy without queueing inside Ollama.
+// Successful results are kept per job id, so re-submitting the same batch with the same job id replays them and
+// only runs what is missing or failed. With chat.batch.journal-dir set they are journaled there and only their
+// indexes stay in memory; replays read the journal. At most chat.batch.max-jobs jobs are held, idle ones evicted
+// least recently active first.
+@Service
+public class BatchChatService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchChatService.class);
+    private static final Pattern JOB_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    private final OllamaClient ollamaClient;
+    private final ObjectMapper objectMapper;
+    private final int concurrency;
+    private final long retentionMs;
+    private final int maxJobs;
+    private final Path journalDir;
+    private final Scheduler scheduler;
+    private final Map<String, BatchJob> jobs = new ConcurrentHashMap<>();
+
+    public BatchChatService(OllamaClient ollamaClient, ObjectMapper objectMapper,
+                            @Value("${chat.batch.concurrency:4}") int concurrency,
+                            @Value("${chat.batch.retention-ms:86400000}") long retentionMs,
+                            @Value("${chat.batch.max-jobs:100}") int maxJobs,
+                            @Value("${chat.batch.journal-dir:}") String journalDir) {
+        this.ollamaClient = ollamaClient;
+        this.objectMapper = objectMapper;
+        this.concurrency = Math.max(1, concurrency);
+        this.retentionMs = retentionMs;
+        this.maxJobs = Math.max(1, maxJobs);
+        this.journalDir = journalDir == null || journalDir.isBlank() ? null : Paths.get(journalDir);
+        this.scheduler = Schedulers.newBoundedElastic(this.concurrency, 100_000, "chat-batch", 60, true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.dispose();
+    }
+
+    public static final class BatchJob {
+        private final String id;
+        private final String fingerprint;
+        private final int total;
+        private final long createdAt = System.currentTimeMillis();
+        private final Set<Integer> completed = ConcurrentHashMap.newKeySet();
+        // Results of completed requests; null when they are journaled
+        private final Map<Integer, BatchResult> results;
+        private final AtomicBoolean running = new AtomicBoolean();
+        private volatile long lastActive = System.currentTimeMillis();
+
+        BatchJob(String id, String fingerprint, int total, boolean keepResults) {
+            this.id = id;
+            this.fingerprint = fingerprint;
+            this.total = total;
+            this.results = keepResults ? new ConcurrentHashMap<>() : null;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    // Starts a new job, or resumes jobId when it exists in memory or in the journal.
+    // IllegalArgumentException: bad job id or batch; IllegalStateException: job busy or started with other requests;
+    // RejectedExecutionException: max-jobs jobs are running.
+    public BatchJob open(String jobId, List<ChatRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("Batch is empty");
+        }
+        evictExpired();
+        String id = jobId == null || jobId.isBlank() ? UUID.randomUUID().toString() : jobId.trim();
+        if (!JOB_ID.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid job id: " + id);
+        }
+        String fingerprint = fingerprint(requests);
+        BatchJob job;
+        synchronized (jobs) {
+            if (!jobs.containsKey(id)) makeRoom();
+            job = jobs.computeIfAbsent(id, k -> loadJournal(k, fingerprint, requests.size()));
+        }
+        if (!job.fingerprint.equals(fingerprint)) {
+            throw new IllegalStateException("Job " + id + " was started with a different batch");
+        }
+        if (!job.running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Job " + id + " is already running");
+        }
+        job.lastActive = System.currentTimeMillis();
+        log.info("[BatchChatService] Job {}: {} requests, {} already completed", id, job.total, job.completed.size());
+        return job;
+    }
+
+    // Replays earlier results first, then streams the remaining ones as they complete (not in input order)
+    public Flux<BatchResult> run(BatchJob job, List<ChatRequest> requests) {
+        long start = System.currentTimeMillis();
+        Flux<BatchResult> replayed = replay(job).map(r -> {
+            BatchResult copy = new BatchResult(r.getJobId(), r.getIndex(), r.getModel(), r.getResponse(), null, r.getTookMs());
+            copy.setResumed(true);
+            return copy;
+        });
+        Flux<BatchResult> pending = Flux.range(0, job.total)
+                .filter(i -> !job.completed.contains(i))
+                .flatMap(i -> Mono.fromCallable(() -> execute(job, i, requests.get(i))).subscribeOn(scheduler),
+                        concurrency);
+        // Released before the terminal signal reaches the client (doFinally runs after it), so a resume sent as
+        // soon as the stream ends does not find the job still running
+        return replayed.concatWith(pending)
+                .doOnComplete(() -> release(job, SignalType.ON_COMPLETE, start))
+                .doOnError(ex -> release(job, SignalType.ON_ERROR, start))
+                .doOnCancel(() -> release(job, SignalType.CANCEL, start));
+    }
+
+    private void release(BatchJob job, SignalType signal, long start) {
+        job.running.set(false);
+        job.lastActive = System.currentTimeMillis();
+        log.info("[BatchChatService] Job {} {} after {}ms: {}/{} completed", job.id, signal,
+                System.currentTimeMillis() - start, job.completed.size(), job.total);
+    }
+
+    public Map<String, Object> status(String jobId) {
+        BatchJob job = jobId == null ? null : jobs.get(jobId);
+        if (job == null) return null;
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("jobId", job.id);
+        out.put("total", job.total);
+        out.put("completed", job.completed.size());
+        out.put("running", job.running.get());
+        out.put("createdAt", job.createdAt);
+        return out;
+    }
+
+    public List<ChatRequest> parseNdjson(String body) {
+        List<ChatRequest> requests = new ArrayList<>();
+        if (body == null) return requests;
+        int lineNo = 0;
+        for (String line : body.split("\n")) {
+            lineNo++;
+            if (line.isBlank()) continue;
+            try {
+                requests.add(objectMapper.readValue(line, ChatRequest.class));
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Invalid NDJSON at line " + lineNo + ": " + e.getOriginalMessage());
+            }
+        }
+        return requests;
+    }
+
+    // Results in index order from memory, or in completion order from the journal; only requests completed when
+    // the run started are replayed, each once
+    private Flux<BatchResult> replay(BatchJob job) {
+        if (job.results != null) {
+            List<BatchResult> replay = new ArrayList<>(job.results.values());
+            replay.sort(Comparator.comparingInt(BatchResult::getIndex));
+            return Flux.fromIterable(replay);
+        }
+        if (job.completed.isEmpty()) return Flux.empty();
+        Set<Integer> pending = new HashSet<>(job.completed);
+        return Flux.using(() -> Files.newBufferedReader(journalFile(job.id), StandardCharsets.UTF_8),
+                        reader -> Flux.fromStream(reader.lines().skip(1)),
+                        reader -> {
+                            try {
+                                reader.close();
+                            } catch (IOException ignored) {
+                            }
+                        })
+                .filter(line -> !line.isBlank())
+                .map(line -> {
+                    try {
+                        return objectMapper.readValue(line, BatchResult.class);
+                    } catch (JsonProcessingException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .filter(r -> pending.remove(r.getIndex()))
+                .subscribeOn(scheduler);
+    }
+
+    private BatchResult execute(BatchJob job, int index, ChatRequest request) {
+        long start = System.currentTimeMillis();
+        try {
+            ChatResponse resp = ollamaClient.chat(request);
+            BatchResult result = new BatchResult(job.id, index, resp.getModel(), resp.getResponse(), null,
+                    System.currentTimeMillis() - start);
+            // A result that could not be journaled is not recorded, so a resume runs it again
+            if (job.results != null) {
+                job.results.put(index, result);
+                job.completed.add(index);
+            } else if (journal(job, result)) {
+                job.completed.add(index);
+            }
+            return result;
+        } catch (Exception e) {
+            return new BatchResult(job.id, index, request.getModel(), null, e.toString(), System.currentTimeMillis() - start);
+        }
+    }
+
+    private void evictExpired() {
+        long cutoff = System.currentTimeMillis() - retentionMs;
+        jobs.values().removeIf(job -> {
+            if (job.running.get() || job.lastActive >= cutoff) return false;
+            if (journalDir != null) deleteJournal(job.id);
+            return true;
+        });
+        if (journalDir == null || !Files.isDirectory(journalDir)) return;
+        // Journals of jobs no longer in memory (evicted for room, or from before a restart) expire by age
+        try (Stream<Path> files = Files.list(journalDir)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(".ndjson")) return;
+                String id = name.substring(0, name.length() - ".ndjson".length());
+                try {
+                    if (!jobs.containsKey(id) && Files.getLastModifiedTime(file).toMillis() < cutoff) deleteJournal(id);
+                } catch (IOException e) {
+                    log.warn("[BatchChatService] Failed to check journal {}: {}", name, e.toString());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("[BatchChatService] Failed to list journals: {}", e.toString());
+        }
+    }
+
+    // Called holding the jobs lock; an evicted job can still be resumed from its journal
+    private void makeRoom() {
+        while (jobs.size() >= maxJobs) {
+            BatchJob oldest = null;
+            for (BatchJob job : jobs.values()) {
+                if (!job.running.get() && (oldest == null || job.lastActive < oldest.lastActive)) oldest = job;
+            }
+            if (oldest == null) {
+                throw new RejectedExecutionException("All " + maxJobs + " batch jobs are running");
+            }
+            jobs.remove(oldest.id);
+            log.info("[BatchChatService] Evicted idle job {} to stay within {} jobs", oldest.id, maxJobs);
+        }
+    }
+
+    private void deleteJournal(String id) {
+        try {
+            Files.deleteIfExists(journalFile(id));
+        } catch (IOException e) {
+            log.warn("[BatchChatService] Failed to delete journal of job {}: {}", id, e.toString());
+        }
+    }
+
+    // Journal layout: one header line {"jobId","fingerprint","total"}, then one BatchResult per completed request
+    private BatchJob loadJournal(String id, String fingerprint, int total) {
+        if (journalDir == null) return new BatchJob(id, fingerprint, total, true);
+        Path file = journalFile(id);
+        try {
+            if (!Files.exists(file)) {
+                writeHeader(file, id, fingerprint, total);
+                return new BatchJob(id, fingerprint, total, false);
+            }
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                Map<?, ?> header = objectMapper.readValue(reader.readLine(), Map.class);
+                BatchJob job = new BatchJob(id, String.valueOf(header.get("fingerprint")),
+                        ((Number) header.get("total")).intValue(), false);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) continue;
+                    job.completed.add(objectMapper.readValue(line, BatchResult.class).getIndex());
+                }
+                log.info("[BatchChatService] Loaded job {} from journal: {}/{} completed", id, job.completed.size(), job.total);
+                return job;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("[BatchChatService] Journal of job {} unusable, starting over: {}", id, e.toString());
+            try {
+                writeHeader(file, id, fingerprint, total);
+                return new BatchJob(id, fingerprint, total, false);
+            } catch (IOException ex) {
+                log.warn("[BatchChatService] Cannot journal job {}, keeping its results in memory: {}", id, ex.toString());
+                return new BatchJob(id, fingerprint, total, true);
+            }
+        }
+    }
+
+    private void writeHeader(Path file, String id, String fingerprint, int total) throws IOException {
+        Files.createDirectories(journalDir);
+        Map<String, Object> header = Map.of("jobId", id, "fingerprint", fingerprint, "total", total);
+        Files.writeString(file, objectMapper.writeValueAsString(header) + "\n", StandardCharsets.UTF_8);
+    }
+
+    private boolean journal(BatchJob job, BatchResult result) {
+        try {
+            String line = objectMapper.writeValueAsString(result) + "\n";
+            synchronized (job) {
+                Files.writeString(journalFile(job.id), line, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            return true;
+        } catch (IOException e) {
+            log.warn("[BatchChatService] Failed to journal result {} of job {}: {}", result.getIndex(), job.id, e.toString());
+            return false;
+        }
+    }
+
+    private Path journalFile(String id) {
+        return journalDir.resolve(id + ".ndjson");
+    }
+
+    // Identifies the submitted batch, so a job id cannot be resumed with different requests
+    private String fingerprint(List<ChatRequest> requests) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(objectMapper.writeValueAsBytes(requests)));
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Cannot fingerprint batch", e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.ai.ollama.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+// Groups consecutive lines up to a target size, cutting only at a structural boundary once the target is
+// reached and always before the max size. Chunks are still line ranges because the DocumentStore addresses lines,
+// so a sentence that continues on the next line is kept whole rather than split mid-line.
+class BoundaryChunker extends Chunker {
+
+    enum Boundary {
+        // Blank lines end paragraphs; Markdown headings always start a new chunk
+        PARAGRAPH,
+        // Lines ending a sentence (. ! ? or a closing quote/bracket after one) or blank lines
+        SENTENCE,
+        // Any line; pure token-count packing
+        TOKENS
+    }
+
+    private static final Pattern HEADING = Pattern.compile("^\\s{0,3}#{1,6}\\s");
+    private static final Pattern SENTENCE_END = Pattern.compile("[.!?][\"')\\]]*\\s*$");
+
+    private final Boundary boundary;
+    private final int targetTokens;
+    private final int maxTokens;
+    private final List<String> buffer = new ArrayList<>();
+    private int bufferStart = 1;
+    private int bufferTokens;
+    private int nextLine = 1;
+
+    BoundaryChunker(Boundary boundary, int targetTokens, int maxTokens, int minChars, Sink sink) {
+        super(minChars, sink);
+        this.boundary = boundary;
+        this.targetTokens = targetTokens;
+        this.maxTokens = Math.max(targetTokens, maxTokens);
+    }
+
+    @Override
+    void accept(String line) {
+        String l = line == null ? "" : line;
+        int tokens = estimateTokens(l);
+        if (!buffer.isEmpty() && (startsSection(l) || bufferTokens + tokens > maxTokens)) {
+            flush();
+        }
+        if (buffer.isEmpty()) {
+            bufferStart = nextLine;
+        }
+        buffer.add(l);
+        bufferTokens += tokens;
+        nextLine++;
+        if (bufferTokens >= targetTokens && endsUnit(l)) {
+            flush();
+        }
+    }
+
+    @Override
+    void finish() {
+        if (!buffer.isEmpty()) {
+            flush();
+        }
+    }
+
+    private boolean startsSection(String line) {
+        return boundary == Boundary.PARAGRAPH && HEADING.matcher(line).find();
+    }
+
+    private boolean endsUnit(String line) {
+        return switch (boundary) {
+            case PARAGRAPH -> line.isBlank();
+            case SENTENCE -> line.isBlank() || SENTENCE_END.matcher(line).find();
+            case TOKENS -> true;
+        };
+    }
+
+    private void flush() {
+        emit(bufferStart, buffer);
+        buffer.clear();
+        bufferTokens = 0;
+    }
+}
@@ -0,0 +1,46 @@
+package com.ai.ollama.service;
+
+// Streaming chunker: lines are pushed one at a time and chunks are emitted as (line range, text, content hash)
+abstract class Chunker {
+
+    interface Sink {
+        void chunk(int startLine, int endLine, String text, long contentHash);
+    }
+
+    private final int minChars;
+    private final Sink sink;
+
+    Chunker(int minChars, Sink sink) {
+        this.minChars = minChars;
+        this.sink = sink;
+    }
+
+    abstract void accept(String line);
+
+    abstract void finish();
+
+    void emit(int startLine, Iterable<String> lines) {
+        StringBuilder sb = new StringBuilder();
+        long h = 0xcbf29ce484222325L;
+        int ln = startLine;
+        for (String line : lines) {
+            sb.append("[line ").append(ln++).append("] ").append(line).append("\n");
+            // 64-bit FNV-1a over the raw lines, so the hash does not depend on the "[line N]" prefixes
+            for (int k = 0; k < line.length(); k++) {
+                h ^= line.charAt(k);
+                h *= 0x100000001b3L;
+            }
+            h ^= '\n';
+            h *= 0x100000001b3L;
+        }
+        String text = sb.toString();
+        if (ln > startLine && text.trim().length() >= minChars) {
+            sink.chunk(startLine, ln - 1, text, h);
+        }
+    }
+
+    // Rough token estimate (~4 chars per token for English text with a BPE tokenizer)
+    static int estimateTokens(String line) {
+        return (line.length() + 3) / 4;
+    }
+}
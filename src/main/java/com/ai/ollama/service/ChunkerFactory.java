@@ -0,0 +1,57 @@
+package com.ai.ollama.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class ChunkerFactory {
+
+    public static final List<String> STRATEGIES = List.of("lines", "paragraph", "sentence", "tokens");
+
+    private final String strategy;
+    private final int targetTokens;
+    private final int maxTokens;
+    private final int windowLines;
+    private final int overlapLines;
+    private final int minChars;
+
+    public ChunkerFactory(@Value("${rag.chunking.strategy:lines}") String strategy,
+                          @Value("${rag.chunking.target-tokens:200}") int targetTokens,
+                          @Value("${rag.chunking.max-tokens:400}") int maxTokens,
+                          @Value("${rag.chunking.window-lines:20}") int windowLines,
+                          @Value("${rag.chunking.overlap-lines:5}") int overlapLines,
+                          @Value("${rag.chunking.min-chars:32}") int minChars) {
+        if (!STRATEGIES.contains(strategy)) {
+            throw new IllegalArgumentException("Unknown rag.chunking.strategy '" + strategy + "', expected one of " + STRATEGIES);
+        }
+        if (overlapLines >= windowLines) {
+            throw new IllegalArgumentException("rag.chunking.overlap-lines must be smaller than rag.chunking.window-lines");
+        }
+        this.strategy = strategy;
+        this.targetTokens = targetTokens;
+        this.maxTokens = maxTokens;
+        this.windowLines = windowLines;
+        this.overlapLines = overlapLines;
+        this.minChars = minChars;
+    }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    // Settings that decide chunk boundaries; vectors built under another signature do not line up with these chunks
+    public String signature() {
+        return strategy + "/" + targetTokens + "/" + maxTokens + "/" + windowLines + "/" + overlapLines + "/" + minChars;
+    }
+
+    Chunker create(Chunker.Sink sink) {
+        return switch (strategy) {
+            case "paragraph" -> new BoundaryChunker(BoundaryChunker.Boundary.PARAGRAPH, targetTokens, maxTokens, minChars, sink);
+            case "sentence" -> new BoundaryChunker(BoundaryChunker.Boundary.SENTENCE, targetTokens, maxTokens, minChars, sink);
+            case "tokens" -> new BoundaryChunker(BoundaryChunker.Boundary.TOKENS, targetTokens, maxTokens, minChars, sink);
+            default -> new LineWindowChunker(windowLines, overlapLines, minChars, sink);
+        };
+    }
+}
@@ -0,0 +1,116 @@
+package com.ai.ollama.service;
+
+import com.ai.ollama.utils.DocumentSearch;
+import com.ai.ollama.utils.DocumentStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Streams a document into the DocumentStore, then feeds the keyword and vector indexes from the store one line
+// at a time. No List<String> of the whole document is ever built; with docs.store.map-files the text is not
+// even copied onto the heap.
+@Service
+public class DocumentIngestor {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentIngestor.class);
+
+    private final DocumentStore documentStore;
+    private final DocumentSearch documentSearch;
+    private final VectorIndex vectorIndex;
+
+    @Value("${docs.store.map-files:false}")
+    private boolean mapFiles;
+
+    public DocumentIngestor(DocumentStore documentStore, DocumentSearch documentSearch, VectorIndex vectorIndex) {
+        this.documentStore = documentStore;
+        this.documentSearch = documentSearch;
+        this.vectorIndex = vectorIndex;
+    }
+
+    public void ingest(String name, InputStream in) throws IOException {
+        long start = System.currentTimeMillis();
+        store(name, in);
+        index(name, start, 0L);
+    }
+
+    private void store(String name, InputStream in) throws IOException {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024)) {
+            DocumentStore.Writer writer = documentStore.writer(name);
+            String line;
+            while ((line = br.readLine()) != null) {
+                writer.addLine(line);
+            }
+            writer.commit();
+        }
+    }
+
+    public void ingestFile(String name, Path file) throws IOException {
+        long start = System.currentTimeMillis();
+        // A file too large for one mapping is streamed onto the heap instead
+        if (mapFiles && Files.size(file) <= DocumentStore.MAX_MAPPED_BYTES) {
+            documentStore.putMapped(name, file);
+        } else {
+            try (InputStream in = Files.newInputStream(file)) {
+                store(name, in);
+            }
+        }
+        index(name, start, Files.getLastModifiedTime(file).toMillis());
+    }
+
+    public boolean contains(String name) {
+        return documentStore.contains(name);
+    }
+
+    public void remove(String name) {
+        documentSearch.removeDocument(name);
+        vectorIndex.removeDocument(name);
+    }
+
+    // modifiedAt <= 0 means unknown; the vector index then records the ingestion time
+    private void index(String name, long start, long modifiedAt) {
+        List<String> lines = documentStore.lines(name);
+        documentSearch.indexStoredDocument(name);
+        vectorIndex.indexDocument(name, lines, frontMatter(lines), modifiedAt);
+        log.info("[DocumentIngestor] Ingested {} ({} lines) in {}ms", name, documentStore.lineCount(name),
+                System.currentTimeMillis() - start);
+    }
+
+    // Attributes from a leading "---" YAML-style block ("tags: [billing, api]", "owner: payments"), used as
+    // vector search filter fields; "tags" is exposed as the "tag" field
+    static Map<String, List<String>> frontMatter(List<String> lines) {
+        Map<String, List<String>> attributes = new LinkedHashMap<>();
+        if (lines.isEmpty() || !lines.get(0).trim().equals("---")) return attributes;
+        int limit = Math.min(lines.size(), 64);
+        for (int i = 1; i < limit; i++) {
+            String line = lines.get(i);
+            if (line.trim().equals("---")) return attributes;
+            int colon = line.indexOf(':');
+            if (colon <= 0 || Character.isWhitespace(line.charAt(0))) continue;
+            String key = line.substring(0, colon).trim().toLowerCase();
+            String raw = line.substring(colon + 1).trim();
+            boolean list = raw.startsWith("[") && raw.endsWith("]");
+            if (list) raw = raw.substring(1, raw.length() - 1);
+            List<String> values = new ArrayList<>();
+            for (String v : list || key.equals("tags") ? raw.split(",") : new String[]{raw}) {
+                String value = v.trim().replaceAll("^[\"']|[\"']$", "");
+                if (!value.isEmpty()) values.add(value);
+            }
+            if (!values.isEmpty()) attributes.put(key.equals("tags") ? "tag" : key, values);
+        }
+        // No closing delimiter: not front matter
+        return new LinkedHashMap<>();
+    }
+}
@@ -0,0 +1,224 @@
+package com.ai.ollama.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+// Routes embedding calls to the Hugging Face or Ollama client. With a secondary provider configured, a call the
+// primary has not answered within its recent latency percentile is hedged to the secondary (first answer wins),
+// a failed call fails over to it, and a primary that keeps failing is skipped for a cooldown.
+// Providers are only interchangeable when they embed into the same space: embedding.<provider>.space, defaulting
+// to the provider's model name. Otherwise the secondary is ignored, so one index never mixes two models' vectors.
+@Service
+public class EmbeddingRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingRouter.class);
+
+    public static final String HUGGING_FACE = "huggingface";
+    public static final String OLLAMA = "ollama";
+
+    private final HuggingFaceEmbeddingClient huggingFace;
+    private final OllamaEmbeddingClient ollama;
+    private final RagMetrics metrics;
+
+    // huggingface or ollama; secondary empty = no hedging or failover
+    @Value("${embedding.router.primary:huggingface}")
+    private String primaryName;
+
+    @Value("${embedding.router.secondary:}")
+    private String secondaryName;
+
+    @Value("${embedding.huggingface.space:}")
+    private String huggingFaceSpace;
+
+    @Value("${embedding.ollama.space:}")
+    private String ollamaSpace;
+
+    // Hedge after this percentile of the provider's recent latencies (at least hedge-min-ms); hedge-initial-ms
+    // until enough calls have been seen
+    @Value("${embedding.router.hedge-percentile:0.95}")
+    private double hedgePercentile;
+
+    @Value("${embedding.router.hedge-min-ms:20}")
+    private long hedgeMinMs;
+
+    @Value("${embedding.router.hedge-initial-ms:500}")
+    private long hedgeInitialMs;
+
+    @Value("${embedding.router.cooldown-ms:30000}")
+    private long cooldownMs;
+
+    private volatile Route[] routes;
+
+    public EmbeddingRouter(HuggingFaceEmbeddingClient huggingFace, OllamaEmbeddingClient ollama, RagMetrics metrics) {
+        this.huggingFace = huggingFace;
+        this.ollama = ollama;
+        this.metrics = metrics;
+    }
+
+    static final class Route {
+        final String name;
+        final String space;
+        final Function<String, List<Double>> blocking;
+        final Function<String, Mono<List<Double>>> reactive;
+        final LatencyWindow latencies = new LatencyWindow(256);
+        volatile long downUntil;
+
+        Route(String name, String space, Function<String, List<Double>> blocking,
+              Function<String, Mono<List<Double>>> reactive) {
+            this.name = name;
+            this.space = space;
+            this.blocking = blocking;
+            this.reactive = reactive;
+        }
+    }
+
+    // Ring of recent successful call latencies
+    static final class LatencyWindow {
+        private final long[] millis;
+        private int next;
+        private int count;
+
+        LatencyWindow(int size) {
+            this.millis = new long[size];
+        }
+
+        synchronized void record(long ms) {
+            millis[next] = ms;
+            next = (next + 1) % millis.length;
+            if (count < millis.length) count++;
+        }
+
+        synchronized int count() {
+            return count;
+        }
+
+        synchronized long percentile(double p) {
+            if (count == 0) return 0;
+            long[] sorted = Arrays.copyOf(millis, count);
+            Arrays.sort(sorted);
+            int idx = (int) Math.ceil(p * count) - 1;
+            return sorted[Math.min(Math.max(idx, 0), count - 1)];
+        }
+    }
+
+    // Identifies the vectors this router returns; two indexes built with different spaces are not comparable
+    public String space() {
+        return routes()[0].space;
+    }
+
+    // Blocking variant for indexing threads; failures are logged and yield an empty vector
+    public List<Double> embed(String text) {
+        Route[] r = routes();
+        if (r.length == 1) return r[0].blocking.apply(text);
+        List<Double> vector = embedReactive(text)
+                .onErrorResume(ex -> {
+                    log.warn("[EmbeddingRouter] Embedding failed on every provider: {}", ex.toString());
+                    return Mono.just(List.of());
+                })
+                .block();
+        return vector == null ? List.of() : vector;
+    }
+
+    public Mono<List<Double>> embedReactive(String text) {
+        Route[] r = routes();
+        if (r.length == 1) return r[0].reactive.apply(text);
+        // A primary in cooldown goes second; it then only answers when the secondary fails or is slow
+        boolean swap = r[0].downUntil > System.currentTimeMillis() && r[1].downUntil <= System.currentTimeMillis();
+        Route first = swap ? r[1] : r[0];
+        Route backup = swap ? r[0] : r[1];
+        long delayMs = hedgeDelay(first);
+
+        // Shared so the hedge can react to its failure; it keeps running when the hedge wins, which still
+        // feeds its latency window
+        Mono<List<Double>> firstCall = call(first, text).cache();
+        Mono<List<Double>> backupCall = Mono.firstWithSignal(
+                        Mono.delay(Duration.ofMillis(delayMs)).thenReturn(Boolean.TRUE),
+                        // completes empty when the first provider answers, so no backup call is made
+                        firstCall.flatMap(v -> Mono.<Boolean>empty()).onErrorReturn(Boolean.FALSE))
+                .flatMap(timedOut -> {
+                    metrics.embeddingRoute(timedOut ? "hedge" : "failover");
+                    return call(backup, text);
+                })
+                .doOnNext(v -> metrics.embeddingRoute("backup_won"));
+        // Both failed: surface the first provider's error
+        return ReactiveCalls.firstWithValue(firstCall, backupCall);
+    }
+
+    private Mono<List<Double>> call(Route route, String text) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return route.reactive.apply(text)
+                    .doOnNext(v -> route.latencies.record((System.nanoTime() - start) / 1_000_000))
+                    .doOnError(ex -> {
+                        if (ReactiveCalls.isTransientOrTimeout(ex)) {
+                            route.downUntil = System.currentTimeMillis() + cooldownMs;
+                            log.warn("[EmbeddingRouter] {} failed, preferring the other provider for {}ms: {}",
+                                    route.name, cooldownMs, ex.toString());
+                        }
+                    });
+        });
+    }
+
+    private long hedgeDelay(Route route) {
+        if (route.latencies.count() < 20) return Math.max(hedgeMinMs, hedgeInitialMs);
+        return Math.max(hedgeMinMs, route.latencies.percentile(hedgePercentile));
+    }
+
+    private Route[] routes() {
+        Route[] r = routes;
+        if (r == null) {
+            synchronized (this) {
+                if (routes == null) routes = resolveRoutes();
+                r = routes;
+            }
+        }
+        return r;
+    }
+
+    private Route[] resolveRoutes() {
+        Route primary = route(primaryName == null || primaryName.isBlank() ? HUGGING_FACE : primaryName);
+        if (secondaryName == null || secondaryName.isBlank()) {
+            log.info("[EmbeddingRouter] Embedding with {} (space {})", primary.name, primary.space);
+            return new Route[]{primary};
+        }
+        Route secondary = route(secondaryName);
+        if (secondary.name.equals(primary.name)) {
+            throw new IllegalStateException("embedding.router.secondary must differ from the primary provider");
+        }
+        if (!secondary.space.equals(primary.space)) {
+            log.warn("[EmbeddingRouter] {} embeds into {} but {} into {}; hedging and failover disabled so the index "
+                    + "keeps one model's vectors. Set embedding.<provider>.space when both serve the same model.",
+                    primary.name, primary.space, secondary.name, secondary.space);
+            return new Route[]{primary};
+        }
+        log.info("[EmbeddingRouter] Embedding with {} hedged/failing over to {} (space {})", primary.name,
+                secondary.name, primary.space);
+        return new Route[]{primary, secondary};
+    }
+
+    private Route route(String name) {
+        String key = name.trim().toLowerCase(Locale.ROOT);
+        return switch (key) {
+            case HUGGING_FACE -> new Route(HUGGING_FACE, spaceOf(huggingFaceSpace, huggingFace.getModel()),
+                    huggingFace::embed, huggingFace::embedReactive);
+            case OLLAMA -> {
+                if (ollama == null) throw new IllegalStateException("Ollama embedding client is not available");
+                yield new Route(OLLAMA, spaceOf(ollamaSpace, ollama.getModel()), ollama::embed, ollama::embedReactive);
+            }
+            default -> throw new IllegalArgumentException("Unknown embedding provider: " + name);
+        };
+    }
+
+    private static String spaceOf(String configured, String model) {
+        return configured != null && !configured.isBlank() ? configured.trim() : String.valueOf(model);
+    }
+}
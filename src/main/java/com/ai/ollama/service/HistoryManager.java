@@ -0,0 +1,236 @@
+package com.ai.ollama.service;
+
+import com.ai.ollama.model.ChatRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Keeps chat history within a per-model token budget. Leading system messages and the most recent turns are sent
+// verbatim; older turns are replaced by a rolling summary cached per conversation (ChatRequest.conversationId, or
+// the system messages and the first exchange when absent). Compaction summarizes down to chat.history.keep-recent turns, so the summary
+// is reused unchanged for the following turns until the budget is reached again, and only the newly evicted
+// turns are folded into it then. Prefill per turn therefore stays bounded by the budget however long the
+// conversation grows.
+@Service
+public class HistoryManager {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoryManager.class);
+    private static final String CACHE = "history_summary";
+    private static final String SUMMARY_PREFIX = "Summary of the earlier conversation:\n";
+    private static final String SUMMARY_SYSTEM = "You maintain a running summary of a conversation between a user and an assistant. "
+            + "Merge the previous summary (if any) with the new messages. Keep facts, names, numbers, decisions, "
+            + "user preferences and open questions; drop pleasantries. Reply with the summary only.";
+
+    private final ChatClient chatClient;
+    private final ModelLifecycleManager modelLifecycleManager;
+    private final RagMetrics metrics;
+    private final Map<String, Summary> summaries;
+
+    @Value("${chat.history.enabled:true}")
+    private boolean enabled;
+
+    // Estimated tokens (~4 chars) for the whole history; keep it below num_ctx minus room for the answer
+    @Value("${chat.history.budget-tokens:3072}")
+    private int defaultBudget;
+
+    // Per-model overrides, e.g. llama3.1=6000,qwen2.5:14b=12000 (a name without tag matches every tag)
+    @Value("${chat.history.model-budgets:}")
+    private String modelBudgets;
+
+    // Turns kept verbatim right after a compaction, at most; fewer when they would fill more than compact-to of
+    // the budget, which leaves room for the next turns before the summary has to be extended again
+    @Value("${chat.history.keep-recent:6}")
+    private int keepRecent;
+
+    @Value("${chat.history.compact-to:0.6}")
+    private double compactTo;
+
+    // Model writing the summaries; empty = the model of the conversation
+    @Value("${chat.history.summary-model:}")
+    private String summaryModel;
+
+    @Value("${chat.history.summary-tokens:256}")
+    private int summaryTokens;
+
+    private volatile Map<String, Integer> budgets;
+
+    public HistoryManager(ChatClient.Builder chatClientBuilder, ModelLifecycleManager modelLifecycleManager,
+                          RagMetrics metrics, @Value("${chat.history.cache-size:1000}") int cacheSize) {
+        this.chatClient = chatClientBuilder.build();
+        this.modelLifecycleManager = modelLifecycleManager;
+        this.metrics = metrics;
+        int capacity = Math.max(1, cacheSize);
+        this.summaries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Summary> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    // Summary of turns [0, covered) of a conversation; prefixHash detects a client that rewrote those turns
+    record Summary(int covered, long prefixHash, String text) {}
+
+    public List<ChatRequest.Message> compact(ChatRequest request, String model) {
+        List<ChatRequest.Message> all = request.getMessages() == null ? List.of() : request.getMessages();
+        int budget = budgetFor(model);
+        if (!enabled || tokens(all) <= budget) return all;
+
+        int head = 0;
+        while (head < all.size() && "system".equalsIgnoreCase(all.get(head).getRole())) head++;
+        List<ChatRequest.Message> system = all.subList(0, head);
+        List<ChatRequest.Message> turns = all.subList(head, all.size());
+        if (turns.size() < 2) return all;
+
+        String key = conversationKey(request, all, head);
+        Summary cached = summaries.get(key);
+        if (cached != null && (cached.covered() >= turns.size() || cached.prefixHash() != hash(turns, cached.covered()))) {
+            cached = null;
+        }
+        if (cached != null) {
+            List<ChatRequest.Message> reused = assemble(system, cached.text(), turns.subList(cached.covered(), turns.size()));
+            if (tokens(reused) <= budget) {
+                metrics.cacheHit(CACHE);
+                return reused;
+            }
+        }
+        metrics.cacheMiss(CACHE);
+
+        // Low watermark: keep-recent turns within compact-to of the budget next to the summary, and always at
+        // least one turn beyond what the cached summary covers
+        int reserve = tokens(system) + summaryTokens + 8;
+        int target = (int) (budget * Math.min(Math.max(compactTo, 0.1), 1.0));
+        int cut = Math.min(Math.max(turns.size() - Math.max(1, keepRecent), 1), turns.size() - 1);
+        while (cut < turns.size() - 1 && reserve + tokens(turns.subList(cut, turns.size())) > target) cut++;
+        if (cached != null && cut <= cached.covered()) cut = Math.min(cached.covered() + 1, turns.size() - 1);
+
+        long start = System.currentTimeMillis();
+        String text;
+        try {
+            text = cached != null && cut > cached.covered()
+                    ? summarize(cached.text(), turns.subList(cached.covered(), cut), model)
+                    : summarize(null, turns.subList(0, cut), model);
+        } catch (Exception e) {
+            // Without a summary the oldest turns are dropped rather than overflowing the context
+            log.warn("[HistoryManager] Summarizing conversation {} failed, dropping {} older turns: {}", key, cut, e.toString());
+            List<ChatRequest.Message> out = new ArrayList<>(system);
+            out.addAll(turns.subList(cut, turns.size()));
+            return out;
+        }
+        summaries.put(key, new Summary(cut, hash(turns, cut), text));
+        List<ChatRequest.Message> out = assemble(system, text, turns.subList(cut, turns.size()));
+        log.info("[HistoryManager] Compacted conversation {}: {} -> {} tokens, {} turns summarized in {}ms", key,
+                tokens(all), tokens(out), cut, System.currentTimeMillis() - start);
+        return out;
+    }
+
+    int budgetFor(String model) {
+        Map<String, Integer> b = budgets;
+        if (b == null) {
+            b = new HashMap<>();
+            if (modelBudgets != null) {
+                for (String entry : modelBudgets.split(",")) {
+                    int eq = entry.lastIndexOf('=');
+                    if (eq <= 0) continue;
+                    try {
+                        b.put(entry.substring(0, eq).trim().toLowerCase(Locale.ROOT), Integer.parseInt(entry.substring(eq + 1).trim()));
+                    } catch (NumberFormatException e) {
+                        log.warn("[HistoryManager] Ignoring budget entry '{}'", entry);
+                    }
+                }
+            }
+            budgets = b;
+        }
+        String name = model == null ? "" : model.trim().toLowerCase(Locale.ROOT);
+        Integer budget = b.get(name);
+        if (budget == null && name.indexOf(':') > 0) budget = b.get(name.substring(0, name.indexOf(':')));
+        return budget != null ? budget : defaultBudget;
+    }
+
+    private static List<ChatRequest.Message> assemble(List<ChatRequest.Message> system, String summary,
+                                                      List<ChatRequest.Message> recent) {
+        List<ChatRequest.Message> out = new ArrayList<>(system.size() + recent.size() + 1);
+        out.addAll(system);
+        out.add(new ChatRequest.Message("system", SUMMARY_PREFIX + summary));
+        out.addAll(recent);
+        return out;
+    }
+
+    // Package-private so tests can stand in for the model
+    String summarize(String previous, List<ChatRequest.Message> turns, String model) {
+        StringBuilder user = new StringBuilder();
+        if (previous != null) {
+            user.append("Previous summary:\n").append(previous).append("\n\n");
+        }
+        user.append("New messages:\n");
+        for (ChatRequest.Message m : turns) {
+            user.append(m.getRole() == null ? "user" : m.getRole().toLowerCase(Locale.ROOT)).append(": ")
+                    .append(m.getContent() == null ? "" : m.getContent()).append("\n");
+        }
+        String target = summaryModel == null || summaryModel.isBlank() ? model : summaryModel;
+        OllamaOptions options = OllamaOptions.builder()
+                .model(target)
+                .keepAlive(modelLifecycleManager.getKeepAlive())
+                .temperature(0.2)
+                .numPredict(summaryTokens)
+                .build();
+        boolean cold = modelLifecycleManager.beginCall(target);
+        long callStart = System.currentTimeMillis();
+        String content = this.chatClient
+                .prompt(new Prompt(List.of(new SystemMessage(SUMMARY_SYSTEM), new UserMessage(user.toString())), options))
+                .call()
+                .content();
+        modelLifecycleManager.recordLatency(target, cold, System.currentTimeMillis() - callStart);
+        if (content == null || content.isBlank()) {
+            throw new IllegalStateException("Empty summary from " + target);
+        }
+        return content.trim();
+    }
+
+    // Without an id, conversations are told apart by their system messages and first exchange: keyed on the
+    // opening message alone, every conversation starting with the same question would evict the others' summary
+    private static String conversationKey(ChatRequest request, List<ChatRequest.Message> all, int head) {
+        String id = request.getConversationId();
+        if (id != null && !id.isBlank()) return id.trim();
+        return "opening-" + Long.toHexString(hash(all, head + 2));
+    }
+
+    // Estimated tokens, plus a few per message for the chat template's role markers
+    static int tokens(List<ChatRequest.Message> messages) {
+        int total = 0;
+        for (ChatRequest.Message m : messages) {
+            total += Chunker.estimateTokens(m.getContent() == null ? "" : m.getContent()) + 4;
+        }
+        return total;
+    }
+
+    // 64-bit FNV-1a over role and content of the first count turns
+    static long hash(List<ChatRequest.Message> turns, int count) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < count && i < turns.size(); i++) {
+            ChatRequest.Message m = turns.get(i);
+            String s = (m.getRole() == null ? "user" : m.getRole()) + '\u0000' + (m.getContent() == null ? "" : m.getContent());
+            for (int k = 0; k < s.length(); k++) {
+                h ^= s.charAt(k);
+                h *= 0x100000001b3L;
+            }
+            h ^= '\u0001';
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
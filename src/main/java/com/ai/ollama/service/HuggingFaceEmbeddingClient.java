@@ -2,6 +2,7 @@ package com.ai.ollama.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -11,8 +12,7 @@ import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -35,49 +35,79 @@ public class HuggingFaceEmbeddingClient {
     @Value("${huggingface.api.model:sentence-transformers/all-MiniLM-L6-v2}")
     private String model;
 
-    public HuggingFaceEmbeddingClient(WebClient.Builder webClientBuilder) {
+    // Per attempt; transient failures (connection errors, timeouts, 429/502/503/504) are retried with jittered backoff
+    @Value("${embedding.timeout-ms:10000}")
+    private long timeoutMs;
+
+    @Value("${embedding.retries:2}")
+    private int retries;
+
+    @Value("${embedding.retry-backoff-ms:200}")
+    private long retryBackoffMs;
+
+    public HuggingFaceEmbeddingClient(@Qualifier("huggingFaceWebClientBuilder") WebClient.Builder webClientBuilder) {
         this.webClient = webClientBuilder.build();
     }
 
+    // The model repo id, or the endpoint when the model is part of the base URL
+    public String getModel() {
+        return StringUtils.hasText(model) ? model : baseUrl;
+    }
+
+    // Blocking variant for indexing threads; failures are logged and yield an empty vector
     public List<Double> embed(String text) {
         try {
             if (text == null || text.isBlank()) return List.of();
-            String token = StringUtils.hasText(apiTokenProp) ? apiTokenProp : apiTokenEnv;
-            String uri = baseUrl;
-            if (StringUtils.hasText(model)) {
-                uri = baseUrl.endsWith("/") ? baseUrl + model : baseUrl + "/" + model;
-            }
-
-            Map<String, Object> payload = Map.of(
-                    "inputs", text
-            );
-
-
-            WebClient.RequestHeadersSpec<?> spec = this.webClient
-                    .post()
-                    .uri(uri)
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .body(BodyInserters.fromValue(payload));
-            if (StringUtils.hasText(token)) {
-                spec = spec.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
-            }
-
-            Object response = spec
-                    .retrieve()
-                    .bodyToMono(Object.class)
+            List<Double> vector = embedReactive(text)
                     .onErrorResume(ex -> {
                         log.warn("[HuggingFaceEmbeddingClient] Embedding call failed: {}", ex.toString());
-                        return Mono.just(Collections.emptyList());
+                        return Mono.just(List.of());
                     })
                     .block();
-
-            return normalizeToVector(response);
+            return vector == null ? List.of() : vector;
         } catch (Exception e) {
             log.warn("[HuggingFaceEmbeddingClient] Embedding exception: {}", e.toString());
             return List.of();
         }
     }
 
+    // Errors with the upstream failure once retries are exhausted, IllegalArgumentException for blank text and
+    // IllegalStateException when the response carries no vector; never completes empty
+    public Mono<List<Double>> embedReactive(String text) {
+        if (text == null || text.isBlank()) {
+            return Mono.error(new IllegalArgumentException("Cannot embed blank text"));
+        }
+        String token = StringUtils.hasText(apiTokenProp) ? apiTokenProp : apiTokenEnv;
+        String uri = !StringUtils.hasText(model) ? baseUrl
+                : baseUrl.endsWith("/") ? baseUrl + model : baseUrl + "/" + model;
+
+        Map<String, Object> payload = Map.of(
+                "inputs", text
+        );
+
+        WebClient.RequestHeadersSpec<?> spec = this.webClient
+                .post()
+                .uri(uri)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(payload));
+        if (StringUtils.hasText(token)) {
+            spec = spec.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        }
+
+        return spec
+                .retrieve()
+                .bodyToMono(Object.class)
+                .timeout(Duration.ofMillis(timeoutMs))
+                .retryWhen(ReactiveCalls.backoff(retries, retryBackoffMs, ReactiveCalls::isTransientOrTimeout))
+                .map(response -> {
+                    List<Double> vector = normalizeToVector(response);
+                    if (vector.isEmpty()) {
+                        throw new IllegalStateException("Unrecognized or empty feature-extraction response from " + uri);
+                    }
+                    return vector;
+                });
+    }
+
     @SuppressWarnings("unchecked")
     private List<Double> normalizeToVector(Object response) {
         if (response == null) return List.of();
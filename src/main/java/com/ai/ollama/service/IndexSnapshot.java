@@ -0,0 +1,201 @@
+package com.ai.ollama.service;
+
+import com.ai.ollama.utils.DocumentSearch;
+import com.ai.ollama.utils.DocumentStore;
+import com.ai.ollama.utils.SnapshotIO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Prebuilt keyword and vector indexes, so a new instance serves without re-reading and re-embedding the docs.
+// One file: a versioned header (format, embedding space, chunking signature, docs fingerprint), the documents
+// with their chunk vectors, then the keyword postings. A snapshot built for other docs, another embedding model
+// or other chunking settings is ignored and the indexes are rebuilt as before. A snapshot on the file system is
+// memory-mapped and parsed in place; one inside the jar is read into the heap first.
+@Service
+public class IndexSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexSnapshot.class);
+
+    static final int MAGIC = 0x4F4C4958; // "OLIX"
+    static final int FORMAT_VERSION = 1;
+
+    private final DocumentStore documentStore;
+    private final DocumentSearch documentSearch;
+    private final VectorIndex vectorIndex;
+    private final EmbeddingRouter embeddingRouter;
+    private final ChunkerFactory chunkerFactory;
+
+    public IndexSnapshot(DocumentStore documentStore, DocumentSearch documentSearch, VectorIndex vectorIndex,
+                         EmbeddingRouter embeddingRouter, ChunkerFactory chunkerFactory) {
+        this.documentStore = documentStore;
+        this.documentSearch = documentSearch;
+        this.vectorIndex = vectorIndex;
+        this.embeddingRouter = embeddingRouter;
+        this.chunkerFactory = chunkerFactory;
+    }
+
+    public record Loaded(int documents, int chunks, boolean mapped, long tookMs) {}
+
+    private record Document(String name, long modifiedAt, List<String> lines, List<VectorIndex.Entry> chunks) {}
+
+    public void write(Path file, String docsFingerprint) throws IOException {
+        long start = System.currentTimeMillis();
+        Map<String, VectorIndex.DocumentChunks> indexed = vectorIndex.documents();
+        List<String> names = new ArrayList<>(documentStore.documentNames());
+        names.sort(null);
+        if (file.toAbsolutePath().getParent() != null) Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        int chunks = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            SnapshotIO.writeString(out, embeddingRouter.space());
+            SnapshotIO.writeString(out, chunkerFactory.signature());
+            SnapshotIO.writeString(out, docsFingerprint);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(vectorIndex.dimensions());
+            out.writeInt(names.size());
+            for (String name : names) {
+                VectorIndex.DocumentChunks doc = indexed.get(name);
+                List<String> lines = documentStore.lines(name);
+                SnapshotIO.writeString(out, name);
+                out.writeLong(doc == null ? 0L : doc.modifiedAt());
+                out.writeInt(lines.size());
+                for (String line : lines) {
+                    SnapshotIO.writeString(out, line);
+                }
+                List<VectorIndex.Entry> entries = doc == null ? List.of() : doc.chunks();
+                out.writeInt(entries.size());
+                for (VectorIndex.Entry e : entries) {
+                    out.writeInt(e.startLine);
+                    out.writeInt(e.endLine);
+                    out.writeLong(e.contentHash);
+                    out.writeInt(e.vector.length);
+                    for (double v : e.vector) out.writeDouble(v);
+                }
+                chunks += entries.size();
+            }
+            documentSearch.writeSnapshot(out);
+            out.writeInt(MAGIC);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("[IndexSnapshot] Wrote {} documents, {} chunks, {} keyword terms to {} ({} KB) in {}ms", names.size(),
+                chunks, documentSearch.termCount(), file, Files.size(file) / 1024, System.currentTimeMillis() - start);
+    }
+
+    // Null when there is no usable snapshot. Documents and vectors are applied only once the whole file has parsed;
+    // after a failure the caller re-indexes, which also replaces any keyword postings already read
+    public Loaded load(Resource resource, String docsFingerprint) throws IOException {
+        long start = System.currentTimeMillis();
+        if (resource == null || !resource.exists()) {
+            log.info("[IndexSnapshot] No snapshot at {}; indexing documents", resource);
+            return null;
+        }
+        boolean mapped = resource.isFile();
+        ByteBuffer in = mapped ? map(resource.getFile().toPath()) : read(resource);
+
+        if (in.remaining() < 8 || in.getInt() != MAGIC) {
+            log.warn("[IndexSnapshot] {} is not an index snapshot; indexing documents", resource);
+            return null;
+        }
+        int version = in.getInt();
+        String space = version == FORMAT_VERSION ? SnapshotIO.readString(in) : null;
+        String chunking = version == FORMAT_VERSION ? SnapshotIO.readString(in) : null;
+        String fingerprint = version == FORMAT_VERSION ? SnapshotIO.readString(in) : null;
+        String mismatch = version != FORMAT_VERSION ? "format " + version + ", expected " + FORMAT_VERSION
+                : !space.equals(embeddingRouter.space()) ? "embedding space " + space + ", expected " + embeddingRouter.space()
+                : !chunking.equals(chunkerFactory.signature()) ? "chunking " + chunking + ", expected " + chunkerFactory.signature()
+                : !fingerprint.equals(docsFingerprint) ? "docs fingerprint " + fingerprint + ", expected " + docsFingerprint
+                : null;
+        if (mismatch != null) {
+            log.warn("[IndexSnapshot] Ignoring {}: built for {}; indexing documents", resource, mismatch);
+            return null;
+        }
+        long createdAt;
+        int dimensions;
+        int count;
+        List<Document> documents;
+        int chunks = 0;
+        // A file cut short runs out of bytes or reads a bogus length somewhere in the middle; reported like a
+        // missing end marker
+        try {
+            createdAt = in.getLong();
+            dimensions = in.getInt();
+
+            count = in.getInt();
+            documents = new ArrayList<>(count);
+            for (int d = 0; d < count; d++) {
+                String name = SnapshotIO.readString(in);
+                long modifiedAt = in.getLong();
+                int lineCount = in.getInt();
+                List<String> lines = new ArrayList<>(lineCount);
+                for (int l = 0; l < lineCount; l++) {
+                    lines.add(SnapshotIO.readString(in));
+                }
+                int chunkCount = in.getInt();
+                List<VectorIndex.Entry> entries = new ArrayList<>(chunkCount);
+                for (int c = 0; c < chunkCount; c++) {
+                    int startLine = in.getInt();
+                    int endLine = in.getInt();
+                    long hash = in.getLong();
+                    double[] vector = new double[in.getInt()];
+                    in.asDoubleBuffer().get(vector);
+                    in.position(in.position() + vector.length * Double.BYTES);
+                    entries.add(new VectorIndex.Entry(name, startLine, endLine, hash, vector));
+                }
+                chunks += chunkCount;
+                documents.add(new Document(name, modifiedAt, lines, entries));
+            }
+            documentSearch.readSnapshot(in);
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Truncated index snapshot " + resource);
+            }
+        } catch (BufferUnderflowException | IllegalStateException | IllegalArgumentException e) {
+            throw new IOException("Truncated or corrupt index snapshot " + resource + ": " + e.getMessage(), e);
+        }
+        for (Document doc : documents) {
+            documentStore.put(doc.name(), doc.lines());
+            if (!vectorIndex.restoreDocument(doc.name(), doc.chunks(), DocumentIngestor.frontMatter(doc.lines()), doc.modifiedAt())) {
+                throw new IOException("Snapshot vectors of " + doc.name() + " are not " + vectorIndex.dimensions() + "-dimensional");
+            }
+        }
+        long took = System.currentTimeMillis() - start;
+        log.info("[IndexSnapshot] Loaded {} documents, {} chunks ({} dims), {} keyword terms from {} (built {}, {}) in {}ms",
+                count, chunks, dimensions, documentSearch.termCount(), resource, Instant.ofEpochMilli(createdAt),
+                mapped ? "mapped" : "read", took);
+        return new Loaded(count, chunks, mapped, took);
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Index snapshot " + file + " exceeds 2 GB");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static ByteBuffer read(Resource resource) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            return ByteBuffer.wrap(in.readAllBytes());
+        }
+    }
+}
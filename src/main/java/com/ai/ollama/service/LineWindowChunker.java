@@ -0,0 +1,45 @@
+package com.ai.ollama.service;
+
+import java.util.ArrayDeque;
+
+// Overlapping fixed-size line windows over a stream of lines; only the current window is held in memory
+class LineWindowChunker extends Chunker {
+
+    private final int chunkSize;
+    private final int step;
+    private final ArrayDeque<String> window = new ArrayDeque<>();
+    private int windowStart = 1; // 1-based line number of the first line in the window
+    private int lineCount;
+    private int lastEmittedEnd;
+
+    LineWindowChunker(int chunkSize, int overlap, int minChars, Sink sink) {
+        super(minChars, sink);
+        this.chunkSize = chunkSize;
+        this.step = chunkSize - overlap;
+    }
+
+    @Override
+    void accept(String line) {
+        window.addLast(line == null ? "" : line);
+        lineCount++;
+        if (window.size() == chunkSize) {
+            flush();
+            for (int i = 0; i < step; i++) {
+                window.removeFirst();
+            }
+            windowStart += step;
+        }
+    }
+
+    @Override
+    void finish() {
+        if (lineCount > lastEmittedEnd && !window.isEmpty()) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        lastEmittedEnd = windowStart + window.size() - 1;
+        emit(windowStart, window);
+    }
+}
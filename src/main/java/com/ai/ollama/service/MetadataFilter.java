@@ -0,0 +1,109 @@
+package com.ai.ollama.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Conjunction of "field op value" clauses used to pre-filter chunks before they are scored, e.g.
+//   collection=tenant-a    tag=billing|invoices    doc^=api/    ext!=pdf    modified>=2024-06-01
+// "|" separates alternatives for = and ^=; != excludes every listed value. Fields are the attributes
+// VectorIndex keeps per document (doc, collection, dir, ext, tag, modified) plus any supplied at ingestion.
+public final class MetadataFilter {
+
+    public static final String MODIFIED = "modified";
+
+    public enum Op {
+        EQ("="), NE("!="), PREFIX("^="), GE(">="), LE("<="), GT(">"), LT("<");
+
+        final String symbol;
+
+        Op(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    public record Clause(String field, Op op, List<String> values) {
+        boolean isRange() {
+            return op == Op.GE || op == Op.LE || op == Op.GT || op == Op.LT;
+        }
+    }
+
+    private static final Pattern CLAUSE = Pattern.compile("^\\s*([A-Za-z_][\\w.-]*)\\s*(!=|\\^=|>=|<=|=|>|<)\\s*(.*?)\\s*$");
+
+    static final MetadataFilter NONE = new MetadataFilter(List.of());
+
+    private final List<Clause> clauses;
+
+    private MetadataFilter(List<Clause> clauses) {
+        this.clauses = clauses;
+    }
+
+    public static MetadataFilter parse(Collection<String> expressions) {
+        if (expressions == null || expressions.isEmpty()) return NONE;
+        List<Clause> clauses = new ArrayList<>();
+        for (String expr : expressions) {
+            if (expr == null || expr.isBlank()) continue;
+            Matcher m = CLAUSE.matcher(expr);
+            if (!m.matches() || m.group(3).isEmpty()) {
+                throw new IllegalArgumentException("Invalid filter expression: " + expr);
+            }
+            String field = m.group(1).toLowerCase();
+            Op op = Arrays.stream(Op.values()).filter(o -> o.symbol.equals(m.group(2))).findFirst().orElseThrow();
+            List<String> values = Arrays.stream(m.group(3).split("\\|"))
+                    .map(String::trim)
+                    .filter(v -> !v.isEmpty())
+                    .toList();
+            if (values.isEmpty()) {
+                throw new IllegalArgumentException("Invalid filter expression: " + expr);
+            }
+            Clause clause = new Clause(field, op, values);
+            if (clause.isRange() && values.size() != 1) {
+                throw new IllegalArgumentException("Range filter takes a single value: " + expr);
+            }
+            if (field.equals(MODIFIED)) {
+                // Times are compared, never matched as text, so a prefix has no meaning
+                if (op == Op.PREFIX) {
+                    throw new IllegalArgumentException("Prefix filter is not supported on " + MODIFIED + ": " + expr);
+                }
+                values.forEach(MetadataFilter::parseTime);
+            }
+            clauses.add(clause);
+        }
+        return clauses.isEmpty() ? NONE : new MetadataFilter(List.copyOf(clauses));
+    }
+
+    public List<Clause> getClauses() {
+        return clauses;
+    }
+
+    public boolean isEmpty() {
+        return clauses.isEmpty();
+    }
+
+    // Epoch millis from an ISO date (2024-06-01), ISO instant (2024-06-01T12:00:00Z) or raw epoch millis
+    static long parseTime(String value) {
+        try {
+            if (value.chars().allMatch(Character::isDigit)) return Long.parseLong(value);
+            if (value.length() == 10) return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            return Instant.parse(value).toEpochMilli();
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid date in filter: " + value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        for (Clause c : clauses) {
+            parts.add(c.field() + c.op().symbol + String.join("|", c.values()));
+        }
+        return String.join(" AND ", parts);
+    }
+}
@@ -0,0 +1,284 @@
+package com.ai.ollama.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class ModelLifecycleManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelLifecycleManager.class);
+
+    private final WebClient webClient;
+    private final RagMetrics metrics;
+
+    @Value("${spring.ai.ollama.base-url:${ollama.base-url:http://localhost:11434}}")
+    private String baseUrl;
+
+    @Value("${spring.ai.ollama.chat.options.model:llama3.1}")
+    private String defaultModel;
+
+    // Comma-separated list of chat models to load at startup; empty means only the default model
+    @Value("${ollama.lifecycle.preload-models:}")
+    private String preloadModels;
+
+    // Passed to Ollama as keep_alive on every load/ping/chat call (e.g. 30m, 1h, -1 for forever)
+    @Value("${ollama.lifecycle.keep-alive:30m}")
+    private String keepAlive;
+
+    @Value("${ollama.lifecycle.ping-interval-ms:60000}")
+    private long pingIntervalMs;
+
+    // Models without traffic for this long are no longer pinged and may be unloaded by Ollama
+    @Value("${ollama.lifecycle.traffic-window-ms:1800000}")
+    private long trafficWindowMs;
+
+    @Value("${ollama.lifecycle.enabled:true}")
+    private boolean enabled;
+
+    private final Map<String, Long> lastUsed = new ConcurrentHashMap<>();
+    // Configured models and every name /api/ps has reported: bounded by what Ollama has installed, unlike the
+    // model names clients send
+    private final Set<String> knownModels = ConcurrentHashMap.newKeySet();
+    private final Map<String, LatencyStats> coldStats = new ConcurrentHashMap<>();
+    private final Map<String, LatencyStats> warmStats = new ConcurrentHashMap<>();
+    private volatile Set<String> residentModels = Set.of();
+    private volatile ScheduledExecutorService scheduler;
+
+    public ModelLifecycleManager(WebClient.Builder webClientBuilder, RagMetrics metrics) {
+        this.webClient = webClientBuilder.build();
+        this.metrics = metrics;
+        metrics.gauge("ollama.models.resident", "Number of models Ollama reports as loaded", this,
+                m -> m.getResidentModels().size());
+    }
+
+    @PostConstruct
+    void init() {
+        knownModels.add(normalize(defaultModel));
+        configuredModels().forEach(m -> knownModels.add(normalize(m)));
+    }
+
+    public void start() {
+        if (!enabled || scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "model-lifecycle");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.execute(this::preload);
+        scheduler.scheduleWithFixedDelay(this::keepWarm, pingIntervalMs, pingIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public String getKeepAlive() {
+        return keepAlive;
+    }
+
+    public String getDefaultModel() {
+        return defaultModel;
+    }
+
+    public String resolveModel(String model) {
+        return model == null || model.isBlank() ? defaultModel : model;
+    }
+
+    // Called before a chat request; returns true when the model is not known to be loaded (cold call)
+    public boolean beginCall(String model) {
+        String key = normalize(resolveModel(model));
+        if (knownModels.contains(key)) {
+            lastUsed.put(key, System.currentTimeMillis());
+        }
+        return !residentModels.contains(key);
+    }
+
+    public void recordLatency(String model, boolean cold, long tookMs) {
+        String key = normalize(resolveModel(model));
+        boolean known = knownModels.contains(key);
+        // Stats and the ollama.chat model tag only use known names, anything else is counted as "other"
+        String name = known ? key : "other";
+        (cold ? coldStats : warmStats).computeIfAbsent(name, k -> new LatencyStats()).record(tookMs);
+        metrics.recordChat(name, cold, tookMs);
+        if (cold && known) {
+            markResident(key);
+        }
+    }
+
+    public Set<String> getResidentModels() {
+        return residentModels;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("resident", residentModels);
+        out.put("keepAlive", keepAlive);
+        Map<String, Object> models = new LinkedHashMap<>();
+        Set<String> keys = new LinkedHashSet<>(lastUsed.keySet());
+        keys.addAll(coldStats.keySet());
+        keys.addAll(warmStats.keySet());
+        for (String k : keys) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("cold", coldStats.getOrDefault(k, new LatencyStats()).toMap());
+            m.put("warm", warmStats.getOrDefault(k, new LatencyStats()).toMap());
+            Long used = lastUsed.get(k);
+            m.put("lastUsedMsAgo", used == null ? null : System.currentTimeMillis() - used);
+            models.put(k, m);
+        }
+        out.put("models", models);
+        return out;
+    }
+
+    void preload() {
+        refreshResident();
+        for (String model : configuredModels()) {
+            String key = normalize(model);
+            lastUsed.putIfAbsent(key, System.currentTimeMillis());
+            if (residentModels.contains(key)) {
+                log.info("[ModelLifecycleManager] Model {} already resident", key);
+                continue;
+            }
+            long start = System.currentTimeMillis();
+            if (load(model)) {
+                long took = System.currentTimeMillis() - start;
+                coldStats.computeIfAbsent(key, k -> new LatencyStats()).record(took);
+                markResident(key);
+                log.info("[ModelLifecycleManager] Preloaded model {} in {}ms", key, took);
+            }
+        }
+    }
+
+    void keepWarm() {
+        try {
+            refreshResident();
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, Long> e : lastUsed.entrySet()) {
+                if (now - e.getValue() > trafficWindowMs) continue;
+                // Re-send keep_alive so the unload timer restarts while the model still sees traffic. A model
+                // Ollama has evicted is left alone: reloading it would evict the other one again
+                if (!residentModels.contains(e.getKey())) continue;
+                load(e.getKey());
+            }
+        } catch (Exception ex) {
+            log.warn("[ModelLifecycleManager] Keep-alive cycle failed: {}", ex.toString());
+        }
+    }
+
+    // A generate call without a prompt only loads the model and resets its keep_alive timer
+    private boolean load(String model) {
+        try {
+            Map<String, Object> payload = Map.of(
+                    "model", model,
+                    "keep_alive", keepAlive
+            );
+            this.webClient
+                    .post()
+                    .uri(baseUrl + "/api/generate")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(BodyInserters.fromValue(payload))
+                    .retrieve()
+                    .toBodilessEntity()
+                    .block(Duration.ofMinutes(10));
+            return true;
+        } catch (Exception ex) {
+            log.warn("[ModelLifecycleManager] Failed to load model {}: {}", model, ex.toString());
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void refreshResident() {
+        try {
+            Map<String, Object> response = this.webClient
+                    .get()
+                    .uri(baseUrl + "/api/ps")
+                    .retrieve()
+                    .bodyToMono(Map.class)
+                    .block(Duration.ofSeconds(10));
+            if (response == null) return;
+            Object models = response.get("models");
+            Set<String> resident = new LinkedHashSet<>();
+            if (models instanceof List<?> list) {
+                for (Object o : list) {
+                    if (o instanceof Map<?, ?> m && m.get("name") instanceof String name) {
+                        resident.add(normalize(name));
+                    }
+                }
+            }
+            knownModels.addAll(resident);
+            residentModels = Set.copyOf(resident);
+        } catch (Exception ex) {
+            log.debug("[ModelLifecycleManager] /api/ps failed: {}", ex.toString());
+        }
+    }
+
+    private void markResident(String key) {
+        if (residentModels.contains(key)) return;
+        Set<String> next = new LinkedHashSet<>(residentModels);
+        next.add(key);
+        residentModels = Set.copyOf(next);
+    }
+
+    private List<String> configuredModels() {
+        if (preloadModels == null || preloadModels.isBlank()) {
+            return List.of(defaultModel);
+        }
+        return Arrays.stream(preloadModels.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    // Ollama reports "llama3.1:latest" for a model requested as "llama3.1"
+    static String normalize(String model) {
+        if (model == null) return "";
+        String m = model.trim();
+        return m.contains(":") ? m : m + ":latest";
+    }
+
+    static class LatencyStats {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalMs = new AtomicLong();
+        private final AtomicLong maxMs = new AtomicLong();
+
+        void record(long ms) {
+            count.incrementAndGet();
+            totalMs.addAndGet(ms);
+            maxMs.accumulateAndGet(ms, Math::max);
+        }
+
+        Map<String, Object> toMap() {
+            long c = count.get();
+            return Map.of(
+                    "count", c,
+                    "avgMs", c == 0 ? 0 : totalMs.get() / c,
+                    "maxMs", maxMs.get()
+            );
+        }
+    }
+}
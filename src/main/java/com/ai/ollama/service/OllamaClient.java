@@ -23,37 +23,43 @@ public class OllamaClient {
     private static final Logger log = LoggerFactory.getLogger(OllamaClient.class);
 
     private final ChatClient chatClient;
+    private final ModelLifecycleManager modelLifecycleManager;
+    private final HistoryManager historyManager;
 
-    public OllamaClient(ChatClient.Builder chatClientBuilder) {
+    public OllamaClient(ChatClient.Builder chatClientBuilder, ModelLifecycleManager modelLifecycleManager,
+                        HistoryManager historyManager) {
         this.chatClient = chatClientBuilder.build();
+        this.modelLifecycleManager = modelLifecycleManager;
+        this.historyManager = historyManager;
     }
 
     public ChatResponse chat(ChatRequest request) {
         long start = System.currentTimeMillis();
-        String model = request.getModel();
+        String model = modelLifecycleManager.resolveModel(request.getModel());
         int messageCount = request.getMessages() == null ? 0 : request.getMessages().size();
         log.info("[OllamaClient] Chat request received: model={}, messages={} optionsKeys={}", model, messageCount,
                 request.getOptions() == null ? "-" : request.getOptions().keySet());
         try {
-            // Build Spring AI Messages
+            // Build Spring AI Messages from the history, compacted to the model's token budget
             List<Message> aiMessages = new ArrayList<>();
-            if (request.getMessages() != null) {
-                for (ChatRequest.Message m : request.getMessages()) {
-                    String role = m.getRole() == null ? "user" : m.getRole().toLowerCase();
-                    String content = m.getContent() == null ? "" : m.getContent();
-                    switch (role) {
-                        case "system" -> aiMessages.add(new SystemMessage(content));
-                        case "assistant" -> aiMessages.add(new AssistantMessage(content));
-                        default -> aiMessages.add(new UserMessage(content));
-                    }
+            List<ChatRequest.Message> messages = historyManager.compact(request, model);
+            if (messages.size() != messageCount) {
+                log.info("[OllamaClient] History compacted: messages={} -> {}", messageCount, messages.size());
+            }
+            for (ChatRequest.Message m : messages) {
+                String role = m.getRole() == null ? "user" : m.getRole().toLowerCase();
+                String content = m.getContent() == null ? "" : m.getContent();
+                switch (role) {
+                    case "system" -> aiMessages.add(new SystemMessage(content));
+                    case "assistant" -> aiMessages.add(new AssistantMessage(content));
+                    default -> aiMessages.add(new UserMessage(content));
                 }
             }
 
             // Map basic options
-            OllamaOptions.Builder optionsBuilder = OllamaOptions.builder();
-            if (model != null && !model.isBlank()) {
-                optionsBuilder = optionsBuilder.model(model);
-            }
+            OllamaOptions.Builder optionsBuilder = OllamaOptions.builder()
+                    .model(model)
+                    .keepAlive(modelLifecycleManager.getKeepAlive());
             Map<String, Object> opts = request.getOptions();
             if (opts != null) {
                 Object temperature = opts.get("temperature");
@@ -76,13 +82,16 @@ public class OllamaClient {
 
             Prompt prompt = new Prompt(aiMessages, optionsBuilder.build());
 
+            boolean cold = modelLifecycleManager.beginCall(model);
+            long callStart = System.currentTimeMillis();
             String content = this.chatClient
                     .prompt(prompt)
                     .call()
                     .content();
+            modelLifecycleManager.recordLatency(model, cold, System.currentTimeMillis() - callStart);
 
             long took = System.currentTimeMillis() - start;
-            log.info("[OllamaClient] Chat completed: model={} took={}ms responseChars={}", model, took,
+            log.info("[OllamaClient] Chat completed: model={} cold={} took={}ms responseChars={}", model, cold, took,
                     content == null ? 0 : content.length());
             return new ChatResponse(model, content == null ? "" : content);
         } catch (Exception e) {
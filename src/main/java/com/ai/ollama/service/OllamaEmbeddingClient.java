@@ -9,7 +9,7 @@ import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
-import java.util.Collections;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -26,40 +26,66 @@ public class OllamaEmbeddingClient {
     @Value("${spring.ai.ollama.base-url:${ollama.base-url:http://localhost:11434}}")
     private String baseUrl;
 
+    // Per attempt; transient failures (connection errors, timeouts, 429/502/503/504) are retried with jittered backoff
+    @Value("${embedding.timeout-ms:10000}")
+    private long timeoutMs;
+
+    @Value("${embedding.retries:2}")
+    private int retries;
+
+    @Value("${embedding.retry-backoff-ms:200}")
+    private long retryBackoffMs;
+
     public OllamaEmbeddingClient(WebClient.Builder webClientBuilder) {
         this.webClient = webClientBuilder.build();
     }
 
+    public String getModel() {
+        return embeddingModel;
+    }
+
+    // Blocking variant for indexing threads; failures are logged and yield an empty vector
     public List<Double> embed(String text) {
         try {
-            Map<String, Object> payload = Map.of(
-                    "model", embeddingModel,
-                    "prompt", text
-            );
-            Map<String, Object> response = this.webClient
-                    .post()
-                    .uri(baseUrl + "/api/embeddings")
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .body(BodyInserters.fromValue(payload))
-                    .retrieve()
-                    .bodyToMono(Map.class)
+            List<Double> vector = embedReactive(text)
                     .onErrorResume(ex -> {
                         log.error("[OllamaEmbeddingClient] Embedding call failed: {}", ex.toString());
-                        return Mono.just(Collections.emptyMap());
+                        return Mono.just(List.of());
                     })
                     .block();
-            if (response == null) return List.of();
-            Object emb = response.get("embedding");
-            if (emb instanceof List<?> list) {
-                // Convert to List<Double>
-                return list.stream()
-                        .map(v -> v instanceof Number n ? n.doubleValue() : 0.0)
-                        .toList();
-            }
-            return List.of();
+            return vector == null ? List.of() : vector;
         } catch (Exception e) {
             log.error("[OllamaEmbeddingClient] Embedding exception: {}", e.toString());
             return List.of();
         }
     }
+
+    // Errors with the upstream failure once retries are exhausted, or IllegalStateException when the
+    // response carries no vector; never completes empty
+    @SuppressWarnings("unchecked")
+    public Mono<List<Double>> embedReactive(String text) {
+        Map<String, Object> payload = Map.of(
+                "model", embeddingModel,
+                "prompt", text == null ? "" : text
+        );
+        return this.webClient
+                .post()
+                .uri(baseUrl + "/api/embeddings")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(payload))
+                .retrieve()
+                .bodyToMono(Map.class)
+                .timeout(Duration.ofMillis(timeoutMs))
+                .retryWhen(ReactiveCalls.backoff(retries, retryBackoffMs, ReactiveCalls::isTransientOrTimeout))
+                .map(response -> {
+                    Object emb = ((Map<String, Object>) response).get("embedding");
+                    if (emb instanceof List<?> list && !list.isEmpty()) {
+                        // Convert to List<Double>
+                        return list.stream()
+                                .map(v -> v instanceof Number n ? n.doubleValue() : 0.0)
+                                .toList();
+                    }
+                    throw new IllegalStateException("Ollama returned no embedding for model " + embeddingModel);
+                });
+    }
 }
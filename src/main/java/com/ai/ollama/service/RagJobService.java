@@ -0,0 +1,168 @@
+package com.ai.ollama.service;
+
+import com.ai.ollama.model.ChatResponse;
+import com.ai.ollama.model.RagRequest;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Asynchronous /api/chat/docs: a job is queued on a bounded executor and polled for status and the per-document
+// summaries produced so far. Finished jobs are kept for rag.jobs.ttl-ms after completion, then evicted.
+@Service
+public class RagJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(RagJobService.class);
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED, CANCELLED }
+
+    private final RagService ragService;
+    private final ThreadPoolExecutor executor;
+    private final long ttlMs;
+    private final Map<String, RagJob> jobs = new ConcurrentHashMap<>();
+
+    public RagJobService(RagService ragService,
+                         @Value("${rag.jobs.threads:2}") int threads,
+                         @Value("${rag.jobs.queue-capacity:50}") int queueCapacity,
+                         @Value("${rag.jobs.ttl-ms:3600000}") long ttlMs) {
+        this.ragService = ragService;
+        this.ttlMs = ttlMs;
+        int n = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+            Thread t = new Thread(r, "rag-job");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    static final class RagJob implements RagService.Listener {
+        final String id = UUID.randomUUID().toString();
+        final long createdAt = System.currentTimeMillis();
+        // Moved only by compare-and-set, so a job is started once and finished once even when cancel() races a worker
+        final AtomicReference<Status> status = new AtomicReference<>(Status.QUEUED);
+        volatile String stage;
+        volatile long startedAt;
+        volatile long finishedAt;
+        volatile ChatResponse response;
+        volatile String error;
+        volatile Future<?> future;
+        final List<String> plannedDocs = new ArrayList<>();
+        final Map<String, String> summaries = new LinkedHashMap<>();
+
+        @Override
+        public void stage(String stage) {
+            this.stage = stage;
+        }
+
+        @Override
+        public synchronized void documentsPlanned(Collection<String> docs) {
+            plannedDocs.clear();
+            plannedDocs.addAll(docs);
+        }
+
+        @Override
+        public synchronized void documentSummary(String doc, String summary) {
+            summaries.put(doc, summary);
+        }
+
+        synchronized Map<String, Object> toMap() {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("jobId", id);
+            out.put("status", status.get());
+            out.put("stage", stage);
+            out.put("createdAt", createdAt);
+            out.put("startedAt", startedAt == 0 ? null : startedAt);
+            out.put("finishedAt", finishedAt == 0 ? null : finishedAt);
+            out.put("documentsPlanned", List.copyOf(plannedDocs));
+            List<Map<String, String>> docs = new ArrayList<>();
+            summaries.forEach((doc, summary) -> docs.add(Map.of("document", doc, "summary", summary)));
+            out.put("documents", docs);
+            out.put("response", response);
+            out.put("error", error);
+            return out;
+        }
+    }
+
+    // Throws RejectedExecutionException when the queue is full
+    public Map<String, Object> submit(RagRequest request) {
+        evictExpired();
+        RagJob job = new RagJob();
+        jobs.put(job.id, job);
+        try {
+            job.future = executor.submit(() -> run(job, request));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw e;
+        }
+        log.info("[RagJobService] Queued job {} (active={} queued={})", job.id, executor.getActiveCount(),
+                executor.getQueue().size());
+        return job.toMap();
+    }
+
+    public Map<String, Object> status(String jobId) {
+        evictExpired();
+        RagJob job = jobId == null ? null : jobs.get(jobId);
+        return job == null ? null : job.toMap();
+    }
+
+    public Map<String, Object> cancel(String jobId) {
+        RagJob job = jobId == null ? null : jobs.get(jobId);
+        if (job == null) return null;
+        Future<?> f = job.future;
+        if (f != null && f.cancel(true)) {
+            // A cancelled task stays in the bounded queue until a worker reaches it; free its slot now
+            if (f instanceof Runnable task) executor.remove(task);
+            // A job already picked up by a worker is finished by run() once the interrupt stops it
+            finish(job, Status.QUEUED, Status.CANCELLED, null);
+        }
+        return job.toMap();
+    }
+
+    private void run(RagJob job, RagRequest request) {
+        // Cancelled while queued
+        if (!job.status.compareAndSet(Status.QUEUED, Status.RUNNING)) return;
+        job.startedAt = System.currentTimeMillis();
+        try {
+            job.response = ragService.chatWithDocs(request, job);
+            finish(job, Status.RUNNING, Status.DONE, null);
+        } catch (CancellationException e) {
+            finish(job, Status.RUNNING, Status.CANCELLED, null);
+        } catch (Exception e) {
+            finish(job, Status.RUNNING, Thread.currentThread().isInterrupted() ? Status.CANCELLED : Status.FAILED, e.toString());
+        }
+    }
+
+    private void finish(RagJob job, Status from, Status status, String error) {
+        if (!job.status.compareAndSet(from, status)) return;
+        job.error = error;
+        job.finishedAt = System.currentTimeMillis();
+        log.info("[RagJobService] Job {} {} in {}ms", job.id, status, job.finishedAt - job.createdAt);
+    }
+
+    private void evictExpired() {
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        jobs.values().removeIf(job -> job.finishedAt != 0 && job.finishedAt < cutoff);
+    }
+}
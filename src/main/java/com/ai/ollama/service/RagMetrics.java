@@ -0,0 +1,122 @@
+package com.ai.ollama.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+@Component
+public class RagMetrics {
+
+    // Stage names used as the "stage" tag of the rag.stage timer
+    public static final String KEYWORD_EXTRACTION = "keyword_extraction";
+    public static final String QUERY_EMBEDDING = "query_embedding";
+    public static final String VECTOR_SEARCH = "vector_search";
+    public static final String RERANK = "rerank";
+    public static final String KEYWORD_SEARCH = "keyword_search";
+    public static final String LINE_SCAN = "line_scan";
+    public static final String SUMMARIZATION = "summarization";
+    public static final String INDEX_EMBEDDING = "index_embedding";
+    public static final String TOTAL = "total";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> chatTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public RagMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    public <T> T time(String stage, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            record(stage, System.nanoTime() - start);
+        }
+    }
+
+    // Times from subscription to termination (success, error or cancel)
+    public <T> Mono<T> time(String stage, Mono<T> work) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return work.doFinally(signal -> record(stage, System.nanoTime() - start));
+        });
+    }
+
+    public void record(String stage, long nanos) {
+        stageTimers.computeIfAbsent(stage, s -> Timer.builder("rag.stage")
+                .description("Time spent in one stage of the RAG pipeline")
+                .tag("stage", s)
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Chat latency per model, split by whether the model had to be loaded first. The model tag must come from a
+    // bounded set (ModelLifecycleManager passes configured or Ollama-reported names, else "other")
+    public void recordChat(String model, boolean cold, long millis) {
+        String key = model + '|' + cold;
+        chatTimers.computeIfAbsent(key, k -> Timer.builder("ollama.chat")
+                .description("Latency of a single Ollama chat call")
+                .tag("model", model)
+                .tag("load", cold ? "cold" : "warm")
+                .publishPercentileHistogram()
+                .register(registry)).record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void cacheHit(String cache) {
+        count("rag.cache", "cache", cache, "result", "hit");
+    }
+
+    public void cacheMiss(String cache) {
+        count("rag.cache", "cache", cache, "result", "miss");
+    }
+
+    // path: keyword (trie search after an empty vector result), line_scan (naive scan after an empty trie result)
+    // rerank_budget (model reranking missed its time budget and fusion scores were used)
+    // or vector_error (the reactive vector search failed and the keyword path answered instead)
+    public void fallback(String path) {
+        count("rag.fallback", "path", path);
+    }
+
+    // hedge (backup provider started on a slow embedding call), failover (started after an error)
+    // or backup_won (the backup answered first)
+    public void embeddingRoute(String event) {
+        count("rag.embedding.route", "event", event);
+    }
+
+    // Speculative retrieval: confident (the raw prompt search sufficed, keyword call cancelled), merged (raw and
+    // keyword hits combined) or raw_only (no keywords came back)
+    public void speculation(String outcome) {
+        count("rag.speculation", "outcome", outcome);
+    }
+
+    public void emptyResult() {
+        count("rag.empty.results");
+    }
+
+    public <T> void gauge(String name, String description, T target, ToDoubleFunction<T> value) {
+        Gauge.builder(name, target, value)
+                .description(description)
+                .register(registry);
+    }
+
+    private void count(String name, String... tags) {
+        String key = name + String.join("|", tags);
+        counters.computeIfAbsent(key, k -> Counter.builder(name).tags(tags).register(registry)).increment();
+    }
+}
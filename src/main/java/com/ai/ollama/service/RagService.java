@@ -3,6 +3,7 @@ package com.ai.ollama.service;
 import com.ai.ollama.model.ChatResponse;
 import com.ai.ollama.model.RagRequest;
 import com.ai.ollama.utils.DocumentSearch;
+import com.ai.ollama.utils.DocumentStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
@@ -11,9 +12,18 @@ import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -25,94 +35,134 @@ public class RagService {
     private final ChatClient chatClient;
     private final DocumentSearch documentSearch;
     private final VectorIndex vectorIndex;
+    private final ModelLifecycleManager modelLifecycleManager;
+    private final RagMetrics metrics;
+    private final Reranker reranker;
 
-    public RagService(ChatClient.Builder chatClientBuilder, DocumentSearch documentSearch, VectorIndex vectorIndex) {
+    // MMR trade-off for vector hits (1.0 = plain cosine order) and how many candidates it considers per result
+    @Value("${rag.search.mmr-lambda:1.0}")
+    private double mmrLambda;
+
+    @Value("${rag.search.mmr-fetch-factor:3}")
+    private int mmrFetchFactor;
+
+    // Collapse overlapping chunks of the same document into one line range of at most merge-max-lines
+    @Value("${rag.search.merge-overlaps:false}")
+    private boolean mergeOverlaps;
+
+    @Value("${rag.search.merge-max-lines:60}")
+    private int mergeMaxLines;
+
+    // Reactive pipeline (chatWithDocsReactive): overall deadline, per model call deadline and retries of model
+    // calls that failed before reaching Ollama
+    @Value("${rag.reactive.timeout-ms:300000}")
+    private long reactiveTimeoutMs;
+
+    @Value("${rag.model.timeout-ms:120000}")
+    private long modelTimeoutMs;
+
+    @Value("${rag.model.retries:1}")
+    private int modelRetries;
+
+    @Value("${rag.model.retry-backoff-ms:250}")
+    private long modelRetryBackoffMs;
+
+    // Search the raw prompt while keywords are extracted; a hit at or above the confidence (cosine) skips them
+    @Value("${rag.speculative.enabled:false}")
+    private boolean speculative;
+
+    @Value("${rag.speculative.confidence:0.85}")
+    private double speculativeConfidence;
+
+    public RagService(ChatClient.Builder chatClientBuilder, DocumentSearch documentSearch, VectorIndex vectorIndex,
+                      ModelLifecycleManager modelLifecycleManager, RagMetrics metrics, Reranker reranker) {
         this.chatClient = chatClientBuilder.build();
         this.documentSearch = documentSearch;
         this.vectorIndex = vectorIndex;
+        this.modelLifecycleManager = modelLifecycleManager;
+        this.metrics = metrics;
+        this.reranker = reranker;
+        metrics.gauge("rag.keyword.index.documents", "Number of documents in the keyword index", documentSearch,
+                ds -> ds.getDocumentStore().documentNames().size());
+        metrics.gauge("rag.document.store.bytes", "Bytes held by the shared document store", documentSearch,
+                ds -> ds.getDocumentStore().storedBytes());
+    }
+
+    // Progress callbacks for callers that expose partial results, such as async RAG jobs
+    public interface Listener {
+        Listener NONE = new Listener() {};
+
+        default void stage(String stage) {}
+
+        default void documentsPlanned(Collection<String> docs) {}
+
+        default void documentSummary(String doc, String summary) {}
     }
 
     public ChatResponse chatWithDocs(RagRequest request) {
+        return chatWithDocs(request, Listener.NONE);
+    }
+
+    public ChatResponse chatWithDocs(RagRequest request, Listener listener) {
         long start = System.currentTimeMillis();
-        String model = request.getModel();
+        long startNanos = System.nanoTime();
+        String model = modelLifecycleManager.resolveModel(request.getModel());
         String promptText = request.getPrompt() == null ? "" : request.getPrompt().trim();
         if (promptText.isEmpty()) {
             return new ChatResponse(model, "Prompt is empty.");
         }
         try {
+            List<String> collections = request.getCollections();
+            MetadataFilter filter = MetadataFilter.parse(request.getFilters());
+            VectorIndex.SearchOptions searchOptions = searchOptions();
+
             // 1) Ask AI to extract keywords
-            List<String> keywords = extractKeywords(promptText, model, request.getOptions());
-            log.info("[RagService] Extracted keywords: {}", keywords);
+            listener.stage("keywords");
+            List<String> keywords;
+            List<VectorIndex.SearchResult> candidates;
+            if (speculative) {
+                // 1+2) The raw prompt is embedded and searched while the keywords are being extracted
+                Retrieval retrieval = await(retrieve(promptText, model, request.getOptions(), collections, filter, searchOptions));
+                keywords = retrieval.keywords();
+                candidates = retrieval.results();
+                listener.stage("search");
+            } else {
+                keywords = metrics.time(RagMetrics.KEYWORD_EXTRACTION,
+                        () -> extractKeywords(promptText, model, request.getOptions()));
+                log.info("[RagService] Extracted keywords: {}", keywords);
 
-            // 2) Semantic search with vector index using keywords joined or full prompt as fallback
-            String query = (keywords == null || keywords.isEmpty()) ? promptText : String.join(", ", keywords);
-            List<VectorIndex.SearchResult> results = vectorIndex.search(query, 8);
+                // 2) Semantic search with vector index using keywords joined or full prompt as fallback
+                listener.stage("search");
+                String query = (keywords == null || keywords.isEmpty()) ? promptText : String.join(", ", keywords);
+                candidates = vectorIndex.search(query, reranker.candidateCount(8), collections, filter, searchOptions);
+            }
+            // Optionally over-fetch and rerank, so fewer and better chunks reach summarization
+            List<VectorIndex.SearchResult> results = reranker.isEnabled() && candidates.size() > 1
+                    ? metrics.time(RagMetrics.RERANK, () -> reranker.rerank(promptText, rerankTerms(promptText, keywords), candidates))
+                    : candidates;
 
-            StringBuilder aggregated = new StringBuilder();
+            Map<String, String> snippets;
             if (results != null && !results.isEmpty()) {
                 // Group by document and take top snippets per doc
-                Map<String, List<VectorIndex.SearchResult>> byDoc = results.stream()
-                        .collect(Collectors.groupingBy(r -> r.docName));
-                for (Map.Entry<String, List<VectorIndex.SearchResult>> entry : byDoc.entrySet()) {
-                    String doc = entry.getKey();
-                    List<VectorIndex.SearchResult> top = entry.getValue().stream()
-                            .sorted(Comparator.comparingDouble((VectorIndex.SearchResult r) -> r.score).reversed())
-                            .limit(2)
-                            .toList();
-                    StringBuilder snippet = new StringBuilder();
-                    top.forEach(r -> snippet.append(r.snippet).append("\n"));
-                    String summary = summarizeForDoc(promptText, doc, snippet.toString(), model, request.getOptions());
-                    if (summary != null && !summary.isBlank()) {
-                        aggregated.append("# ").append(doc).append("\n").append(summary.trim()).append("\n\n");
-                    }
-                }
+                snippets = snippetsByDoc(results, 2);
             } else {
                 // Fallback to keyword trie search if vector search yields nothing
-                List<String> fallbackKeywords = !keywords.isEmpty() ? keywords : basicPromptTokens(promptText);
-                Map<String, Set<Integer>> hits = fallbackKeywords.isEmpty() ? Map.of() : documentSearch.searchKeywords(fallbackKeywords);
-
-                // If trie-based search still yields nothing, try a naive scan for any prompt token occurrences
-                if (hits.isEmpty()) {
-                    Map<String, List<String>> docContentsAll = documentSearch.getDocumentContents();
-                    for (Map.Entry<String, List<String>> docEntry : docContentsAll.entrySet()) {
-                        String doc = docEntry.getKey();
-                        List<String> lines = docEntry.getValue();
-                        for (int i = 0; i < lines.size(); i++) {
-                            String line = lines.get(i);
-                            for (String tok : fallbackKeywords) {
-                                if (tok.length() >= 3 && line.toLowerCase().contains(tok.toLowerCase())) {
-                                    hits.computeIfAbsent(doc, k -> new LinkedHashSet<>()).add(i + 1);
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                }
-
-                if (hits.isEmpty()) {
-                    log.info("[RagService] No document hits for keywords, prompt tokens, or vectors.");
+                snippets = keywordSnippets(promptText, keywords, collections, filter);
+                if (snippets.isEmpty()) {
                     return new ChatResponse(model, "No relevant information found in indexed documents for your query.");
                 }
+            }
 
-                Map<String, List<String>> docContents = documentSearch.getDocumentContents();
-                for (Map.Entry<String, Set<Integer>> e : hits.entrySet()) {
-                    String doc = e.getKey();
-                    List<String> lines = docContents.getOrDefault(doc, List.of());
-                    if (lines.isEmpty()) continue;
-                    List<Integer> lineNums = e.getValue().stream().distinct().sorted().collect(Collectors.toList());
-                    int maxLines = 60;
-                    if (lineNums.size() > maxLines) lineNums = lineNums.subList(0, maxLines);
-                    StringBuilder snippet = new StringBuilder();
-                    for (Integer ln : lineNums) {
-                        int idx = Math.max(1, ln) - 1;
-                        if (idx >= 0 && idx < lines.size()) {
-                            snippet.append("[line ").append(ln).append("] ").append(lines.get(idx)).append("\n");
-                        }
-                    }
-                    String summary = summarizeForDoc(promptText, doc, snippet.toString(), model, request.getOptions());
-                    if (summary != null && !summary.isBlank()) {
-                        aggregated.append("# ").append(doc).append("\n").append(summary.trim()).append("\n\n");
-                    }
+            StringBuilder aggregated = new StringBuilder();
+            listener.documentsPlanned(snippets.keySet());
+            listener.stage("summarize");
+            for (Map.Entry<String, String> entry : snippets.entrySet()) {
+                String doc = entry.getKey();
+                checkInterrupted();
+                String summary = summarizeForDoc(promptText, doc, entry.getValue(), model, request.getOptions());
+                if (summary != null && !summary.isBlank()) {
+                    aggregated.append("# ").append(doc).append("\n").append(summary.trim()).append("\n\n");
+                    listener.documentSummary(doc, summary.trim());
                 }
             }
 
@@ -124,13 +174,247 @@ public class RagService {
             long took = System.currentTimeMillis() - start;
             log.error("[RagService] RAG flow failed in {} ms: {}", took, ex.toString());
             throw ex;
+        } finally {
+            metrics.record(RagMetrics.TOTAL, System.nanoTime() - startNanos);
+        }
+    }
+
+    // Lets a cancelled async job stop before its next summarization call
+    private static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("RAG request cancelled");
+        }
+    }
+
+    // Non-blocking variant of chatWithDocs: model calls stream through the reactive ChatClient, the query is
+    // embedded and searched as a Mono, and the in-memory keyword fallback runs on the parallel scheduler, so no
+    // thread waits on Ollama. Model calls time out after rag.model.timeout-ms and the whole request after
+    // rag.reactive.timeout-ms; both surface as a TimeoutException error signal.
+    public Mono<ChatResponse> chatWithDocsReactive(RagRequest request) {
+        String model = modelLifecycleManager.resolveModel(request.getModel());
+        String promptText = request.getPrompt() == null ? "" : request.getPrompt().trim();
+        if (promptText.isEmpty()) {
+            return Mono.just(new ChatResponse(model, "Prompt is empty."));
+        }
+        MetadataFilter filter;
+        try {
+            filter = MetadataFilter.parse(request.getFilters());
+        } catch (IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+        List<String> collections = request.getCollections();
+        Map<String, Object> options = request.getOptions();
+        VectorIndex.SearchOptions searchOptions = searchOptions();
+
+        Mono<ChatResponse> pipeline = retrieve(promptText, model, options, collections, filter, searchOptions)
+                .flatMap(retrieval -> {
+                    List<String> keywords = retrieval.keywords();
+                    List<VectorIndex.SearchResult> candidates = retrieval.results();
+                    return (reranker.isEnabled() && candidates.size() > 1
+                            ? metrics.time(RagMetrics.RERANK,
+                                    reranker.rerankReactive(promptText, rerankTerms(promptText, keywords), candidates))
+                            : Mono.just(candidates))
+                            .flatMap(results -> results.isEmpty()
+                                    ? Mono.fromCallable(() -> keywordSnippets(promptText, keywords, collections, filter))
+                                            .subscribeOn(Schedulers.parallel())
+                                    : Mono.just(snippetsByDoc(results, 2)));
+                })
+                .flatMap(snippets -> {
+                    if (snippets.isEmpty()) {
+                        return Mono.just(new ChatResponse(model, "No relevant information found in indexed documents for your query."));
+                    }
+                    return Flux.fromIterable(snippets.entrySet())
+                            .concatMap(e -> summarizeForDocReactive(promptText, e.getKey(), e.getValue(), model, options)
+                                    .filter(summary -> !summary.isBlank())
+                                    .map(summary -> "# " + e.getKey() + "\n" + summary.trim() + "\n\n"))
+                            .collect(Collectors.joining())
+                            .map(aggregated -> new ChatResponse(model, aggregated.isEmpty()
+                                    ? "No relevant summaries could be generated from the documents." : aggregated.trim()));
+                });
+
+        return Mono.defer(() -> {
+            long startNanos = System.nanoTime();
+            return pipeline
+                    .timeout(Duration.ofMillis(reactiveTimeoutMs))
+                    .doOnSuccess(resp -> log.info("[RagService] Completed reactive RAG in {} ms",
+                            (System.nanoTime() - startNanos) / 1_000_000))
+                    .doOnError(ex -> log.error("[RagService] Reactive RAG flow failed in {} ms: {}",
+                            (System.nanoTime() - startNanos) / 1_000_000, ex.toString()))
+                    .doFinally(signal -> metrics.record(RagMetrics.TOTAL, System.nanoTime() - startNanos));
+        });
+    }
+
+    // Extracted keywords (empty when a confident speculative search made them unnecessary) and the vector hits
+    record Retrieval(List<String> keywords, List<VectorIndex.SearchResult> results) {}
+
+    // Keyword extraction and the vector search it feeds. In speculative mode the raw prompt is embedded and searched
+    // while the keyword call is in flight: a top hit scoring at least rag.speculative.confidence settles the search
+    // and cancels the keyword call; otherwise the keyword query's hits are merged with the raw prompt's.
+    private Mono<Retrieval> retrieve(String promptText, String model, Map<String, Object> options,
+                                     List<String> collections, MetadataFilter filter,
+                                     VectorIndex.SearchOptions searchOptions) {
+        int topK = reranker.candidateCount(8);
+        Mono<List<String>> keywordCall = metrics.time(RagMetrics.KEYWORD_EXTRACTION,
+                        callModelReactive(KEYWORD_SYSTEM, keywordUserPrompt(promptText), model, options))
+                .map(RagService::parseKeywords)
+                .doOnNext(keywords -> log.info("[RagService] Extracted keywords: {}", keywords));
+        if (!speculative) {
+            return keywordCall.flatMap(keywords -> vectorSearch(keywords.isEmpty() ? promptText : String.join(", ", keywords),
+                    topK, collections, filter, searchOptions).map(results -> new Retrieval(keywords, results)));
+        }
+        Mono<List<VectorIndex.SearchResult>> rawSearch = vectorSearch(promptText, topK, collections, filter, searchOptions)
+                .cache();
+        Mono<Retrieval> confident = rawSearch
+                .filter(results -> results.stream().anyMatch(r -> r.score >= speculativeConfidence))
+                .map(results -> {
+                    metrics.speculation("confident");
+                    log.info("[RagService] Raw prompt search is confident; keyword extraction cancelled");
+                    return new Retrieval(List.of(), results);
+                });
+        Mono<Retrieval> merged = keywordCall.flatMap(keywords -> {
+            if (keywords.isEmpty()) {
+                metrics.speculation("raw_only");
+                return rawSearch.map(results -> new Retrieval(keywords, results));
+            }
+            return Mono.zip(rawSearch, vectorSearch(String.join(", ", keywords), topK, collections, filter, searchOptions))
+                    .map(t -> {
+                        metrics.speculation("merged");
+                        return new Retrieval(keywords, VectorIndex.union(t.getT1(), t.getT2(), topK, searchOptions));
+                    });
+        });
+        // The first to produce a value wins and cancels the other, so a confident raw search ends the keyword call
+        return ReactiveCalls.firstWithValue(confident, merged);
+    }
+
+    // Degrades to the keyword path on failure, but visibly: logged and counted
+    private Mono<List<VectorIndex.SearchResult>> vectorSearch(String query, int topK, List<String> collections,
+                                                              MetadataFilter filter, VectorIndex.SearchOptions searchOptions) {
+        return vectorIndex.searchReactive(query, topK, collections, filter, searchOptions)
+                .onErrorResume(ex -> {
+                    log.warn("[RagService] Vector search failed, using keyword search: {}", ex.toString());
+                    metrics.fallback("vector_error");
+                    return Mono.just(List.of());
+                });
+    }
+
+    private VectorIndex.SearchOptions searchOptions() {
+        return VectorIndex.SearchOptions.defaults()
+                .mmr(mmrLambda, mmrFetchFactor)
+                .mergeOverlaps(mergeOverlaps)
+                .maxMergedLines(mergeMaxLines);
+    }
+
+    // Waits for a reactive stage on a request thread; an interrupt (cancelled async job) cancels the stage
+    private static <T> T await(Mono<T> mono) {
+        CompletableFuture<T> future = mono.toFuture();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("RAG request cancelled");
+        } catch (ExecutionException e) {
+            throw Exceptions.propagate(e.getCause());
+        }
+    }
+
+    // Keyword trie hits, then a naive line scan, turned into per-document line snippets; empty when neither matched
+    private Map<String, String> keywordSnippets(String promptText, List<String> keywords, List<String> collections,
+                                                MetadataFilter filter) {
+        metrics.fallback("keyword");
+        List<String> fallbackKeywords = keywords != null && !keywords.isEmpty() ? keywords : basicPromptTokens(promptText);
+        Map<String, Set<Integer>> hits = fallbackKeywords.isEmpty() ? new HashMap<>()
+                : metrics.time(RagMetrics.KEYWORD_SEARCH, () -> documentSearch.searchKeywords(fallbackKeywords));
+        hits.keySet().removeIf(doc -> !inCollections(doc, collections) || !vectorIndex.documentMatches(doc, filter));
+
+        DocumentStore store = documentSearch.getDocumentStore();
+        // If trie-based search still yields nothing, try a naive scan for any prompt token occurrences
+        if (hits.isEmpty()) {
+            metrics.fallback("line_scan");
+            long scanStart = System.nanoTime();
+            for (String doc : store.documentNames()) {
+                if (!inCollections(doc, collections) || !vectorIndex.documentMatches(doc, filter)) continue;
+                List<String> lines = store.lines(doc);
+                for (int i = 0; i < lines.size(); i++) {
+                    String line = lines.get(i);
+                    for (String tok : fallbackKeywords) {
+                        if (tok.length() >= 3 && line.toLowerCase().contains(tok.toLowerCase())) {
+                            hits.computeIfAbsent(doc, k -> new LinkedHashSet<>()).add(i + 1);
+                            break;
+                        }
+                    }
+                }
+            }
+            metrics.record(RagMetrics.LINE_SCAN, System.nanoTime() - scanStart);
+        }
+
+        if (hits.isEmpty()) {
+            metrics.emptyResult();
+            log.info("[RagService] No document hits for keywords, prompt tokens, or vectors.");
+        }
+        Map<String, String> snippets = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<Integer>> e : hits.entrySet()) {
+            List<String> lines = store.lines(e.getKey());
+            if (lines.isEmpty()) continue;
+            snippets.put(e.getKey(), lineSnippet(lines, e.getValue(), 60));
+        }
+        return snippets;
+    }
+
+    private List<String> rerankTerms(String promptText, List<String> keywords) {
+        List<String> terms = new ArrayList<>(keywords == null ? List.of() : keywords);
+        terms.addAll(basicPromptTokens(promptText));
+        return terms;
+    }
+
+    static boolean inCollections(String doc, Collection<String> collections) {
+        return collections == null || collections.isEmpty() || collections.contains(VectorIndex.collectionOf(doc));
+    }
+
+    static Map<String, String> snippetsByDoc(List<VectorIndex.SearchResult> results, int perDoc) {
+        Map<String, List<VectorIndex.SearchResult>> byDoc = results.stream()
+                .collect(Collectors.groupingBy(r -> r.docName));
+        Map<String, String> out = new LinkedHashMap<>();
+        for (Map.Entry<String, List<VectorIndex.SearchResult>> entry : byDoc.entrySet()) {
+            List<VectorIndex.SearchResult> top = entry.getValue().stream()
+                    .sorted(Comparator.comparingDouble((VectorIndex.SearchResult r) -> r.score).reversed())
+                    .limit(perDoc)
+                    .toList();
+            StringBuilder snippet = new StringBuilder();
+            top.forEach(r -> snippet.append(r.getSnippet()).append("\n"));
+            out.put(entry.getKey(), snippet.toString());
         }
+        return out;
+    }
+
+    static String lineSnippet(List<String> lines, Collection<Integer> hitLines, int maxLines) {
+        List<Integer> lineNums = hitLines.stream().distinct().sorted().collect(Collectors.toList());
+        if (lineNums.size() > maxLines) lineNums = lineNums.subList(0, maxLines);
+        StringBuilder snippet = new StringBuilder();
+        for (Integer ln : lineNums) {
+            int idx = Math.max(1, ln) - 1;
+            if (idx >= 0 && idx < lines.size()) {
+                snippet.append("[line ").append(ln).append("] ").append(lines.get(idx)).append("\n");
+            }
+        }
+        return snippet.toString();
+    }
+
+    // Prompt layout: every fixed instruction sits in the system block, and the variable parts come last, most
+    // reusable first. Ollama reuses the KV cache of the longest prompt prefix a slot already holds, so identical
+    // leading tokens across calls skip their prefill.
+    static final String KEYWORD_SYSTEM = "You extract 3-8 concise search keywords from a user's request strictly as a single comma-separated line. "
+            + "Return only the keywords, comma-separated. No explanations.";
+
+    static String keywordUserPrompt(String prompt) {
+        return "User request: " + prompt;
     }
 
     private List<String> extractKeywords(String prompt, String model, Map<String, Object> options) {
-        String system = "You extract 3-8 concise search keywords from a user's request strictly as a single comma-separated line. No explanations.";
-        String user = "User request: " + prompt + "\nReturn only keywords, comma-separated.";
-        String content = callModel(system, user, model, options);
+        return parseKeywords(callModel(KEYWORD_SYSTEM, keywordUserPrompt(prompt), model, options));
+    }
+
+    private static List<String> parseKeywords(String content) {
         if (content == null) return List.of();
         String[] parts = content.split(",|\n");
         Pattern wordPattern = Pattern.compile("[A-Za-z0-9][A-Za-z0-9 -]{0,40}");
@@ -159,18 +443,64 @@ public class RagService {
         return new ArrayList<>(tokens);
     }
 
+    static final String SUMMARY_SYSTEM = "You are a helpful assistant. You receive a document excerpt followed by a user request. "
+            + "Provide a short summary that answers the request using only the excerpt's lines; do not hallucinate beyond them. "
+            + "Cite line numbers inline when relevant. Be concise.";
+
+    // Document block before the question: a chunk retrieved again for a later question keeps its cached prefill
+    static String summaryUserPrompt(String userPrompt, String docName, String snippet) {
+        return "Document: " + docName + "\nRelevant lines:\n```\n" + snippet + "```\n\nUser request: " + userPrompt;
+    }
+
     private String summarizeForDoc(String userPrompt, String docName, String snippet, String model, Map<String, Object> options) {
-        String system = "You are a helpful assistant. Summarize only using the provided document lines. Cite line numbers inline when relevant. Be concise.";
-        String user = "User request: " + userPrompt + "\nDocument: " + docName + "\nRelevant lines (do not hallucinate beyond these):\n```\n" + snippet + "```\nProvide a short summary that answers the user's request using only this content.";
-        return callModel(system, user, model, options);
+        return metrics.time(RagMetrics.SUMMARIZATION,
+                () -> callModel(SUMMARY_SYSTEM, summaryUserPrompt(userPrompt, docName, snippet), model, options));
+    }
+
+    private Mono<String> summarizeForDocReactive(String userPrompt, String docName, String snippet, String model,
+                                                 Map<String, Object> options) {
+        return metrics.time(RagMetrics.SUMMARIZATION,
+                callModelReactive(SUMMARY_SYSTEM, summaryUserPrompt(userPrompt, docName, snippet), model, options));
     }
 
     private String callModel(String systemText, String userText, String model, Map<String, Object> opts) {
+        Prompt prompt = buildPrompt(systemText, userText, model, opts);
+        boolean cold = modelLifecycleManager.beginCall(model);
+        long callStart = System.currentTimeMillis();
+        String content = this.chatClient
+                .prompt(prompt)
+                .call()
+                .content();
+        modelLifecycleManager.recordLatency(model, cold, System.currentTimeMillis() - callStart);
+        return content;
+    }
+
+    // Streams the completion and joins the tokens. Only failures that never reached Ollama (or that it asked us
+    // to back off from) are retried; a timed-out generation is not, since it would queue the same work again.
+    private Mono<String> callModelReactive(String systemText, String userText, String model, Map<String, Object> opts) {
+        Prompt prompt = buildPrompt(systemText, userText, model, opts);
+        return Mono.defer(() -> {
+                    boolean cold = modelLifecycleManager.beginCall(model);
+                    long callStart = System.currentTimeMillis();
+                    return this.chatClient
+                            .prompt(prompt)
+                            .stream()
+                            .content()
+                            .collect(Collectors.joining())
+                            .doOnSuccess(content -> modelLifecycleManager.recordLatency(model, cold,
+                                    System.currentTimeMillis() - callStart));
+                })
+                .timeout(Duration.ofMillis(modelTimeoutMs))
+                .retryWhen(ReactiveCalls.backoff(modelRetries, modelRetryBackoffMs, ReactiveCalls::isTransient));
+    }
+
+    private Prompt buildPrompt(String systemText, String userText, String model, Map<String, Object> opts) {
         List<Message> messages = new ArrayList<>();
         messages.add(new SystemMessage(systemText));
         messages.add(new UserMessage(userText));
-        OllamaOptions.Builder optionsBuilder = OllamaOptions.builder();
-        if (model != null && !model.isBlank()) optionsBuilder = optionsBuilder.model(model);
+        OllamaOptions.Builder optionsBuilder = OllamaOptions.builder()
+                .model(model)
+                .keepAlive(modelLifecycleManager.getKeepAlive());
         if (opts != null) {
             Object temperature = opts.get("temperature");
             if (temperature instanceof Number num) optionsBuilder = optionsBuilder.temperature(num.doubleValue());
@@ -181,10 +511,6 @@ public class RagService {
             Object maxTokens = opts.get("max_tokens");
             if (maxTokens instanceof Number num) optionsBuilder = optionsBuilder.numPredict(num.intValue());
         }
-        Prompt prompt = new Prompt(messages, optionsBuilder.build());
-        return this.chatClient
-                .prompt(prompt)
-                .call()
-                .content();
+        return new Prompt(messages, optionsBuilder.build());
     }
 }
@@ -0,0 +1,64 @@
+package com.ai.ollama.service;
+
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import reactor.util.retry.RetryBackoffSpec;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+// Helpers shared by the reactive upstream calls. The retry policy backs off exponentially with jitter, so callers
+// that failed together do not retry together, and rethrows the original error once retries run out
+final class ReactiveCalls {
+
+    private ReactiveCalls() {}
+
+    // Failures worth another attempt: the request never reached the upstream, or it asked us to back off
+    static boolean isTransient(Throwable ex) {
+        if (ex instanceof WebClientRequestException) return true;
+        if (ex instanceof WebClientResponseException r) {
+            int status = r.getStatusCode().value();
+            return status == 429 || status == 502 || status == 503 || status == 504;
+        }
+        return false;
+    }
+
+    // Also retries attempts cut off by timeout(); only for calls that are cheap to repeat, such as embeddings
+    static boolean isTransientOrTimeout(Throwable ex) {
+        return isTransient(ex) || ex instanceof TimeoutException;
+    }
+
+    // Mono.firstWithValue, but failing with the first failed source's own error (any other attached as suppressed)
+    // rather than a NoSuchElementException when neither produces a value. Reactor records a source that completed
+    // empty as a NoSuchElementException cause too; those are skipped so a real failure is not hidden behind one.
+    static <T> Mono<T> firstWithValue(Mono<? extends T> first, Mono<? extends T> second) {
+        return Mono.<T>firstWithValue(List.of(first, second))
+                .onErrorMap(NoSuchElementException.class, ex -> {
+                    List<Throwable> causes = Exceptions.unwrapMultiple(ex.getCause()).stream()
+                            .filter(cause -> !isEmptySource(cause))
+                            .toList();
+                    if (causes.isEmpty()) return ex;
+                    Throwable error = causes.get(0);
+                    causes.stream().skip(1).forEach(error::addSuppressed);
+                    return error;
+                });
+    }
+
+    private static boolean isEmptySource(Throwable cause) {
+        return cause instanceof NoSuchElementException && String.valueOf(cause.getMessage()).endsWith("completed empty");
+    }
+
+    static RetryBackoffSpec backoff(int retries, long backoffMs, Predicate<Throwable> retryable) {
+        return Retry.backoff(Math.max(0, retries), Duration.ofMillis(Math.max(1, backoffMs)))
+                .maxBackoff(Duration.ofMillis(Math.max(1, backoffMs) * 16))
+                .jitter(0.5)
+                .filter(retryable)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+}
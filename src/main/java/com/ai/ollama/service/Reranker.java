@@ -0,0 +1,225 @@
+package com.ai.ollama.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Optional second pass over an over-fetched candidate list, so only the few best chunks reach summarization.
+//   fusion: cosine score fused with IDF-weighted term overlap between the query terms and the chunk text
+//   model:  a small Ollama model rates each candidate 0-10; candidates it does not rate within the budget keep
+//           their fusion order after the rated ones
+@Component
+public class Reranker {
+
+    private static final Logger log = LoggerFactory.getLogger(Reranker.class);
+    private static final Pattern NUMBER = Pattern.compile("\\d+(\\.\\d+)?");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final WebClient webClient;
+    private final ModelLifecycleManager modelLifecycleManager;
+    private final RagMetrics metrics;
+
+    // off, fusion or model
+    @Value("${rag.rerank.mode:off}")
+    private String mode;
+
+    // Vector hits fetched for reranking, and how many survive it
+    @Value("${rag.rerank.candidates:24}")
+    private int candidates;
+
+    @Value("${rag.rerank.keep:4}")
+    private int keep;
+
+    @Value("${rag.rerank.budget-ms:400}")
+    private long budgetMs;
+
+    // Weight of the lexical score in fusion mode (0 = cosine only)
+    @Value("${rag.rerank.lexical-weight:0.35}")
+    private double lexicalWeight;
+
+    @Value("${rag.rerank.model:}")
+    private String rerankModel;
+
+    @Value("${rag.rerank.concurrency:4}")
+    private int concurrency;
+
+    @Value("${spring.ai.ollama.base-url:${ollama.base-url:http://localhost:11434}}")
+    private String baseUrl;
+
+    public Reranker(WebClient.Builder webClientBuilder, ModelLifecycleManager modelLifecycleManager, RagMetrics metrics) {
+        this.webClient = webClientBuilder.build();
+        this.modelLifecycleManager = modelLifecycleManager;
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    void init() {
+        if ("model".equalsIgnoreCase(mode) && (rerankModel == null || rerankModel.isBlank())) {
+            log.warn("[Reranker] rag.rerank.mode=model but rag.rerank.model is empty; reranking with fusion only");
+        }
+    }
+
+    public boolean isEnabled() {
+        return "fusion".equalsIgnoreCase(mode) || "model".equalsIgnoreCase(mode);
+    }
+
+    // Number of vector hits to fetch; the plain top-K when reranking is off
+    public int candidateCount(int topK) {
+        return isEnabled() ? Math.max(candidates, topK) : topK;
+    }
+
+    public List<VectorIndex.SearchResult> rerank(String query, Collection<String> terms, List<VectorIndex.SearchResult> results) {
+        return rerankReactive(query, terms, results).block();
+    }
+
+    // Never errors on model failures: a missed budget or failed rating falls back to the fusion order
+    public Mono<List<VectorIndex.SearchResult>> rerankReactive(String query, Collection<String> terms,
+                                                               List<VectorIndex.SearchResult> results) {
+        if (!isEnabled() || results.size() <= 1) return Mono.just(results);
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            List<VectorIndex.SearchResult> fused = fuse(terms, results, lexicalWeight);
+            Mono<List<VectorIndex.SearchResult>> ranked = Mono.just(fused);
+            if ("model".equalsIgnoreCase(mode) && rerankModel != null && !rerankModel.isBlank()) {
+                ranked = scoreWithModel(query, fused).switchIfEmpty(Mono.fromSupplier(() -> {
+                    metrics.fallback("rerank_budget");
+                    return fused;
+                }));
+            }
+            return ranked.map(list -> {
+                List<VectorIndex.SearchResult> out = list.subList(0, Math.min(Math.max(1, keep), list.size()));
+                log.info("[Reranker] {} reranked {} candidates to {} in {}ms", mode, results.size(), out.size(),
+                        (System.nanoTime() - start) / 1_000_000);
+                return new ArrayList<>(out);
+            });
+        });
+    }
+
+    // Cosine relative to the best candidate, blended with IDF-weighted coverage of the query terms
+    // (document frequencies are taken over the candidates themselves)
+    static List<VectorIndex.SearchResult> fuse(Collection<String> terms, List<VectorIndex.SearchResult> results, double weight) {
+        Set<String> queryTerms = new LinkedHashSet<>();
+        for (String t : terms) {
+            for (String w : NON_WORD.split(t.toLowerCase())) {
+                if (w.length() >= 3) queryTerms.add(w);
+            }
+        }
+        List<Set<String>> docTerms = new ArrayList<>(results.size());
+        Map<String, Integer> df = new HashMap<>();
+        for (VectorIndex.SearchResult r : results) {
+            Set<String> words = new HashSet<>();
+            for (String w : NON_WORD.split(r.getSnippet().toLowerCase())) {
+                if (queryTerms.contains(w)) words.add(w);
+            }
+            words.forEach(w -> df.merge(w, 1, Integer::sum));
+            docTerms.add(words);
+        }
+        double totalIdf = 0;
+        Map<String, Double> idf = new HashMap<>();
+        for (String t : queryTerms) {
+            double v = Math.log(1.0 + (double) results.size() / (1 + df.getOrDefault(t, 0)));
+            idf.put(t, v);
+            totalIdf += v;
+        }
+        // Not min-max: candidates usually sit within a few hundredths of each other, and stretching that gap
+        // to [0, 1] would let cosine noise outweigh the lexical signal
+        double max = results.stream().mapToDouble(r -> r.score).max().orElse(0);
+        List<VectorIndex.SearchResult> out = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            VectorIndex.SearchResult r = results.get(i);
+            double lexical = 0;
+            if (totalIdf > 0) {
+                for (String w : docTerms.get(i)) lexical += idf.get(w);
+                lexical /= totalIdf;
+            }
+            double semantic = max > 0 ? Math.max(0, r.score) / max : 0.0;
+            out.add(r.withScore((1 - weight) * semantic + weight * lexical));
+        }
+        out.sort(Comparator.comparingDouble((VectorIndex.SearchResult r) -> r.score).reversed());
+        return out;
+    }
+
+    // Pointwise relevance from the rerank model. Ratings that arrive within the budget are kept and go first;
+    // candidates left unrated follow in fused order. Empty when no rating arrived in time
+    private Mono<List<VectorIndex.SearchResult>> scoreWithModel(String query, List<VectorIndex.SearchResult> fused) {
+        return Flux.range(0, fused.size())
+                .flatMap(i -> rate(query, fused.get(i).getSnippet())
+                        .map(rating -> new Rated(i, rating))
+                        .onErrorResume(ex -> {
+                            log.debug("[Reranker] Rating failed: {}", ex.toString());
+                            return Mono.empty();
+                        }),
+                        Math.max(1, concurrency))
+                .take(Duration.ofMillis(budgetMs))
+                .collectList()
+                .filter(rated -> !rated.isEmpty())
+                .map(rated -> {
+                    if (rated.size() < fused.size()) {
+                        metrics.fallback("rerank_partial");
+                        log.info("[Reranker] {} of {} candidates rated within {}ms", rated.size(), fused.size(), budgetMs);
+                    }
+                    boolean[] seen = new boolean[fused.size()];
+                    List<VectorIndex.SearchResult> out = new ArrayList<>(fused.size());
+                    // fused order breaks ties between equal model ratings
+                    rated.sort(Comparator.comparingDouble(Rated::rating).reversed().thenComparingInt(Rated::index));
+                    for (Rated r : rated) {
+                        seen[r.index()] = true;
+                        out.add(fused.get(r.index()).withScore(1.0 + r.rating()));
+                    }
+                    // Unrated candidates keep their fusion score (<= 1), below every rated one
+                    for (int i = 0; i < fused.size(); i++) {
+                        if (!seen[i]) out.add(fused.get(i));
+                    }
+                    return out;
+                });
+    }
+
+    private record Rated(int index, double rating) {}
+
+    @SuppressWarnings("unchecked")
+    private Mono<Double> rate(String query, String passage) {
+        // Fixed instruction, then the query shared by every candidate, then the passage: parallel ratings of one
+        // query reuse the cached prefix up to the passage
+        String prompt = "Rate how relevant the passage is to the query on a scale from 0 to 10. Answer with a single number.\n"
+                + "Query: " + query + "\nPassage:\n" + passage + "\nRating:";
+        Map<String, Object> payload = Map.of(
+                "model", rerankModel,
+                "prompt", prompt,
+                "stream", false,
+                "keep_alive", modelLifecycleManager.getKeepAlive(),
+                "options", Map.of("temperature", 0, "num_predict", 4)
+        );
+        return this.webClient
+                .post()
+                .uri(baseUrl + "/api/generate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(payload))
+                .retrieve()
+                .bodyToMono(Map.class)
+                .map(response -> {
+                    Object text = ((Map<String, Object>) response).get("response");
+                    Matcher m = NUMBER.matcher(text == null ? "" : text.toString());
+                    return m.find() ? Math.min(10.0, Double.parseDouble(m.group())) / 10.0 : 0.0;
+                });
+    }
+}
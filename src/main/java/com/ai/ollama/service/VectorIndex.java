@@ -1,13 +1,31 @@
 package com.ai.ollama.service;
 
+import com.ai.ollama.utils.DocumentStore;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
@@ -15,25 +33,49 @@ public class VectorIndex {
 
     private static final Logger log = LoggerFactory.getLogger(VectorIndex.class);
 
-    private final HuggingFaceEmbeddingClient embeddingClient;
+    public static final String DEFAULT_COLLECTION = "default";
 
-    public VectorIndex(HuggingFaceEmbeddingClient embeddingClient) {
+    private final EmbeddingRouter embeddingClient;
+    private final RagMetrics metrics;
+    private final DocumentStore documentStore;
+    private final ChunkerFactory chunkerFactory;
+
+    public VectorIndex(EmbeddingRouter embeddingClient, RagMetrics metrics, DocumentStore documentStore,
+                       ChunkerFactory chunkerFactory) {
         this.embeddingClient = embeddingClient;
+        this.metrics = metrics;
+        this.documentStore = documentStore;
+        this.chunkerFactory = chunkerFactory;
+        this.searchExecutor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread t = new Thread(r, "vector-search");
+            t.setDaemon(true);
+            return t;
+        });
+        this.searchScheduler = Schedulers.fromExecutorService(searchExecutor, "vector-search");
+        metrics.gauge("rag.vector.index.entries", "Number of embedded chunks in the vector index", this, VectorIndex::size);
+        metrics.gauge("rag.vector.index.bytes", "Heap used by chunk vectors in the vector index", vectorBytes, AtomicLong::get);
     }
 
-    private static class Entry {
+    // Chunk text is not kept here; it is rendered from the DocumentStore when a result is used
+    static class Entry {
         final String docName;
         final int startLine;
         final int endLine;
-        final String text;
+        final long contentHash; // hash of the chunk's raw lines, used to skip re-embedding unchanged chunks
         final double[] vector;
+        int docId = -1; // row of the document in its shard's attribute columns
+
+        Entry(String docName, int startLine, int endLine, long contentHash, List<Double> vector) {
+            this(docName, startLine, endLine, contentHash,
+                    vector == null ? new double[0] : vector.stream().mapToDouble(Double::doubleValue).toArray());
+        }
 
-        Entry(String docName, int startLine, int endLine, String text, List<Double> vector) {
+        Entry(String docName, int startLine, int endLine, long contentHash, double[] vector) {
             this.docName = docName;
             this.startLine = startLine;
             this.endLine = endLine;
-            this.text = text;
-            this.vector = vector == null ? new double[0] : vector.stream().mapToDouble(Double::doubleValue).toArray();
+            this.contentHash = contentHash;
+            this.vector = vector;
         }
     }
 
@@ -41,78 +83,634 @@ public class VectorIndex {
         public final String docName;
         public final int startLine;
         public final int endLine;
-        public final String snippet;
         public final double score;
+        private final DocumentStore store;
+        private String snippet;
+        final double[] vector; // chunk embedding when the result came from the index, used by MMR
 
         public SearchResult(String docName, int startLine, int endLine, String snippet, double score) {
+            this(docName, startLine, endLine, (DocumentStore) null, score);
+            this.snippet = snippet;
+        }
+
+        SearchResult(String docName, int startLine, int endLine, DocumentStore store, double score) {
+            this(docName, startLine, endLine, store, score, null);
+        }
+
+        SearchResult(String docName, int startLine, int endLine, DocumentStore store, double score, double[] vector) {
             this.docName = docName;
             this.startLine = startLine;
             this.endLine = endLine;
-            this.snippet = snippet;
+            this.store = store;
             this.score = score;
+            this.vector = vector;
+        }
+
+        public String getSnippet() {
+            if (snippet == null) {
+                snippet = store == null ? "" : store.render(docName, startLine, endLine);
+            }
+            return snippet;
+        }
+
+        // Same chunk with a new score; an already rendered snippet is kept
+        SearchResult withScore(double newScore) {
+            SearchResult copy = new SearchResult(docName, startLine, endLine, store, newScore, vector);
+            copy.snippet = snippet;
+            return copy;
+        }
+    }
+
+    // Post-processing of the cosine top-K; the defaults leave it untouched
+    public static final class SearchOptions {
+        double mmrLambda = 1.0; // 1 = relevance only; lower values trade relevance for diversity
+        int fetchFactor = 3;    // candidates considered by MMR per requested result
+        boolean mergeOverlaps;
+        int maxMergedLines = 60; // merged ranges stop growing past this many lines
+
+        public static SearchOptions defaults() {
+            return new SearchOptions();
+        }
+
+        public SearchOptions mmr(double lambda, int fetchFactor) {
+            this.mmrLambda = Math.max(0.0, Math.min(1.0, lambda));
+            this.fetchFactor = Math.max(1, fetchFactor);
+            return this;
+        }
+
+        public SearchOptions mergeOverlaps(boolean mergeOverlaps) {
+            this.mergeOverlaps = mergeOverlaps;
+            return this;
+        }
+
+        public SearchOptions maxMergedLines(int maxMergedLines) {
+            this.maxMergedLines = Math.max(1, maxMergedLines);
+            return this;
+        }
+    }
+
+    // One shard per collection, each with its own entry list and lock, so indexing one collection never
+    // blocks searches in another and a filtered query only scans the shards it names
+    static final class Shard {
+        final String name;
+        final List<Entry> entries = new ArrayList<>();
+        // Attribute columns keyed by a dense per-shard document id that every chunk carries:
+        // field -> value -> documents as a bitmap, plus a numeric column for modification times
+        final Map<String, Integer> docIds = new HashMap<>();
+        final Map<String, Map<String, BitSet>> attributes = new HashMap<>();
+        final BitSet liveDocs = new BitSet();
+        long[] modified = new long[16];
+
+        Shard(String name) {
+            this.name = name;
+        }
+
+        // All methods below run under the entries lock
+        int documentId(String docName) {
+            return docIds.computeIfAbsent(docName, k -> docIds.size());
+        }
+
+        void setAttributes(int docId, String docName, Map<String, ? extends Collection<String>> extra, long modifiedAt) {
+            clearAttributes(docId);
+            liveDocs.set(docId);
+            if (docId >= modified.length) modified = Arrays.copyOf(modified, Math.max(docId + 1, modified.length * 2));
+            modified[docId] = modifiedAt > 0 ? modifiedAt : System.currentTimeMillis();
+            int slash = docName.lastIndexOf('/');
+            String file = docName.substring(slash + 1);
+            int dot = file.lastIndexOf('.');
+            setAttribute(docId, "doc", docName);
+            setAttribute(docId, "collection", name);
+            setAttribute(docId, "dir", slash > 0 ? docName.substring(0, slash) : "");
+            setAttribute(docId, "ext", dot > 0 ? file.substring(dot + 1).toLowerCase() : "");
+            if (extra != null) {
+                extra.forEach((field, values) -> values.forEach(v -> setAttribute(docId, field.toLowerCase(), v)));
+            }
+        }
+
+        void dropDocument(String docName) {
+            Integer docId = docIds.get(docName);
+            if (docId == null) return;
+            clearAttributes(docId);
+            liveDocs.clear(docId);
+        }
+
+        boolean matches(String docName, MetadataFilter filter) {
+            Integer docId = docIds.get(docName);
+            return docId != null && select(filter).get(docId);
+        }
+
+        BitSet select(MetadataFilter filter) {
+            BitSet result = (BitSet) liveDocs.clone();
+            for (MetadataFilter.Clause clause : filter.getClauses()) {
+                if (result.isEmpty()) break;
+                result.and(match(clause));
+            }
+            return result;
         }
+
+        private BitSet match(MetadataFilter.Clause clause) {
+            BitSet out = new BitSet();
+            if (clause.field().equals(MetadataFilter.MODIFIED)) {
+                long[] bounds = clause.values().stream().mapToLong(MetadataFilter::parseTime).toArray();
+                for (int d = liveDocs.nextSetBit(0); d >= 0; d = liveDocs.nextSetBit(d + 1)) {
+                    if (compare(clause.op(), modified[d], bounds)) out.set(d);
+                }
+                return out;
+            }
+            Map<String, BitSet> column = attributes.getOrDefault(clause.field(), Map.of());
+            switch (clause.op()) {
+                case EQ, NE -> clause.values().forEach(v -> {
+                    BitSet docs = column.get(v);
+                    if (docs != null) out.or(docs);
+                });
+                case PREFIX -> column.forEach((value, docs) -> {
+                    if (clause.values().stream().anyMatch(value::startsWith)) out.or(docs);
+                });
+                default -> column.forEach((value, docs) -> {
+                    int c = value.compareTo(clause.values().get(0));
+                    if (compare(clause.op(), c, new long[]{0})) out.or(docs);
+                });
+            }
+            if (clause.op() == MetadataFilter.Op.NE) {
+                BitSet kept = (BitSet) liveDocs.clone();
+                kept.andNot(out);
+                return kept;
+            }
+            return out;
+        }
+
+        private static boolean compare(MetadataFilter.Op op, long value, long[] bounds) {
+            return switch (op) {
+                case GE -> value >= bounds[0];
+                case LE -> value <= bounds[0];
+                case GT -> value > bounds[0];
+                case LT -> value < bounds[0];
+                case NE -> Arrays.stream(bounds).noneMatch(b -> b == value);
+                default -> Arrays.stream(bounds).anyMatch(b -> b == value);
+            };
+        }
+
+        private void setAttribute(int docId, String field, String value) {
+            attributes.computeIfAbsent(field, k -> new HashMap<>()).computeIfAbsent(value, k -> new BitSet()).set(docId);
+        }
+
+        private void clearAttributes(int docId) {
+            for (Map<String, BitSet> column : attributes.values()) {
+                column.values().removeIf(docs -> {
+                    docs.clear(docId);
+                    return docs.isEmpty();
+                });
+            }
+        }
+    }
+
+    private final Map<String, Shard> shards = new ConcurrentHashMap<>();
+    private final AtomicLong vectorBytes = new AtomicLong();
+    // Chunks left out of the index because their embedding failed or had the wrong length
+    private final AtomicLong unembeddedChunks = new AtomicLong();
+    // Vector length of the first indexed chunk; vectors of any other length come from another model and are refused
+    private volatile int dimensions;
+    private final ExecutorService searchExecutor;
+    private final Scheduler searchScheduler;
+
+    @PreDestroy
+    public void stop() {
+        searchExecutor.shutdownNow();
+    }
+
+    // A document's collection is the first segment of its name ("tenant-a/guide.md" -> "tenant-a");
+    // top-level documents belong to the default collection
+    public static String collectionOf(String docName) {
+        if (docName == null) return DEFAULT_COLLECTION;
+        int slash = docName.indexOf('/');
+        return slash > 0 ? docName.substring(0, slash) : DEFAULT_COLLECTION;
+    }
+
+    private Shard shardFor(String docName) {
+        return shards.computeIfAbsent(collectionOf(docName), Shard::new);
     }
 
-    private final List<Entry> entries = new ArrayList<>();
+    // Evaluates the filter against a document's metadata; unknown documents never match a non-empty filter
+    public boolean documentMatches(String docName, MetadataFilter filter) {
+        if (filter == null || filter.isEmpty()) return true;
+        Shard shard = shards.get(collectionOf(docName));
+        if (shard == null) return false;
+        synchronized (shard.entries) {
+            return shard.matches(docName, filter);
+        }
+    }
+
+    // Chunk count per collection
+    public Map<String, Integer> collections() {
+        Map<String, Integer> out = new TreeMap<>();
+        for (Shard shard : shards.values()) {
+            synchronized (shard.entries) {
+                out.put(shard.name, shard.entries.size());
+            }
+        }
+        return out;
+    }
 
     public void clear() {
-        synchronized (entries) {
-            entries.clear();
+        for (Shard shard : shards.values()) {
+            synchronized (shard.entries) {
+                for (Entry e : shard.entries) {
+                    vectorBytes.addAndGet(-(long) e.vector.length * Double.BYTES);
+                }
+                shard.entries.clear();
+                shard.docIds.clear();
+                shard.attributes.clear();
+                shard.liveDocs.clear();
+            }
+        }
+        dimensions = 0;
+    }
+
+    public long unembeddedChunks() {
+        return unembeddedChunks.get();
+    }
+
+    public int size() {
+        int total = 0;
+        for (Shard shard : shards.values()) {
+            synchronized (shard.entries) {
+                total += shard.entries.size();
+            }
         }
+        return total;
     }
 
     public void indexDocument(String docName, List<String> lines) {
+        indexDocument(docName, lines, Map.of(), 0L);
+    }
+
+    // Re-indexing replaces the document's chunks; chunks whose content is unchanged keep their vectors.
+    // Lines are consumed in one sequential pass, so a lazy DocumentStore view is never materialized.
+    // attributes (e.g. tag -> [billing, api]) and modifiedAt become filterable metadata of every chunk.
+    public void indexDocument(String docName, List<String> lines, Map<String, ? extends Collection<String>> attributes,
+                              long modifiedAt) {
         if (docName == null || lines == null || lines.isEmpty()) return;
-        int chunkSize = 20;
-        int overlap = 5;
-        int i = 0;
-        while (i < lines.size()) {
-            int start = i + 1; // 1-based
-            int end = Math.min(lines.size(), i + chunkSize);
-            String text = joinLines(lines, start, end);
-            if (text.trim().length() >= 32) {
-                List<Double> vec = embeddingClient.embed(text);
-                if (!vec.isEmpty()) {
-                    Entry e = new Entry(docName, start, end, text, vec);
-                    synchronized (entries) {
-                        entries.add(e);
-                    }
+        if (!documentStore.contains(docName)) {
+            documentStore.put(docName, lines);
+        }
+        Map<Long, double[]> previous = new HashMap<>();
+        Shard shard = shardFor(docName);
+        synchronized (shard.entries) {
+            for (Entry e : shard.entries) {
+                if (e.docName.equals(docName)) previous.put(e.contentHash, e.vector);
+            }
+        }
+        List<Entry> chunks = new ArrayList<>();
+        int[] reused = {0};
+        int[] refused = {0};
+        int[] failed = {0};
+        Chunker chunker = chunkerFactory.create((start, end, text, hash) -> {
+            double[] known = previous.get(hash);
+            if (known != null) {
+                chunks.add(new Entry(docName, start, end, hash, known));
+                reused[0]++;
+            } else {
+                List<Double> vec = metrics.time(RagMetrics.INDEX_EMBEDDING, () -> embeddingClient.embed(text));
+                if (vec.isEmpty()) {
+                    failed[0]++;
+                } else if (acceptsDimensions(vec.size())) {
+                    chunks.add(new Entry(docName, start, end, hash, vec));
+                } else {
+                    refused[0]++;
                 }
             }
-            if (end == lines.size()) break;
-            i = i + (chunkSize - overlap);
+        });
+        for (String line : lines) {
+            chunker.accept(line);
+        }
+        chunker.finish();
+        unembeddedChunks.addAndGet(failed[0] + refused[0]);
+        if (failed[0] > 0) {
+            log.warn("[VectorIndex] {} chunks of {} failed to embed and are missing from the vector index", failed[0], docName);
+        }
+        if (refused[0] > 0) {
+            log.warn("[VectorIndex] Refused {} chunks of {}: vectors are not {}-dimensional like the rest of the index "
+                    + "(embedding space {})", refused[0], docName, dimensions, embeddingClient.space());
+        }
+        replaceDocument(docName, chunks, attributes, modifiedAt);
+        log.info("[VectorIndex] Indexed document {} into {} {} chunks ({} unchanged) in collection {}", docName,
+                chunks.size(), chunkerFactory.getStrategy(), reused[0], shard.name);
+    }
+
+    private synchronized boolean acceptsDimensions(int length) {
+        if (dimensions == 0) dimensions = length;
+        return dimensions == length;
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    // A live document's chunks and the modification time recorded for filtering, as kept in the index snapshot
+    record DocumentChunks(String docName, long modifiedAt, List<Entry> chunks) {}
+
+    Map<String, DocumentChunks> documents() {
+        Map<String, DocumentChunks> out = new HashMap<>();
+        for (Shard shard : shards.values()) {
+            synchronized (shard.entries) {
+                Map<String, List<Entry>> byDoc = new HashMap<>();
+                for (Entry e : shard.entries) {
+                    byDoc.computeIfAbsent(e.docName, k -> new ArrayList<>()).add(e);
+                }
+                shard.docIds.forEach((doc, id) -> {
+                    if (shard.liveDocs.get(id)) {
+                        out.put(doc, new DocumentChunks(doc, shard.modified[id], byDoc.getOrDefault(doc, List.of())));
+                    }
+                });
+            }
+        }
+        return out;
+    }
+
+    // Chunks embedded elsewhere (an index snapshot), refused like fresh ones when their dimensions do not match
+    boolean restoreDocument(String docName, List<Entry> chunks, Map<String, ? extends Collection<String>> attributes,
+                            long modifiedAt) {
+        for (Entry e : chunks) {
+            if (!acceptsDimensions(e.vector.length)) return false;
+        }
+        replaceDocument(docName, chunks, attributes, modifiedAt);
+        return true;
+    }
+
+    public void removeDocument(String docName) {
+        if (docName == null) return;
+        replaceDocument(docName, List.of(), null, 0L);
+    }
+
+    // attributes == null drops the document's metadata as well
+    private void replaceDocument(String docName, List<Entry> chunks, Map<String, ? extends Collection<String>> attributes,
+                                 long modifiedAt) {
+        Shard shard = shardFor(docName);
+        synchronized (shard.entries) {
+            shard.entries.removeIf(e -> {
+                if (!e.docName.equals(docName)) return false;
+                vectorBytes.addAndGet(-(long) e.vector.length * Double.BYTES);
+                return true;
+            });
+            if (attributes == null) {
+                shard.dropDocument(docName);
+                return;
+            }
+            shard.setAttributes(shard.documentId(docName), docName, attributes, modifiedAt);
+            for (Entry e : chunks) {
+                add(e);
+            }
         }
-        log.info("[VectorIndex] Indexed document {} into {} chunks", docName, Math.max(1, (lines.size() + (chunkSize - 1)) / (chunkSize - overlap)));
     }
 
-    private String joinLines(List<String> lines, int startInclusive1, int endInclusive1) {
-        StringBuilder sb = new StringBuilder();
-        for (int ln = startInclusive1; ln <= endInclusive1; ln++) {
-            int idx = ln - 1;
-            if (idx >= 0 && idx < lines.size()) {
-                sb.append("[line ").append(ln).append("] ").append(lines.get(idx)).append("\n");
+    void add(Entry e) {
+        Shard shard = shardFor(e.docName);
+        synchronized (shard.entries) {
+            e.docId = shard.documentId(e.docName);
+            if (!shard.liveDocs.get(e.docId)) {
+                shard.setAttributes(e.docId, e.docName, Map.of(), 0L);
             }
+            shard.entries.add(e);
+            vectorBytes.addAndGet((long) e.vector.length * Double.BYTES);
         }
-        return sb.toString();
     }
 
     public List<SearchResult> search(String query, int topK) {
-        List<Double> qVec = embeddingClient.embed(Objects.requireNonNullElse(query, "").trim());
+        return search(query, topK, null);
+    }
+
+    // collections == null or empty searches every collection
+    public List<SearchResult> search(String query, int topK, Collection<String> collections) {
+        return search(query, topK, collections, MetadataFilter.NONE);
+    }
+
+    public List<SearchResult> search(String query, int topK, Collection<String> collections, MetadataFilter filter) {
+        return search(query, topK, collections, filter, SearchOptions.defaults());
+    }
+
+    public List<SearchResult> search(String query, int topK, Collection<String> collections, MetadataFilter filter,
+                                     SearchOptions options) {
+        List<Double> qVec = metrics.time(RagMetrics.QUERY_EMBEDDING,
+                () -> embeddingClient.embed(Objects.requireNonNullElse(query, "").trim()));
         if (qVec.isEmpty()) return List.of();
+        if (dimensions != 0 && qVec.size() != dimensions) {
+            log.warn("[VectorIndex] Query vector has {} dimensions, the index {}; skipping vector search", qVec.size(), dimensions);
+            return List.of();
+        }
         double[] q = qVec.stream().mapToDouble(Double::doubleValue).toArray();
+        long scanStart = System.nanoTime();
+        List<SearchResult> scored = postProcess(searchVector(q, fetchCount(topK, options), collections, filter), topK, options);
+        metrics.record(RagMetrics.VECTOR_SEARCH, System.nanoTime() - scanStart);
+        return scored;
+    }
+
+    // Non-blocking search: the query is embedded through the reactive client and shards are scanned on the
+    // search pool, so no caller thread waits. Embedding failures are signalled as errors, not as an empty result.
+    public Mono<List<SearchResult>> searchReactive(String query, int topK, Collection<String> collections,
+                                                   MetadataFilter filter, SearchOptions options) {
+        return metrics.time(RagMetrics.QUERY_EMBEDDING,
+                        embeddingClient.embedReactive(Objects.requireNonNullElse(query, "").trim()))
+                .flatMap(qVec -> {
+                    if (dimensions != 0 && qVec.size() != dimensions) {
+                        return Mono.error(new IllegalStateException("Query vector has " + qVec.size()
+                                + " dimensions, the index " + dimensions));
+                    }
+                    double[] q = qVec.stream().mapToDouble(Double::doubleValue).toArray();
+                    return metrics.time(RagMetrics.VECTOR_SEARCH,
+                            searchVectorReactive(q, fetchCount(topK, options), collections, filter)
+                                    .map(scored -> postProcess(scored, topK, options)));
+                });
+    }
+
+    private static int fetchCount(int topK, SearchOptions options) {
+        return options.mmrLambda < 1.0 ? topK * options.fetchFactor : topK;
+    }
+
+    private static List<SearchResult> postProcess(List<SearchResult> scored, int topK, SearchOptions options) {
+        if (options.mmrLambda < 1.0) {
+            scored = maximalMarginalRelevance(scored, topK, options.mmrLambda);
+        }
+        if (options.mergeOverlaps) {
+            scored = mergeOverlapping(scored, options.maxMergedLines);
+        }
+        return scored;
+    }
+
+    List<SearchResult> searchVector(double[] q, int topK) {
+        return searchVector(q, topK, null, MetadataFilter.NONE);
+    }
+
+    // Each shard yields its own top-K; several shards are scanned in parallel and their results merged
+    List<SearchResult> searchVector(double[] q, int topK, Collection<String> collections, MetadataFilter filter) {
+        int k = Math.max(1, topK);
+        List<Shard> targets = targetShards(collections);
+        if (targets.isEmpty()) return List.of();
+        if (targets.size() == 1) return scan(targets.get(0), q, k, filter);
+
+        List<Future<List<SearchResult>>> futures = new ArrayList<>(targets.size());
+        for (Shard shard : targets) {
+            futures.add(searchExecutor.submit(() -> scan(shard, q, k, filter)));
+        }
+        List<SearchResult> merged = new ArrayList<>();
+        try {
+            for (Future<List<SearchResult>> f : futures) {
+                merged.addAll(f.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while searching vector shards", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw new IllegalStateException("Vector shard search failed", e.getCause());
+        }
+        return topK(merged, k);
+    }
+
+    Mono<List<SearchResult>> searchVectorReactive(double[] q, int topK, Collection<String> collections,
+                                                  MetadataFilter filter) {
+        int k = Math.max(1, topK);
+        List<Shard> targets = targetShards(collections);
+        if (targets.isEmpty()) return Mono.just(List.of());
+        return Flux.fromIterable(targets)
+                .flatMap(shard -> Mono.fromCallable(() -> scan(shard, q, k, filter)).subscribeOn(searchScheduler))
+                .collectList()
+                .map(parts -> {
+                    List<SearchResult> merged = new ArrayList<>();
+                    parts.forEach(merged::addAll);
+                    return topK(merged, k);
+                });
+    }
+
+    private List<Shard> targetShards(Collection<String> collections) {
+        List<Shard> targets = new ArrayList<>();
+        if (collections == null || collections.isEmpty()) {
+            targets.addAll(shards.values());
+        } else {
+            for (String name : collections) {
+                Shard shard = name == null ? null : shards.get(name);
+                if (shard != null && !targets.contains(shard)) targets.add(shard);
+            }
+        }
+        return targets;
+    }
+
+    private static List<SearchResult> topK(List<SearchResult> merged, int k) {
+        merged.sort(Comparator.comparingDouble((SearchResult s) -> s.score).reversed());
+        return merged.size() > k ? new ArrayList<>(merged.subList(0, k)) : merged;
+    }
+
+    // The filter is resolved to a document bitmap first, so excluded chunks are never scored
+    private List<SearchResult> scan(Shard shard, double[] q, int topK, MetadataFilter filter) {
         List<Entry> snapshot;
-        synchronized (entries) {
-            snapshot = new ArrayList<>(entries);
+        synchronized (shard.entries) {
+            if (filter == null || filter.isEmpty()) {
+                snapshot = new ArrayList<>(shard.entries);
+            } else {
+                BitSet allowed = shard.select(filter);
+                if (allowed.isEmpty()) return List.of();
+                snapshot = new ArrayList<>();
+                for (Entry e : shard.entries) {
+                    if (allowed.get(e.docId)) snapshot.add(e);
+                }
+            }
         }
-        List<SearchResult> scored = snapshot.stream()
-                .map(e -> new SearchResult(e.docName, e.startLine, e.endLine, e.text, cosine(q, e.vector)))
+        return snapshot.stream()
+                .map(e -> new SearchResult(e.docName, e.startLine, e.endLine, documentStore, cosine(q, e.vector), e.vector))
                 .sorted(Comparator.comparingDouble((SearchResult s) -> s.score).reversed())
-                .limit(Math.max(1, topK))
+                .limit(topK)
                 .collect(Collectors.toList());
-        return scored;
     }
 
-    private double cosine(double[] a, double[] b) {
+    // Greedy MMR: each pick maximizes lambda * sim(query, c) - (1 - lambda) * max sim(c, already picked)
+    static List<SearchResult> maximalMarginalRelevance(List<SearchResult> candidates, int topK, double lambda) {
+        int n = candidates.size();
+        int k = Math.min(Math.max(1, topK), n);
+        if (n <= 1) return candidates;
+        List<SearchResult> selected = new ArrayList<>(k);
+        boolean[] taken = new boolean[n];
+        double[] maxSimToSelected = new double[n];
+        Arrays.fill(maxSimToSelected, -1.0);
+        while (selected.size() < k) {
+            int best = -1;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (taken[i]) continue;
+                double redundancy = selected.isEmpty() ? 0.0 : maxSimToSelected[i];
+                double value = lambda * candidates.get(i).score - (1 - lambda) * redundancy;
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = i;
+                }
+            }
+            taken[best] = true;
+            SearchResult pick = candidates.get(best);
+            selected.add(pick);
+            for (int i = 0; i < n; i++) {
+                if (taken[i]) continue;
+                SearchResult c = candidates.get(i);
+                double sim = pick.vector == null || c.vector == null ? 0.0 : cosine(pick.vector, c.vector);
+                if (sim > maxSimToSelected[i]) maxSimToSelected[i] = sim;
+            }
+        }
+        return selected;
+    }
+
+    // Collapses results of the same document whose line ranges overlap or touch into one range scored by its best
+    // member, so overlapping windows do not send the same lines twice. A range stops growing at maxLines (a run of
+    // overlapping windows would otherwise become one whole section); the next window then starts a new range.
+    // Order follows each group's best member.
+    static List<SearchResult> mergeOverlapping(List<SearchResult> results, int maxLines) {
+        Map<String, List<SearchResult>> byDoc = new HashMap<>();
+        for (SearchResult r : results) {
+            byDoc.computeIfAbsent(r.docName, k -> new ArrayList<>()).add(r);
+        }
+        List<SearchResult> merged = new ArrayList<>(results.size());
+        for (List<SearchResult> group : byDoc.values()) {
+            group.sort(Comparator.comparingInt((SearchResult r) -> r.startLine));
+            SearchResult current = null;
+            for (SearchResult r : group) {
+                // Eagerly rendered snippets cannot be re-rendered for a wider range
+                if (r.store == null) {
+                    merged.add(r);
+                    continue;
+                }
+                if (current != null && r.startLine <= current.endLine + 1
+                        && Math.max(current.endLine, r.endLine) - current.startLine + 1 <= maxLines) {
+                    SearchResult best = r.score > current.score ? r : current;
+                    current = new SearchResult(r.docName, current.startLine, Math.max(current.endLine, r.endLine),
+                            r.store, best.score, best.vector);
+                } else {
+                    if (current != null) merged.add(current);
+                    current = r;
+                }
+            }
+            if (current != null) merged.add(current);
+        }
+        merged.sort(Comparator.comparingDouble((SearchResult r) -> r.score).reversed());
+        return merged;
+    }
+
+    // Union of two result lists for one request: a chunk found by both keeps its better score, and the union is
+    // post-processed like a single search (MMR picks topK across both lists, otherwise the best topK remain, then
+    // overlapping ranges are merged when requested)
+    static List<SearchResult> union(List<SearchResult> a, List<SearchResult> b, int topK, SearchOptions options) {
+        Map<String, SearchResult> byRange = new HashMap<>();
+        for (List<SearchResult> list : List.of(a, b)) {
+            for (SearchResult r : list) {
+                byRange.merge(r.docName + '#' + r.startLine + '-' + r.endLine, r, (x, y) -> y.score > x.score ? y : x);
+            }
+        }
+        int k = Math.max(1, topK);
+        List<SearchResult> merged = new ArrayList<>(byRange.values());
+        merged.sort(Comparator.comparingDouble((SearchResult r) -> r.score).reversed());
+        if (options.mmrLambda >= 1.0 && merged.size() > k) {
+            merged = new ArrayList<>(merged.subList(0, k));
+        }
+        return postProcess(merged, k, options);
+    }
+
+    static double cosine(double[] a, double[] b) {
         if (a.length == 0 || b.length == 0 || a.length != b.length) return -1.0;
         double dot = 0.0, na = 0.0, nb = 0.0;
         for (int i = 0; i < a.length; i++) {
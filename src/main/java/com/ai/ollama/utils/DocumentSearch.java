@@ -1,15 +1,19 @@
 package com.ai.ollama.utils;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.BufferedReader;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -18,206 +22,616 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 class Lexer implements Iterator<String> {
-    private final String input;
+    // Reusable token buffer; a token is buffer[0, length) already lowercased
+    private char[] buffer = new char[32];
+    private int length;
+    private CharSequence input = "";
     private int pos = 0;
-    private String nextToken;
-    private static final List<Character> IGNORE_CHARS = List.of('"', ')', '(', '?', ']', '[', '=', '-', ',', ';', ':', '.');
+    private boolean pending;
+
+    public Lexer() {}
 
     public Lexer(String input) {
-        this.input = input;
-        advance();
+        reset(input);
+    }
+
+    public Lexer reset(CharSequence input) {
+        this.input = input == null ? "" : input;
+        this.pos = 0;
+        this.pending = false;
+        return this;
     }
 
-    // Advance to the next token
-    private void advance() {
-        // Skip whitespace
-        while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+    // Advance to the next run of Unicode letters/digits; returns false at end of input
+    public boolean advance() {
+        CharSequence in = input;
+        int n = in.length();
+        while (pos < n && !isTokenChar(in.charAt(pos))) {
             pos++;
         }
-        if (pos >= input.length()) {
-            nextToken = null;
-            return;
-        }
-        // Tokenize the input string
-        int start = pos;
-        while (pos < input.length() && !Character.isWhitespace(input.charAt(pos))) {
-            char ch = input.charAt(pos);
-            if (IGNORE_CHARS.contains(ch) || ch < 0x20 || ch > 0x7E || !Character.isLetter(ch)) {
-                // If we encounter a punctuation mark or non-letter, we are ignoring that
-                if (start < pos) {
-                    return;
-                }
-                pos++;
-                return;
+        if (pos >= n) {
+            length = 0;
+            return false;
+        }
+        int len = 0;
+        while (pos < n) {
+            char ch = in.charAt(pos);
+            if (!isTokenChar(ch)) break;
+            if (len == buffer.length) {
+                buffer = Arrays.copyOf(buffer, len * 2);
             }
+            buffer[len++] = Character.toLowerCase(ch);
             pos++;
         }
-        nextToken = input.substring(start, pos);
+        length = len;
+        return true;
+    }
+
+    public char[] buffer() {
+        return buffer;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    private static boolean isTokenChar(char ch) {
+        if (ch < 0x80) {
+            return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9');
+        }
+        return Character.isLetterOrDigit(ch) || Character.isSurrogate(ch);
     }
 
+    // Iterator view, allocates one String per token; indexing uses advance()/buffer() instead
     @Override
     public boolean hasNext() {
-        return nextToken != null;
+        if (!pending) {
+            pending = advance();
+        }
+        return pending;
     }
 
     @Override
     public String next() {
         if (!hasNext())
             throw new NoSuchElementException();
-        String token = nextToken;
-        advance();
-        return token;
+        pending = false;
+        return new String(buffer, 0, length);
     }
 }
 
 class DocumentNode {
     char c;
-    DocumentNode[] children = new DocumentNode[26];
-    boolean isEndOfWord;
-    Map<String, List<Integer>> documentLines = new HashMap<>(); // document name -> list of line numbers
+    // Children sorted by char so lookups can binary search; most nodes have only a few
+    char[] keys = EMPTY_KEYS;
+    DocumentNode[] children = EMPTY_CHILDREN;
+    int size;
+    int termId = -1;
+
+    private static final char[] EMPTY_KEYS = new char[0];
+    private static final DocumentNode[] EMPTY_CHILDREN = new DocumentNode[0];
 
     public DocumentNode(char c) {
         this.c = c;
     }
+
+    DocumentNode child(char ch) {
+        int i = Arrays.binarySearch(keys, 0, size, ch);
+        return i >= 0 ? children[i] : null;
+    }
+
+    DocumentNode childOrCreate(char ch) {
+        int i = Arrays.binarySearch(keys, 0, size, ch);
+        if (i >= 0) return children[i];
+        int at = -i - 1;
+        if (size == keys.length) {
+            int cap = Math.max(2, size * 2);
+            keys = Arrays.copyOf(keys, cap);
+            children = Arrays.copyOf(children, cap);
+        }
+        System.arraycopy(keys, at, keys, at + 1, size - at);
+        System.arraycopy(children, at, children, at + 1, size - at);
+        DocumentNode node = new DocumentNode(ch);
+        keys[at] = ch;
+        children[at] = node;
+        size++;
+        return node;
+    }
+}
+
+// Occurrences of one term as parallel (document id, line, token position) arrays. Positions count tokens from the
+// start of the document, across lines. Entries are in (document, position) order: a document is tokenized front to
+// back and a re-indexed one gets a new, higher id.
+class Postings {
+    int[] docs = new int[4];
+    int[] lines = new int[4];
+    int[] positions = new int[4];
+    int size;
+
+    void add(int doc, int line, int position) {
+        if (size == docs.length) {
+            docs = Arrays.copyOf(docs, size * 2);
+            lines = Arrays.copyOf(lines, size * 2);
+            positions = Arrays.copyOf(positions, size * 2);
+        }
+        docs[size] = doc;
+        lines[size] = line;
+        positions[size] = position;
+        size++;
+    }
+
+    void removeDocuments(BitSet removed) {
+        int w = 0;
+        for (int r = 0; r < size; r++) {
+            if (removed.get(docs[r])) continue;
+            docs[w] = docs[r];
+            lines[w] = lines[r];
+            positions[w] = positions[r];
+            w++;
+        }
+        size = w;
+    }
+
+    void reserve(int extra) {
+        if (size + extra > docs.length) {
+            int cap = Math.max(size + extra, size * 2);
+            docs = Arrays.copyOf(docs, cap);
+            lines = Arrays.copyOf(lines, cap);
+            positions = Arrays.copyOf(positions, cap);
+        }
+    }
+
+    // First index >= from whose (doc, position) is not before (doc, position); galloping, so skipping far ahead
+    // in a long list costs O(log distance)
+    int seek(int from, int doc, int position) {
+        if (from >= size || !before(from, doc, position)) return from;
+        int step = 1;
+        int lo = from;
+        int hi = from + 1;
+        while (hi < size && before(hi, doc, position)) {
+            lo = hi;
+            step <<= 1;
+            hi = from + step;
+        }
+        hi = Math.min(hi, size);
+        // before(lo) holds; find the first index in (lo, hi] where it does not
+        while (lo + 1 < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (before(mid, doc, position)) lo = mid;
+            else hi = mid;
+        }
+        return hi;
+    }
+
+    private boolean before(int i, int doc, int position) {
+        return docs[i] < doc || (docs[i] == doc && positions[i] < position);
+    }
 }
 
 class DocumentTrie {
     private DocumentNode root = new DocumentNode(' ');
+    private final List<String> terms = new ArrayList<>();        // term id -> term
+    private final List<Postings> postings = new ArrayList<>();   // term id -> occurrences
+    private final List<String> documents = new ArrayList<>();    // document id -> name
+    private int[] documentLengths = new int[16];                  // document id -> tokens indexed so far
+    private final Map<String, Integer> documentIds = new HashMap<>();
+    // Removed document ids are never reused. Their postings stay behind as tombstones until they add up to a
+    // quarter of the live ones, then compact() drops them all in one pass (amortized O(1) per removed posting)
+    private final BitSet removed = new BitSet();
+    private long livePostings;
+    private long deadPostings;
 
-    public void insert(String word, String document, int lineNumber) {
+    public int documentId(String document) {
+        Integer id = documentIds.get(document);
+        if (id == null) {
+            id = documents.size();
+            documents.add(document);
+            documentIds.put(document, id);
+            if (id == documentLengths.length) {
+                documentLengths = Arrays.copyOf(documentLengths, id * 2);
+            }
+        }
+        return id;
+    }
+
+    // Walks/extends the trie straight from a token buffer; only a new term allocates its String
+    public int termId(char[] buf, int len) {
         DocumentNode temp = root;
-        for (char ch : word.toCharArray()) {
-            if (ch < 'a' || ch > 'z') continue; // skip invalid chars
-            int index = ch - 'a';
-            if (temp.children[index] == null) {
-                temp.children[index] = new DocumentNode(ch);
+        for (int i = 0; i < len; i++) {
+            temp = temp.childOrCreate(buf[i]);
+        }
+        if (temp.termId < 0) {
+            temp.termId = terms.size();
+            terms.add(new String(buf, 0, len));
+            postings.add(new Postings());
+        }
+        return temp.termId;
+    }
+
+    // Appends the next token of the document
+    public void add(int termId, int documentId, int lineNumber) {
+        postings.get(termId).add(documentId, lineNumber, documentLengths[documentId]++);
+        livePostings++;
+    }
+
+    public void insert(String word, String document, int lineNumber) {
+        char[] buf = word.toLowerCase().toCharArray();
+        add(termId(buf, buf.length), documentId(document), lineNumber);
+    }
+
+    public int termCount() {
+        return terms.size();
+    }
+
+    // Live documents and their postings, document ids renumbered densely in their original order
+    void write(DataOutput out) throws IOException {
+        int[] remap = new int[documents.size()];
+        int live = 0;
+        for (int id = 0; id < documents.size(); id++) {
+            remap[id] = removed.get(id) ? -1 : live++;
+        }
+        out.writeInt(live);
+        for (int id = 0; id < documents.size(); id++) {
+            if (remap[id] < 0) continue;
+            SnapshotIO.writeString(out, documents.get(id));
+            out.writeInt(documentLengths[id]);
+        }
+        int[] counts = new int[terms.size()];
+        int liveTerms = 0;
+        for (int t = 0; t < terms.size(); t++) {
+            Postings p = postings.get(t);
+            for (int i = 0; i < p.size; i++) {
+                if (remap[p.docs[i]] >= 0) counts[t]++;
+            }
+            if (counts[t] > 0) liveTerms++;
+        }
+        out.writeInt(liveTerms);
+        for (int t = 0; t < terms.size(); t++) {
+            if (counts[t] == 0) continue;
+            Postings p = postings.get(t);
+            SnapshotIO.writeString(out, terms.get(t));
+            out.writeInt(counts[t]);
+            for (int i = 0; i < p.size; i++) {
+                if (remap[p.docs[i]] < 0) continue;
+                out.writeInt(remap[p.docs[i]]);
+                out.writeInt(p.lines[i]);
+                out.writeInt(p.positions[i]);
             }
-            temp = temp.children[index];
         }
-        temp.isEndOfWord = true;
-        temp.documentLines.computeIfAbsent(document, k -> new ArrayList<>()).add(lineNumber);
+    }
+
+    // Counterpart of write() on an empty trie; ids are assigned in the written order, so postings stay sorted
+    void read(ByteBuffer in) {
+        int documentCount = in.getInt();
+        int[] ids = new int[documentCount];
+        for (int d = 0; d < documentCount; d++) {
+            ids[d] = documentId(SnapshotIO.readString(in));
+            documentLengths[ids[d]] = in.getInt();
+        }
+        int termCount = in.getInt();
+        for (int t = 0; t < termCount; t++) {
+            char[] term = SnapshotIO.readString(in).toCharArray();
+            Postings p = postings.get(termId(term, term.length));
+            int count = in.getInt();
+            p.reserve(count);
+            livePostings += count;
+            for (int i = 0; i < count; i++) {
+                int doc = ids[in.getInt()];
+                int line = in.getInt();
+                p.add(doc, line, in.getInt());
+            }
+        }
+    }
+
+    public boolean containsDocument(String document) {
+        return documentIds.containsKey(document);
+    }
+
+    public void removeDocument(String document) {
+        Integer id = documentIds.remove(document);
+        if (id == null) return;
+        removed.set(id);
+        // A document has one posting per token
+        livePostings -= documentLengths[id];
+        deadPostings += documentLengths[id];
+        if (deadPostings * 4 > livePostings) {
+            compact();
+        }
+    }
+
+    void compact() {
+        for (Postings p : postings) {
+            p.removeDocuments(removed);
+        }
+        deadPostings = 0;
+    }
+
+    // Whether the term still occurs in a live document. Re-indexed documents get higher ids, so tombstones
+    // gather at the front and the scan from the back usually stops at once
+    private boolean isLive(int termId) {
+        Postings p = postings.get(termId);
+        for (int i = p.size - 1; i >= 0; i--) {
+            if (!removed.get(p.docs[i])) return true;
+        }
+        return false;
     }
 
     public Map<String, List<Integer>> searchDocuments(String word) {
+        int id = lookup(word.toLowerCase());
+        if (id < 0 || !isLive(id)) {
+            // Try fuzzy search
+            return fuzzySearch(word);
+        }
+        return toDocumentLines(id);
+    }
+
+    private int lookup(String word) {
         DocumentNode temp = root;
-        for (char ch : word.toLowerCase().toCharArray()) {
-            if (ch < 'a' || ch > 'z') {
-                return new HashMap<>();
+        for (int i = 0; i < word.length(); i++) {
+            temp = temp.child(word.charAt(i));
+            if (temp == null) return -1;
+        }
+        return temp.termId;
+    }
+
+    private Map<String, List<Integer>> toDocumentLines(int termId) {
+        Postings p = postings.get(termId);
+        Map<String, List<Integer>> out = new HashMap<>();
+        for (int i = 0; i < p.size; i++) {
+            if (removed.get(p.docs[i])) continue;
+            if (i > 0 && p.docs[i - 1] == p.docs[i] && p.lines[i - 1] == p.lines[i]) continue;
+            out.computeIfAbsent(documents.get(p.docs[i]), k -> new ArrayList<>()).add(p.lines[i]);
+        }
+        return out;
+    }
+
+    // Lines of every occurrence of the terms as consecutive tokens (a phrase may wrap onto the next line)
+    public Map<String, List<Integer>> searchPhrase(List<String> words) {
+        int[] ids = resolve(words, false);
+        if (ids == null) return new HashMap<>();
+        if (ids.length == 1) return toDocumentLines(ids[0]);
+        // Drive the merge from the rarest term; the others are probed at their offset from it
+        int driver = 0;
+        for (int i = 1; i < ids.length; i++) {
+            if (postings.get(ids[i]).size < postings.get(ids[driver]).size) driver = i;
+        }
+        Postings d = postings.get(ids[driver]);
+        int[] cursors = new int[ids.length];
+        Map<String, List<Integer>> out = new HashMap<>();
+        for (int j = 0; j < d.size; j++) {
+            int doc = d.docs[j];
+            if (removed.get(doc)) continue;
+            int start = d.positions[j] - driver;
+            if (start < 0) continue;
+            boolean match = true;
+            for (int i = 0; i < ids.length && match; i++) {
+                if (i == driver) continue;
+                Postings p = postings.get(ids[i]);
+                cursors[i] = p.seek(cursors[i], doc, start + i);
+                match = cursors[i] < p.size && p.docs[cursors[i]] == doc && p.positions[cursors[i]] == start + i;
             }
-            int index = ch - 'a';
-            if (temp.children[index] == null) {
-                // Try fuzzy search
-                return fuzzySearch(word);
+            if (!match) continue;
+            List<Integer> lines = out.computeIfAbsent(documents.get(doc), k -> new ArrayList<>());
+            for (int i = 0; i < ids.length; i++) {
+                addLine(lines, i == driver ? d.lines[j] : postings.get(ids[i]).lines[cursors[i]]);
             }
-            temp = temp.children[index];
         }
-        if (temp.isEndOfWord) {
-            return new HashMap<>(temp.documentLines);
-        }
-        // Try fuzzy search
-        return fuzzySearch(word);
+        return out;
     }
 
-    private Map<String, List<Integer>> fuzzySearch(String word) {
-        List<String> allWords = getAllWords();
-        String closest = null;
-        int minDist = Integer.MAX_VALUE;
-        for (String w : allWords) {
-            int dist = levenshtein(word, w);
-            if (dist < minDist) {
-                minDist = dist;
-                closest = w;
+    // Lines of every window holding all the terms, in any order, with at most `within` other words between them
+    public Map<String, List<Integer>> searchNear(List<String> words, int within) {
+        int[] ids = resolve(words, true);
+        if (ids == null) return new HashMap<>();
+        if (ids.length == 1) return toDocumentLines(ids[0]);
+        int m = ids.length;
+        Postings[] lists = new Postings[m];
+        for (int i = 0; i < m; i++) lists[i] = postings.get(ids[i]);
+        int[] cursors = new int[m];
+        int[] ends = new int[m];
+        Map<String, List<Integer>> out = new HashMap<>();
+        int doc = 0;
+        while (true) {
+            // Next document holding every term
+            boolean aligned = false;
+            while (!aligned) {
+                aligned = true;
+                for (int i = 0; i < m; i++) {
+                    cursors[i] = lists[i].seek(cursors[i], doc, 0);
+                    if (cursors[i] >= lists[i].size) return out;
+                    if (lists[i].docs[cursors[i]] != doc) {
+                        doc = Math.max(doc, lists[i].docs[cursors[i]]);
+                        aligned = false;
+                    }
+                }
+            }
+            if (!removed.get(doc)) {
+                for (int i = 0; i < m; i++) {
+                    ends[i] = lists[i].seek(cursors[i], doc + 1, 0);
+                }
+                List<Integer> lines = new ArrayList<>();
+                collectWindows(lists, cursors, ends, within, lines);
+                if (!lines.isEmpty()) out.put(documents.get(doc), lines);
             }
+            doc++;
         }
-        if (minDist <= 2 && closest != null) {
-            return searchDocuments(closest); // Exact search for closest
+    }
+
+    // Classic smallest-window sweep over the terms' positions within one document: the window spans the current
+    // occurrence of each term; advancing the leftmost one visits the tightest window for every left end
+    private static void collectWindows(Postings[] lists, int[] cursors, int[] ends, int within, List<Integer> lines) {
+        int m = lists.length;
+        int[] at = Arrays.copyOf(cursors, m);
+        while (true) {
+            int minTerm = 0;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < m; i++) {
+                int pos = lists[i].positions[at[i]];
+                if (pos < min) {
+                    min = pos;
+                    minTerm = i;
+                }
+                max = Math.max(max, pos);
+            }
+            if (max - min - (m - 1) <= within) {
+                for (int i = 0; i < m; i++) addLine(lines, lists[i].lines[at[i]]);
+            }
+            if (++at[minTerm] >= ends[minTerm]) return;
         }
-        return new HashMap<>();
     }
 
-    private List<String> getAllWords() {
-        List<String> words = new ArrayList<>();
-        getAllWordsHelper(root, new StringBuilder(), words);
-        return words;
+    private static void addLine(List<Integer> lines, int line) {
+        if (lines.isEmpty() || lines.get(lines.size() - 1) != line) lines.add(line);
     }
 
-    private void getAllWordsHelper(DocumentNode node, StringBuilder sb, List<String> words) {
-        if (node.isEndOfWord && node.c != ' ') {
-            words.add(sb.toString());
+    // Term ids of the words, misspellings resolved to the closest term (words of four letters or more; shorter
+    // ones are within two edits of too much); null when a word matches nothing
+    private int[] resolve(List<String> words, boolean distinct) {
+        int[] ids = new int[words.size()];
+        int n = 0;
+        for (String w : words) {
+            String word = w.toLowerCase();
+            int id = lookup(word);
+            if ((id < 0 || !isLive(id)) && word.length() >= 4) id = closestTerm(word);
+            if (id < 0 || !isLive(id)) return null;
+            boolean seen = false;
+            for (int i = 0; i < n && distinct && !seen; i++) seen = ids[i] == id;
+            if (!seen) ids[n++] = id;
         }
-        for (DocumentNode child : node.children) {
-            if (child != null) {
-                sb.append(child.c);
-                getAllWordsHelper(child, sb, words);
-                sb.deleteCharAt(sb.length() - 1);
+        return n == 0 ? null : Arrays.copyOf(ids, n);
+    }
+
+    Map<String, List<Integer>> fuzzySearch(String word) {
+        int closest = closestTerm(word.toLowerCase());
+        return closest >= 0 ? toDocumentLines(closest) : new HashMap<>();
+    }
+
+    // Term within two edits of the query, or -1
+    private int closestTerm(String query) {
+        int closest = -1;
+        int minDist = Integer.MAX_VALUE;
+        for (int id = 0; id < terms.size(); id++) {
+            String w = terms.get(id);
+            // Length difference is a lower bound on the edit distance
+            if (Math.abs(w.length() - query.length()) >= minDist) continue;
+            int dist = levenshtein(query, w);
+            if (dist < minDist && isLive(id)) {
+                minDist = dist;
+                closest = id;
             }
         }
+        return minDist <= 2 ? closest : -1;
     }
 
     private int levenshtein(String a, String b) {
-        int[][] dp = new int[a.length() + 1][b.length() + 1];
-        for (int i = 0; i <= a.length(); i++) dp[i][0] = i;
-        for (int j = 0; j <= b.length(); j++) dp[0][j] = j;
+        int[] prev = new int[b.length() + 1];
+        int[] curr = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
         for (int i = 1; i <= a.length(); i++) {
+            curr[0] = i;
             for (int j = 1; j <= b.length(); j++) {
                 if (a.charAt(i - 1) == b.charAt(j - 1)) {
-                    dp[i][j] = dp[i - 1][j - 1];
+                    curr[j] = prev[j - 1];
                 } else {
-                    dp[i][j] = 1 + Math.min(dp[i - 1][j - 1], Math.min(dp[i - 1][j], dp[i][j - 1]));
+                    curr[j] = 1 + Math.min(prev[j - 1], Math.min(prev[j], curr[j - 1]));
                 }
             }
+            int[] t = prev;
+            prev = curr;
+            curr = t;
         }
-        return dp[a.length()][b.length()];
+        return prev[b.length()];
     }
 }
 
 @Component
 public class DocumentSearch {
+    private static final Pattern QUOTED = Pattern.compile("\"([^\"]*)\"\\s*(?:~\\s*(\\d+))?");
+
     private DocumentTrie trie = new DocumentTrie();
-    private Map<String, List<String>> documentContents = new HashMap<>();
+    private final DocumentStore documentStore;
+    // Words allowed between the terms of an unquoted multi-word keyword that is not found as an exact phrase
+    private final int proximity;
+
+    public DocumentSearch(DocumentStore documentStore, @Value("${search.keyword.proximity:8}") int proximity) {
+        this.documentStore = documentStore;
+        this.proximity = proximity;
+    }
 
     public void indexDocuments(List<Path> files) {
         for (Path file : files) {
             try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
                 String line;
-                int lineNumber = 0;
                 List<String> lines = new ArrayList<>();
                 while ((line = reader.readLine()) != null) {
-                    lineNumber++;
                     lines.add(line);
-                    Lexer lex = new Lexer(line);
-                    while (lex.hasNext()) {
-                        String token = lex.next().toLowerCase();
-                        trie.insert(token, file.getFileName().toString(), lineNumber);
-                    }
                 }
-                documentContents.put(file.getFileName().toString(), lines);
+                indexDocument(file.getFileName().toString(), lines);
             } catch (IOException e) {
                 System.err.println("Error reading file: " + file);
             }
         }
     }
 
-    public void indexDocument(String documentName, List<String> lines) {
+    // Re-indexing an existing document replaces it
+    public synchronized void indexDocument(String documentName, List<String> lines) {
         if (documentName == null || lines == null) return;
+        documentStore.put(documentName, lines);
+        tokenize(documentName, lines);
+    }
+
+    // Indexes a document that was already written to the DocumentStore (streamed or mapped), one line at a time
+    public synchronized void indexStoredDocument(String documentName) {
+        if (documentName == null || !documentStore.contains(documentName)) return;
+        tokenize(documentName, documentStore.lines(documentName));
+    }
+
+    private void tokenize(String documentName, Iterable<String> lines) {
+        trie.removeDocument(documentName);
+        int docId = trie.documentId(documentName);
+        Lexer lex = new Lexer();
         int lineNumber = 0;
         for (String line : lines) {
             lineNumber++;
-            Lexer lex = new Lexer(line == null ? "" : line);
-            while (lex.hasNext()) {
-                String token = lex.next().toLowerCase();
-                trie.insert(token, documentName, lineNumber);
+            lex.reset(line);
+            while (lex.advance()) {
+                trie.add(trie.termId(lex.buffer(), lex.length()), docId, lineNumber);
             }
         }
-        documentContents.put(documentName, new ArrayList<>(lines));
     }
 
-    public Map<String, Set<Integer>> searchKeywords(List<String> keywords) {
+    public synchronized int termCount() {
+        return trie.termCount();
+    }
+
+    public synchronized void writeSnapshot(DataOutput out) throws IOException {
+        trie.write(out);
+    }
+
+    // Replaces the keyword index with one read from a snapshot; its documents must be in the DocumentStore
+    public synchronized void readSnapshot(ByteBuffer in) {
+        DocumentTrie loaded = new DocumentTrie();
+        loaded.read(in);
+        trie = loaded;
+    }
+
+    public synchronized void removeDocument(String documentName) {
+        if (documentName == null) return;
+        trie.removeDocument(documentName);
+        documentStore.remove(documentName);
+    }
+
+    // A keyword is a word, a phrase ("exact phrase", or unquoted words: the exact phrase, else the words within
+    // search.keyword.proximity words of each other), or "words"~N for the words in any order within N words
+    public synchronized Map<String, Set<Integer>> searchKeywords(List<String> keywords) {
         Map<String, Set<Integer>> result = new HashMap<>();
         for (String keyword : keywords) {
-            Map<String, List<Integer>> docs = trie.searchDocuments(keyword.toLowerCase());
+            Map<String, List<Integer>> docs = searchKeyword(keyword);
             for (Map.Entry<String, List<Integer>> entry : docs.entrySet()) {
                 result.computeIfAbsent(entry.getKey(), k -> new HashSet<>()).addAll(entry.getValue());
             }
@@ -225,12 +639,27 @@ public class DocumentSearch {
         return result;
     }
 
-    public Map<String, List<String>> getDocumentContents() {
-        return documentContents;
+    private Map<String, List<Integer>> searchKeyword(String keyword) {
+        Matcher quoted = QUOTED.matcher(keyword.trim());
+        boolean exact = quoted.matches();
+        List<String> words = new ArrayList<>();
+        new Lexer(exact ? quoted.group(1) : keyword).forEachRemaining(words::add);
+        if (words.isEmpty()) return Map.of();
+        if (words.size() == 1) return trie.searchDocuments(words.get(0));
+        if (exact) {
+            return quoted.group(2) == null ? trie.searchPhrase(words)
+                    : trie.searchNear(words, Integer.parseInt(quoted.group(2)));
+        }
+        Map<String, List<Integer>> docs = trie.searchPhrase(words);
+        return docs.isEmpty() ? trie.searchNear(words, proximity) : docs;
+    }
+
+    public DocumentStore getDocumentStore() {
+        return documentStore;
     }
 
     public static void main(String[] args) {
-        DocumentSearch ds = new DocumentSearch();
+        DocumentSearch ds = new DocumentSearch(new DocumentStore(false), 8);
 
         // Example: index all .txt files in current directory
         List<Path> files = new ArrayList<>();
@@ -254,7 +683,7 @@ public class DocumentSearch {
         }));
 
         while (true) {
-            System.out.print("Enter keywords (comma separated, or 'exit' to quit): ");
+            System.out.print("Enter keywords (comma separated, \"phrase\" or \"words\"~N, or 'exit' to quit): ");
             String input = sc.nextLine().trim();
             if (input.equalsIgnoreCase("exit")) break;
             if (input.isEmpty()) continue;
@@ -267,9 +696,8 @@ public class DocumentSearch {
                 System.out.println("Documents containing keywords:");
                 for (Map.Entry<String, Set<Integer>> entry : results.entrySet()) {
                     String doc = entry.getKey();
-                    List<String> lines = ds.getDocumentContents().get(doc);
                     for (int lineNum : entry.getValue()) {
-                        System.out.println("  " + doc + " line " + lineNum + ": " + lines.get(lineNum - 1));
+                        System.out.println("  " + doc + " line " + lineNum + ": " + ds.getDocumentStore().line(doc, lineNum));
                     }
                 }
             }
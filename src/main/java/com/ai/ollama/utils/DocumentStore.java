@@ -0,0 +1,318 @@
+package com.ai.ollama.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Single copy of every indexed document: UTF-8 blocks of BLOCK_LINES lines plus line offsets, each block optionally
+// deflated. Keyword hits, vector chunks and snippets refer to (document, line range) and are materialized on demand.
+@Component
+public class DocumentStore {
+
+    static final int BLOCK_LINES = 64;
+    public static final long MAX_MAPPED_BYTES = Integer.MAX_VALUE;
+
+    private final boolean compress;
+
+    // Where putMapped keeps its private copies of mapped files; empty means java.io.tmpdir. Should be on disk,
+    // not a tmpfs, or the copies take memory after all
+    @Value("${docs.store.map-dir:}")
+    private String mapDir;
+
+    private final Map<String, StoredDocument> documents = new ConcurrentHashMap<>();
+
+    // Recently inflated blocks, so rendering a chunk does not inflate the same block for every line
+    private final Map<BlockKey, byte[]> inflated = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<BlockKey, byte[]> eldest) {
+            return size() > 32;
+        }
+    };
+
+    public DocumentStore(@Value("${docs.store.compress:false}") boolean compress) {
+        this.compress = compress;
+    }
+
+    private record BlockKey(StoredDocument doc, int block) {}
+
+    private static final class StoredDocument {
+        final int lineCount;
+        // Blocks: offsets[i] is the start of line i+1 within its block. Mapped: its start in the file, and
+        // offsets[lineCount] is the end of the file
+        final int[] offsets;
+        final byte[][] blocks;   // BLOCK_LINES lines each, deflated when rawLengths is set
+        final int[] rawLengths;  // inflated size of each deflated block
+        final ByteBuffer mapped; // memory-mapped file; lines keep their terminators there
+        final long storedBytes;
+
+        StoredDocument(int lineCount, int[] offsets, byte[][] blocks, int[] rawLengths, ByteBuffer mapped,
+                       long storedBytes) {
+            this.lineCount = lineCount;
+            this.offsets = offsets;
+            this.blocks = blocks;
+            this.rawLengths = rawLengths;
+            this.mapped = mapped;
+            this.storedBytes = storedBytes;
+        }
+
+        int lineCount() {
+            return lineCount;
+        }
+    }
+
+    public void put(String name, List<String> lines) {
+        if (name == null || lines == null) return;
+        Writer writer = writer(name);
+        for (String line : lines) {
+            writer.addLine(line);
+        }
+        writer.commit();
+    }
+
+    // Appends lines one at a time, so a stream can be stored without first collecting a List<String>. Only the
+    // block being filled is buffered; a full block is stored (or deflated) right away, so storing a document takes
+    // its stored size plus one block
+    public Writer writer(String name) {
+        return new Writer(name);
+    }
+
+    public final class Writer {
+        private final String name;
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream(8192);
+        private final List<byte[]> blocks = new ArrayList<>();
+        private int[] rawLengths = compress ? new int[16] : null;
+        private int[] offsets = new int[64];
+        private int lines;
+        private long stored;
+        private Deflater deflater;
+
+        private Writer(String name) {
+            this.name = name;
+        }
+
+        public void addLine(String line) {
+            if (lines > 0 && lines % BLOCK_LINES == 0) {
+                flush();
+            }
+            if (lines == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[lines++] = block.size();
+            if (line != null) {
+                block.writeBytes(line.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        private void flush() {
+            byte[] raw = block.toByteArray();
+            block.reset();
+            if (rawLengths != null) {
+                if (blocks.size() == rawLengths.length) {
+                    rawLengths = Arrays.copyOf(rawLengths, rawLengths.length * 2);
+                }
+                rawLengths[blocks.size()] = raw.length;
+                raw = deflate(raw);
+            }
+            blocks.add(raw);
+            stored += raw.length;
+        }
+
+        private byte[] deflate(byte[] raw) {
+            if (deflater == null) deflater = new Deflater(Deflater.BEST_SPEED);
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(16, raw.length / 2));
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+
+        public void commit() {
+            if (lines > blocks.size() * BLOCK_LINES) {
+                flush();
+            }
+            if (deflater != null) deflater.end();
+            int[] finalRawLengths = rawLengths == null ? null : Arrays.copyOf(rawLengths, blocks.size());
+            documents.put(name, new StoredDocument(lines, Arrays.copyOf(offsets, lines), blocks.toArray(new byte[0][]),
+                    finalRawLengths, null, stored));
+        }
+    }
+
+    // Serves the document from a read-only mapping; only line offsets live on the heap. What is mapped is a private
+    // copy of the file: a document rewritten or truncated in place is otherwise read through a mapping whose pages
+    // are gone until the change is applied (SIGBUS / InternalError). Call again after the file changes.
+    public void putMapped(String name, Path file) throws IOException {
+        long size = Files.size(file);
+        if (size > MAX_MAPPED_BYTES) {
+            throw new IOException("File too large to map: " + file + " (" + size + " bytes)");
+        }
+        Path dir = mapDir == null || mapDir.isBlank() ? Paths.get(System.getProperty("java.io.tmpdir")) : Paths.get(mapDir);
+        Files.createDirectories(dir);
+        Path copy = Files.createTempFile(dir, "docstore-", ".map");
+        try {
+            Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+            map(name, copy);
+        } finally {
+            // The mapping outlives the directory entry; where a mapped file cannot be deleted, it goes on exit
+            try {
+                Files.delete(copy);
+            } catch (IOException e) {
+                copy.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    private void map(String name, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = Math.min(channel.size(), MAX_MAPPED_BYTES);
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int[] offsets = new int[64];
+            int lines = 0;
+            int len = (int) size;
+            int lineStart = 0;
+            for (int i = 0; i < len; i++) {
+                if (buf.get(i) == '\n') {
+                    if (lines + 1 >= offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                    offsets[lines++] = lineStart;
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart < len) {
+                if (lines + 1 >= offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                offsets[lines++] = lineStart;
+            }
+            offsets[lines] = len;
+            documents.put(name, new StoredDocument(lines, Arrays.copyOf(offsets, lines + 1), null, null, buf, 0));
+        }
+    }
+
+    public boolean contains(String name) {
+        return documents.containsKey(name);
+    }
+
+    public void remove(String name) {
+        documents.remove(name);
+    }
+
+    public Set<String> documentNames() {
+        return documents.keySet();
+    }
+
+    public int lineCount(String name) {
+        StoredDocument doc = documents.get(name);
+        return doc == null ? 0 : doc.lineCount();
+    }
+
+    // 1-based line number; null when out of range
+    public String line(String name, int lineNumber) {
+        StoredDocument doc = documents.get(name);
+        if (doc == null || lineNumber < 1 || lineNumber > doc.lineCount()) return null;
+        return decode(doc, lineNumber - 1);
+    }
+
+    // Read-only view whose elements are decoded on access
+    public List<String> lines(String name) {
+        StoredDocument doc = documents.get(name);
+        if (doc == null) return List.of();
+        return new AbstractList<>() {
+            @Override
+            public String get(int index) {
+                if (index < 0 || index >= doc.lineCount()) throw new IndexOutOfBoundsException(index);
+                return decode(doc, index);
+            }
+
+            @Override
+            public int size() {
+                return doc.lineCount();
+            }
+        };
+    }
+
+    // Lines [start, end] (1-based, inclusive) in the "[line N] text" form used for prompts
+    public String render(String name, int startLine, int endLine) {
+        StoredDocument doc = documents.get(name);
+        if (doc == null) return "";
+        StringBuilder sb = new StringBuilder();
+        int last = Math.min(endLine, doc.lineCount());
+        for (int ln = Math.max(1, startLine); ln <= last; ln++) {
+            sb.append("[line ").append(ln).append("] ").append(decode(doc, ln - 1)).append("\n");
+        }
+        return sb.toString();
+    }
+
+    public long storedBytes() {
+        long total = 0;
+        for (StoredDocument doc : documents.values()) {
+            total += doc.storedBytes + (long) doc.offsets.length * Integer.BYTES;
+        }
+        return total;
+    }
+
+    private String decode(StoredDocument doc, int index) {
+        if (doc.mapped != null) {
+            int from = doc.offsets[index];
+            int to = doc.offsets[index + 1];
+            // Strip the "\n" or "\r\n" terminator kept in the mapped file
+            if (to > from && doc.mapped.get(to - 1) == '\n') to--;
+            if (to > from && doc.mapped.get(to - 1) == '\r') to--;
+            byte[] raw = new byte[to - from];
+            doc.mapped.get(from, raw);
+            return new String(raw, StandardCharsets.UTF_8);
+        }
+        int block = index / BLOCK_LINES;
+        byte[] raw = doc.rawLengths == null ? doc.blocks[block] : inflate(doc, block);
+        int end = (index + 1) % BLOCK_LINES == 0 || index + 1 == doc.lineCount ? raw.length : doc.offsets[index + 1];
+        return new String(raw, doc.offsets[index], end - doc.offsets[index], StandardCharsets.UTF_8);
+    }
+
+    private byte[] inflate(StoredDocument doc, int block) {
+        BlockKey key = new BlockKey(doc, block);
+        synchronized (inflated) {
+            byte[] cached = inflated.get(key);
+            if (cached != null) return cached;
+        }
+        byte[] raw = new byte[doc.rawLengths[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(doc.blocks[block]);
+            int n = 0;
+            while (n < raw.length && !inflater.finished()) {
+                n += inflater.inflate(raw, n, raw.length - n);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt document block " + block, e);
+        } finally {
+            inflater.end();
+        }
+        synchronized (inflated) {
+            inflated.put(key, raw);
+        }
+        return raw;
+    }
+}
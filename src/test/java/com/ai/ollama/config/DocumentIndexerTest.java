@@ -0,0 +1,63 @@
+package com.ai.ollama.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.UrlResource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentIndexerTest {
+
+    @Test
+    void packagedDocumentsAreNamedByTheirPathUnderDocs(@TempDir Path dir) throws IOException {
+        Path docs = Files.createDirectories(dir.resolve("docs"));
+        Files.createDirectories(docs.resolve("billing"));
+        Files.writeString(docs.resolve("billing/refunds.md"), "text");
+        Files.writeString(docs.resolve("guide.md"), "text");
+        FileSystemResource root = new FileSystemResource(docs);
+
+        assertThat(DocumentIndexer.documentName(root, new FileSystemResource(docs.resolve("billing/refunds.md"))))
+                .isEqualTo("billing/refunds.md");
+        assertThat(DocumentIndexer.documentName(root, new FileSystemResource(docs.resolve("guide.md"))))
+                .isEqualTo("guide.md");
+        assertThat(DocumentIndexer.documentName(root, new FileSystemResource(docs.resolve("billing")))).isNull();
+    }
+
+    @Test
+    void jarEntriesAreNamedByTheirPathUnderDocs() throws IOException {
+        UrlResource root = new UrlResource("jar:file:/app.jar!/BOOT-INF/classes!/docs/");
+
+        assertThat(DocumentIndexer.documentName(root,
+                new UrlResource("jar:file:/app.jar!/BOOT-INF/classes!/docs/billing/late%20fees.md")))
+                .isEqualTo("billing/late fees.md");
+        assertThat(DocumentIndexer.documentName(root,
+                new UrlResource("jar:file:/app.jar!/BOOT-INF/classes!/docs/billing/"))).isNull();
+    }
+
+    @Test
+    void fingerprintCoversNamesAndContents(@TempDir Path dir) throws Exception {
+        Path a = Files.writeString(dir.resolve("a.md"), "refunds within 30 days");
+        Path empty = Files.writeString(dir.resolve("empty.md"), "");
+        Map<String, Resource> docs = new TreeMap<>(Map.of("a.md", new FileSystemResource(a), "empty.md", new FileSystemResource(empty)));
+        String before = DocumentIndexer.fingerprint(docs);
+
+        assertThat(before).startsWith("1:");
+        assertThat(DocumentIndexer.fingerprint(docs)).isEqualTo(before);
+
+        // Same size, different content
+        Files.writeString(a, "refunds within 60 days");
+        assertThat(DocumentIndexer.fingerprint(docs)).isNotEqualTo(before);
+
+        Files.writeString(a, "refunds within 30 days");
+        assertThat(DocumentIndexer.fingerprint(Map.of("b.md", new FileSystemResource(a)))).isNotEqualTo(before);
+        assertThat(DocumentIndexer.fingerprint(docs)).isEqualTo(before);
+    }
+}
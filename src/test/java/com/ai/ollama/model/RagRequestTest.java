@@ -0,0 +1,26 @@
+package com.ai.ollama.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RagRequestTest {
+
+    @Test
+    void collectionNamesAreNormalized() {
+        RagRequest request = new RagRequest();
+        request.setCollections(Arrays.asList(" billing", "billing ", "", null, "tenant-a"));
+
+        assertThat(request.getCollections()).containsExactly("billing", "tenant-a");
+    }
+
+    @Test
+    void missingCollectionsStayMissing() {
+        RagRequest request = new RagRequest();
+        request.setCollections(null);
+
+        assertThat(request.getCollections()).isNull();
+    }
+}
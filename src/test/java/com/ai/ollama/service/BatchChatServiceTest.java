@@ -0,0 +1,147 @@
+package com.ai.ollama.service;
+
+import com.ai.ollama.model.BatchResult;
+import com.ai.ollama.model.ChatRequest;
+import com.ai.ollama.model.ChatResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BatchChatServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private final Set<String> failing = ConcurrentHashMap.newKeySet();
+    private final List<BatchChatService> services = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(BatchChatService::stop);
+    }
+
+    // Answers each prompt with "re: <prompt>", or fails the prompts listed in failing
+    private BatchChatService service(int maxJobs, Path journalDir) {
+        OllamaClient ollamaClient = mock(OllamaClient.class);
+        when(ollamaClient.chat(any())).thenAnswer(invocation -> {
+            String prompt = invocation.<ChatRequest>getArgument(0).getMessages().get(0).getContent();
+            calls.computeIfAbsent(prompt, k -> new AtomicInteger()).incrementAndGet();
+            if (failing.contains(prompt)) throw new IllegalStateException("model unavailable");
+            return new ChatResponse("llama3.1", "re: " + prompt);
+        });
+        BatchChatService service = new BatchChatService(ollamaClient, objectMapper, 2, 60_000, maxJobs,
+                journalDir == null ? "" : journalDir.toString());
+        services.add(service);
+        return service;
+    }
+
+    private static List<ChatRequest> batch(String... prompts) {
+        List<ChatRequest> requests = new ArrayList<>();
+        for (String prompt : prompts) {
+            ChatRequest request = new ChatRequest();
+            request.setModel("llama3.1");
+            request.setMessages(List.of(new ChatRequest.Message("user", prompt)));
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    private static List<BatchResult> run(BatchChatService service, String jobId, List<ChatRequest> requests) {
+        BatchChatService.BatchJob job = service.open(jobId, requests);
+        return service.run(job, requests).collectList().block(Duration.ofSeconds(10));
+    }
+
+    private static List<String> outcomes(List<BatchResult> results) {
+        return results.stream()
+                .sorted(Comparator.comparingInt(BatchResult::getIndex))
+                .map(r -> r.getIndex() + ":" + (r.getError() != null ? "error" : r.getResponse()) + (r.isResumed() ? " (resumed)" : ""))
+                .toList();
+    }
+
+    private int callsFor(String prompt) {
+        AtomicInteger count = calls.get(prompt);
+        return count == null ? 0 : count.get();
+    }
+
+    @Test
+    void resumingAJobReplaysCompletedResultsAndRunsOnlyTheRest() {
+        BatchChatService service = service(10, null);
+        List<ChatRequest> requests = batch("a", "b", "c");
+        failing.add("b");
+
+        assertThat(outcomes(run(service, "job-1", requests))).containsExactly("0:re: a", "1:error", "2:re: c");
+        assertThat(service.status("job-1")).containsEntry("completed", 2).containsEntry("running", false);
+
+        failing.clear();
+        List<BatchResult> resumed = run(service, "job-1", requests);
+
+        // Replayed results come first, in index order
+        assertThat(resumed.subList(0, 2)).extracting(BatchResult::getIndex).containsExactly(0, 2);
+        assertThat(outcomes(resumed)).containsExactly("0:re: a (resumed)", "1:re: b", "2:re: c (resumed)");
+        assertThat(callsFor("a")).isEqualTo(1);
+        assertThat(callsFor("b")).isEqualTo(2);
+        assertThat(service.status("job-1")).containsEntry("completed", 3);
+    }
+
+    @Test
+    void aJobIdCannotBeResumedWithOtherRequestsOrWhileRunning() {
+        BatchChatService service = service(10, null);
+        List<ChatRequest> requests = batch("a");
+        service.open("job-1", requests);
+
+        assertThatThrownBy(() -> service.open("job-1", requests)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> service.open("job-1", batch("other"))).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> service.open("../job", requests)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.open("job-2", List.of())).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void journaledResultsAreReplayedFromDiskAfterARestart(@TempDir Path journalDir) throws Exception {
+        List<ChatRequest> requests = batch("a", "b", "c");
+        failing.add("c");
+        assertThat(outcomes(run(service(10, journalDir), "job-1", requests))).containsExactly("0:re: a", "1:re: b", "2:error");
+        // The header plus one line per completed request
+        assertThat(Files.readAllLines(journalDir.resolve("job-1.ndjson"))).hasSize(3);
+
+        failing.clear();
+        BatchChatService restarted = service(10, journalDir);
+        List<BatchResult> resumed = run(restarted, "job-1", requests);
+
+        assertThat(outcomes(resumed)).containsExactly("0:re: a (resumed)", "1:re: b (resumed)", "2:re: c");
+        assertThat(callsFor("a")).isEqualTo(1);
+        assertThat(callsFor("c")).isEqualTo(2);
+        assertThat(Files.readAllLines(journalDir.resolve("job-1.ndjson"))).hasSize(4);
+    }
+
+    @Test
+    void idleJobsAreEvictedForRoomButRunningOnesAreNot() {
+        BatchChatService service = service(1, null);
+        List<ChatRequest> requests = batch("a");
+        BatchChatService.BatchJob first = service.open("job-1", requests);
+
+        assertThatThrownBy(() -> service.open("job-2", requests)).isInstanceOf(RejectedExecutionException.class);
+
+        service.run(first, requests).blockLast(Duration.ofSeconds(10));
+        run(service, "job-2", requests);
+        assertThat(service.status("job-1")).isNull();
+        assertThat(service.status("job-2")).containsEntry("completed", 1);
+    }
+}
@@ -0,0 +1,121 @@
+package com.ai.ollama.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChunkerTest {
+
+    record Chunk(int startLine, int endLine, String text, long hash) {
+        String range() {
+            return startLine + "-" + endLine;
+        }
+    }
+
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    private void feed(Chunker chunker, String... lines) {
+        for (String line : lines) chunker.accept(line);
+        chunker.finish();
+    }
+
+    private List<String> ranges() {
+        return chunks.stream().map(Chunk::range).toList();
+    }
+
+    private static String[] numbered(int count) {
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) lines[i] = "line number " + (i + 1);
+        return lines;
+    }
+
+    private Chunker.Sink sink() {
+        return (start, end, text, hash) -> chunks.add(new Chunk(start, end, text, hash));
+    }
+
+    @Test
+    void lineWindowsOverlapAndTheTailIsNotRepeated() {
+        feed(new LineWindowChunker(5, 2, 1, sink()), numbered(11));
+        assertThat(ranges()).containsExactly("1-5", "4-8", "7-11");
+
+        chunks.clear();
+        feed(new LineWindowChunker(5, 2, 1, sink()), numbered(12));
+        assertThat(ranges()).containsExactly("1-5", "4-8", "7-11", "10-12");
+
+        chunks.clear();
+        feed(new LineWindowChunker(5, 2, 1, sink()), numbered(3));
+        assertThat(ranges()).containsExactly("1-3");
+    }
+
+    @Test
+    void chunkTextCarriesLineNumbersButTheHashDoesNot() {
+        feed(new LineWindowChunker(2, 0, 1, sink()), "same", "text", "same", "text", null, "");
+
+        assertThat(chunks.get(0).text()).isEqualTo("[line 1] same\n[line 2] text\n");
+        assertThat(chunks.get(1).text()).isEqualTo("[line 3] same\n[line 4] text\n");
+        assertThat(chunks.get(0).hash()).isEqualTo(chunks.get(1).hash());
+        assertThat(chunks.get(2).text()).isEqualTo("[line 5] \n[line 6] \n");
+        assertThat(chunks.get(2).hash()).isNotEqualTo(chunks.get(0).hash());
+    }
+
+    @Test
+    void chunksShorterThanMinCharsAreDropped() {
+        feed(new LineWindowChunker(1, 0, 20, sink()), "tiny", "a line long enough to keep");
+
+        assertThat(ranges()).containsExactly("2-2");
+    }
+
+    @Test
+    void paragraphsEndAtBlankLinesPastTheTargetAndHeadingsStartChunks() {
+        String words = "x".repeat(24); // 6 tokens
+        feed(new BoundaryChunker(BoundaryChunker.Boundary.PARAGRAPH, 10, 40, 1, sink()),
+                "# Intro", words, "", words, words, "", words, "## Next", words);
+
+        // The first blank line comes before the target is reached, so it does not end the chunk
+        assertThat(ranges()).containsExactly("1-6", "7-7", "8-9");
+    }
+
+    @Test
+    void maxTokensForcesACutWithoutABoundary() {
+        String words = "x".repeat(24); // 6 tokens
+        feed(new BoundaryChunker(BoundaryChunker.Boundary.PARAGRAPH, 10, 12, 1, sink()),
+                words, words, words, words, words);
+
+        assertThat(ranges()).containsExactly("1-2", "3-4", "5-5");
+    }
+
+    @Test
+    void sentencesEndAtSentencePunctuationOnceTheTargetIsReached() {
+        feed(new BoundaryChunker(BoundaryChunker.Boundary.SENTENCE, 5, 100, 1, sink()),
+                "The first sentence ends here.",
+                "A second one starts",
+                "and ends on this line!",
+                "He said \"stop right there.\"",
+                "Short.",
+                "trailing words");
+
+        assertThat(ranges()).containsExactly("1-1", "2-3", "4-4", "5-6");
+    }
+
+    @Test
+    void tokenPackingCutsAtAnyLine() {
+        String words = "x".repeat(16); // 4 tokens
+        feed(new BoundaryChunker(BoundaryChunker.Boundary.TOKENS, 8, 8, 1, sink()), words, words, words, words, words);
+
+        assertThat(ranges()).containsExactly("1-2", "3-4", "5-5");
+    }
+
+    @Test
+    void factoryRejectsUnknownStrategiesAndOverlapsAsLargeAsTheWindow() {
+        assertThatThrownBy(() -> new ChunkerFactory("words", 200, 400, 20, 5, 32))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ChunkerFactory("lines", 200, 400, 20, 20, 32))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(new ChunkerFactory("sentence", 200, 400, 20, 5, 32).create(sink())).isInstanceOf(BoundaryChunker.class);
+        assertThat(new ChunkerFactory("lines", 200, 400, 20, 5, 32).signature()).isEqualTo("lines/200/400/20/5/32");
+    }
+}
@@ -0,0 +1,138 @@
+package com.ai.ollama.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmbeddingRouterTest {
+
+    private static final List<Double> PRIMARY = List.of(1.0, 0.0);
+    private static final List<Double> SECONDARY = List.of(0.0, 1.0);
+
+    private final HuggingFaceEmbeddingClient huggingFace = mock(HuggingFaceEmbeddingClient.class);
+    private final OllamaEmbeddingClient ollama = mock(OllamaEmbeddingClient.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private EmbeddingRouter router;
+
+    @BeforeEach
+    void setUp() {
+        router = new EmbeddingRouter(huggingFace, ollama, new RagMetrics(registry));
+        ReflectionTestUtils.setField(router, "primaryName", EmbeddingRouter.HUGGING_FACE);
+        ReflectionTestUtils.setField(router, "secondaryName", EmbeddingRouter.OLLAMA);
+        ReflectionTestUtils.setField(router, "huggingFaceSpace", "e5");
+        ReflectionTestUtils.setField(router, "ollamaSpace", "e5");
+        ReflectionTestUtils.setField(router, "hedgePercentile", 0.95);
+        ReflectionTestUtils.setField(router, "hedgeMinMs", 20L);
+        ReflectionTestUtils.setField(router, "hedgeInitialMs", 100L);
+        ReflectionTestUtils.setField(router, "cooldownMs", 60_000L);
+    }
+
+    private static WebClientResponseException unavailable() {
+        return WebClientResponseException.create(503, "Service Unavailable", null, null, null);
+    }
+
+    private double routed(String event) {
+        var counter = registry.find("rag.embedding.route").tag("event", event).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private List<Double> embed() {
+        return router.embedReactive("text").block(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void percentilesComeFromTheMostRecentWindow() {
+        EmbeddingRouter.LatencyWindow window = new EmbeddingRouter.LatencyWindow(100);
+        assertThat(window.percentile(0.95)).isZero();
+        for (long ms = 100; ms >= 1; ms--) window.record(ms);
+
+        assertThat(window.count()).isEqualTo(100);
+        assertThat(window.percentile(0.95)).isEqualTo(95);
+        assertThat(window.percentile(0.5)).isEqualTo(50);
+        assertThat(window.percentile(1.0)).isEqualTo(100);
+        assertThat(window.percentile(0.0)).isEqualTo(1);
+
+        EmbeddingRouter.LatencyWindow ring = new EmbeddingRouter.LatencyWindow(4);
+        for (long ms : new long[]{100, 100, 100, 100, 1, 2}) ring.record(ms);
+        assertThat(ring.count()).isEqualTo(4);
+        assertThat(ring.percentile(0.5)).isEqualTo(2);
+    }
+
+    @Test
+    void aFastPrimaryIsNeverHedged() {
+        when(huggingFace.embedReactive(anyString())).thenReturn(Mono.just(PRIMARY));
+
+        assertThat(embed()).isEqualTo(PRIMARY);
+        verify(ollama, never()).embedReactive(anyString());
+        assertThat(routed("hedge") + routed("failover")).isZero();
+    }
+
+    @Test
+    void aSlowPrimaryIsHedgedToTheSecondary() {
+        when(huggingFace.embedReactive(anyString())).thenReturn(Mono.just(PRIMARY).delayElement(Duration.ofSeconds(2)));
+        when(ollama.embedReactive(anyString())).thenReturn(Mono.just(SECONDARY));
+
+        assertThat(embed()).isEqualTo(SECONDARY);
+        assertThat(routed("hedge")).isEqualTo(1);
+        assertThat(routed("backup_won")).isEqualTo(1);
+    }
+
+    @Test
+    void aFailingPrimaryFailsOverAndThenCoolsDown() {
+        when(huggingFace.embedReactive(anyString())).thenReturn(Mono.error(unavailable()));
+        when(ollama.embedReactive(anyString())).thenReturn(Mono.just(SECONDARY));
+
+        assertThat(embed()).isEqualTo(SECONDARY);
+        assertThat(routed("failover")).isEqualTo(1);
+
+        // In cooldown the secondary goes first and answers before the primary would be hedged to
+        assertThat(embed()).isEqualTo(SECONDARY);
+        verify(huggingFace, times(1)).embedReactive(anyString());
+        verify(ollama, times(2)).embedReactive(anyString());
+    }
+
+    @Test
+    void aNonTransientFailureFailsOverWithoutCooldown() {
+        when(huggingFace.embedReactive(anyString())).thenReturn(Mono.error(new IllegalArgumentException("bad input")));
+        when(ollama.embedReactive(anyString())).thenReturn(Mono.just(SECONDARY));
+
+        embed();
+        embed();
+
+        verify(huggingFace, times(2)).embedReactive(anyString());
+    }
+
+    @Test
+    void bothFailingSurfacesThePrimarysError() {
+        when(huggingFace.embedReactive(anyString())).thenReturn(Mono.error(new IllegalArgumentException("primary")));
+        when(ollama.embedReactive(anyString())).thenReturn(Mono.error(new IllegalStateException("secondary")));
+
+        assertThatThrownBy(this::embed).isInstanceOf(IllegalArgumentException.class).hasMessage("primary");
+        assertThat(router.embed("text")).isEmpty();
+    }
+
+    @Test
+    void aSecondaryInAnotherSpaceIsIgnored() {
+        ReflectionTestUtils.setField(router, "ollamaSpace", "nomic");
+        when(huggingFace.embedReactive(anyString())).thenReturn(Mono.error(unavailable()));
+
+        assertThatThrownBy(this::embed).isInstanceOf(WebClientResponseException.class);
+        verify(ollama, never()).embedReactive(anyString());
+        assertThat(router.space()).isEqualTo("e5");
+    }
+}
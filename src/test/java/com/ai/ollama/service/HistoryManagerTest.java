@@ -0,0 +1,138 @@
+package com.ai.ollama.service;
+
+import com.ai.ollama.model.ChatRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class HistoryManagerTest {
+
+    // Every message estimates to 14 tokens (40 chars + 4 for the role markers), as does a summary "S<n>"
+    private static final int BUDGET = 100;
+
+    record Call(String previous, List<String> turns) {}
+
+    private final List<Call> calls = new ArrayList<>();
+    private HistoryManager history;
+
+    @BeforeEach
+    void setUp() {
+        history = new HistoryManager(mock(ChatClient.Builder.class), null, new RagMetrics(new SimpleMeterRegistry()), 10) {
+            @Override
+            String summarize(String previous, List<ChatRequest.Message> turns, String model) {
+                calls.add(new Call(previous, turns.stream().map(m -> m.getContent().trim()).toList()));
+                return "S" + calls.size();
+            }
+        };
+        ReflectionTestUtils.setField(history, "enabled", true);
+        ReflectionTestUtils.setField(history, "defaultBudget", BUDGET);
+        ReflectionTestUtils.setField(history, "modelBudgets", "");
+        ReflectionTestUtils.setField(history, "keepRecent", 4);
+        ReflectionTestUtils.setField(history, "compactTo", 0.6);
+        ReflectionTestUtils.setField(history, "summaryModel", "");
+        ReflectionTestUtils.setField(history, "summaryTokens", 10);
+    }
+
+    private static ChatRequest.Message message(String role, String content) {
+        return new ChatRequest.Message(role, String.format("%-40s", content));
+    }
+
+    // Alternating user/assistant turns: the opener, then "turn 1", "turn 2", ...
+    private static ChatRequest conversation(String id, String opener, int turns) {
+        List<ChatRequest.Message> messages = new ArrayList<>();
+        for (int i = 0; i < turns; i++) {
+            messages.add(message(i % 2 == 0 ? "user" : "assistant", i == 0 ? opener : "turn " + i));
+        }
+        ChatRequest request = new ChatRequest();
+        request.setConversationId(id);
+        request.setMessages(messages);
+        return request;
+    }
+
+    private static List<String> contents(List<ChatRequest.Message> messages) {
+        return messages.stream().map(m -> m.getContent().trim()).toList();
+    }
+
+    @Test
+    void historyWithinBudgetIsSentAsIs() {
+        ChatRequest request = conversation("c1", "hello", 7);
+
+        assertThat(history.compact(request, "llama3.1")).isSameAs(request.getMessages());
+        assertThat(calls).isEmpty();
+    }
+
+    @Test
+    void compactionKeepsRecentTurnsWithinCompactToOfTheBudget() {
+        List<ChatRequest.Message> out = history.compact(conversation("c1", "hello", 10), "llama3.1");
+
+        // keep-recent would leave 4 turns (18 + 56 tokens > 60); 3 fit the low watermark
+        assertThat(calls).containsExactly(new Call(null, List.of("hello", "turn 1", "turn 2", "turn 3", "turn 4", "turn 5", "turn 6")));
+        assertThat(contents(out)).containsExactly("Summary of the earlier conversation:\nS1", "turn 7", "turn 8", "turn 9");
+        assertThat(HistoryManager.tokens(out)).isLessThanOrEqualTo(BUDGET);
+    }
+
+    @Test
+    void leadingSystemMessagesStayVerbatim() {
+        ChatRequest request = conversation("c1", "hello", 9);
+        List<ChatRequest.Message> messages = new ArrayList<>(request.getMessages());
+        messages.add(0, message("system", "be brief"));
+        request.setMessages(messages);
+
+        List<ChatRequest.Message> out = history.compact(request, "llama3.1");
+
+        assertThat(out.get(0).getRole()).isEqualTo("system");
+        assertThat(out.get(0).getContent().trim()).isEqualTo("be brief");
+        assertThat(calls.get(0).turns()).doesNotContain("be brief").startsWith("hello");
+        assertThat(contents(out).get(1)).isEqualTo("Summary of the earlier conversation:\nS1");
+    }
+
+    @Test
+    void summaryIsReusedUntilTheBudgetIsReachedAgainThenExtended() {
+        history.compact(conversation("c1", "hello", 10), "llama3.1");
+
+        // Two more turns still fit next to the cached summary
+        List<ChatRequest.Message> reused = history.compact(conversation("c1", "hello", 12), "llama3.1");
+        assertThat(calls).hasSize(1);
+        assertThat(contents(reused)).containsExactly("Summary of the earlier conversation:\nS1",
+                "turn 7", "turn 8", "turn 9", "turn 10", "turn 11");
+
+        // Past the budget only the newly evicted turns are folded into the summary
+        List<ChatRequest.Message> extended = history.compact(conversation("c1", "hello", 16), "llama3.1");
+        assertThat(calls).hasSize(2);
+        assertThat(calls.get(1)).isEqualTo(new Call("S1", List.of("turn 7", "turn 8", "turn 9", "turn 10", "turn 11", "turn 12")));
+        assertThat(contents(extended)).containsExactly("Summary of the earlier conversation:\nS2", "turn 13", "turn 14", "turn 15");
+    }
+
+    @Test
+    void rewrittenHistoryIsSummarizedAfresh() {
+        history.compact(conversation("c1", "hello", 10), "llama3.1");
+
+        history.compact(conversation("c1", "hello again", 12), "llama3.1");
+
+        assertThat(calls).hasSize(2);
+        assertThat(calls.get(1).previous()).isNull();
+        assertThat(calls.get(1).turns()).startsWith("hello again");
+    }
+
+    @Test
+    void conversationsWithoutIdSharingOnlyTheOpenerKeepSeparateSummaries() {
+        ChatRequest first = conversation(null, "hello", 10);
+        ChatRequest second = conversation(null, "hello", 10);
+        second.getMessages().set(1, message("assistant", "a different answer"));
+
+        history.compact(first, "llama3.1");
+        history.compact(second, "llama3.1");
+        history.compact(conversation(null, "hello", 12), "llama3.1");
+        history.compact(first, "llama3.1");
+
+        assertThat(calls).hasSize(2);
+    }
+}
@@ -0,0 +1,166 @@
+package com.ai.ollama.service;
+
+import com.ai.ollama.utils.DocumentSearch;
+import com.ai.ollama.utils.DocumentStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IndexSnapshotTest {
+
+    private static final String FINGERPRINT = "3:0123456789abcdef";
+    private static final List<String> QUERIES = List.of("refund invoice", "audit log retention", "deploy pipeline");
+
+    @TempDir
+    Path dir;
+
+    private Beans source;
+    private Path file;
+
+    // The beans a snapshot is written from or loaded into
+    private record Beans(DocumentStore store, DocumentSearch search, VectorIndex index, IndexSnapshot snapshot,
+                         DocumentIngestor ingestor) {}
+
+    private static Beans beans(String space, ChunkerFactory chunking) {
+        EmbeddingRouter router = mock(EmbeddingRouter.class);
+        when(router.space()).thenReturn(space);
+        when(router.embed(anyString())).thenAnswer(invocation -> embed(invocation.getArgument(0)));
+        DocumentStore store = new DocumentStore(false);
+        DocumentSearch search = new DocumentSearch(store, 8);
+        VectorIndex index = new VectorIndex(router, new RagMetrics(new SimpleMeterRegistry()), store, chunking);
+        return new Beans(store, search, index, new IndexSnapshot(store, search, index, router, chunking),
+                new DocumentIngestor(store, search, index));
+    }
+
+    private static ChunkerFactory chunking(int windowLines) {
+        return new ChunkerFactory("lines", 200, 400, windowLines, 1, 8);
+    }
+
+    // Deterministic stand-in for an embedding model: word counts hashed into 16 buckets
+    private static List<Double> embed(String text) {
+        double[] v = new double[16];
+        for (String w : text.toLowerCase().split("[^a-z]+")) {
+            if (!w.isEmpty()) v[Math.floorMod(w.hashCode(), v.length)]++;
+        }
+        return Arrays.stream(v).boxed().toList();
+    }
+
+    private static List<String> ranges(List<VectorIndex.SearchResult> results) {
+        List<String> out = new ArrayList<>();
+        for (VectorIndex.SearchResult r : results) out.add(r.docName + ":" + r.startLine + "-" + r.endLine + "@" + r.score);
+        return out;
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        source = beans("e5", chunking(4));
+        ingest(source, "billing/refunds.md", """
+                ---
+                tags: [billing, refunds]
+                ---
+                Refund an invoice within 14 days.
+                Refunds over 500 EUR need approval by finance.
+                The invoice number is on every refund.
+                Partial refunds are allowed.
+                """);
+        ingest(source, "ops/audit.md", """
+                Audit logs are kept for seven years.
+                Log retention is enforced by the archive job.
+                Retention of audit logs cannot be shortened.
+                """);
+        ingest(source, "ops/deploy.md", """
+                Every deploy runs the pipeline.
+                The pipeline deploys to staging first.
+                """);
+        file = dir.resolve("index/index-snapshot.bin");
+        source.snapshot().write(file, FINGERPRINT);
+    }
+
+    private static void ingest(Beans beans, String name, String text) throws IOException {
+        beans.ingestor().ingest(name, new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void aLoadedSnapshotAnswersLikeTheIndexesItWasWrittenFrom() throws IOException {
+        Beans loaded = beans("e5", chunking(4));
+
+        IndexSnapshot.Loaded result = loaded.snapshot().load(new FileSystemResource(file), FINGERPRINT);
+
+        assertThat(result.documents()).isEqualTo(3);
+        assertThat(result.chunks()).isEqualTo(source.index().size());
+        assertThat(result.mapped()).isTrue();
+        assertThat(loaded.store().lines("ops/audit.md")).isEqualTo(source.store().lines("ops/audit.md"));
+        assertThat(loaded.search().termCount()).isEqualTo(source.search().termCount());
+        for (List<String> keywords : List.of(List.of("refund"), List.of("\"audit logs\""), List.of("\"retention audit\"~3"),
+                List.of("pipeline", "invoice"))) {
+            assertThat(loaded.search().searchKeywords(keywords)).isNotEmpty().isEqualTo(source.search().searchKeywords(keywords));
+        }
+        for (String query : QUERIES) {
+            assertThat(ranges(loaded.index().search(query, 4))).isEqualTo(ranges(source.index().search(query, 4)));
+        }
+        MetadataFilter billing = MetadataFilter.parse(List.of("tag=billing"));
+        assertThat(ranges(loaded.index().search("invoice", 4, null, billing)))
+                .isNotEmpty()
+                .allMatch(r -> r.startsWith("billing/refunds.md:"))
+                .isEqualTo(ranges(source.index().search("invoice", 4, null, billing)));
+    }
+
+    @Test
+    void aSnapshotInsideTheJarIsReadIntoTheHeap() throws IOException {
+        Beans loaded = beans("e5", chunking(4));
+
+        IndexSnapshot.Loaded result = loaded.snapshot().load(new ByteArrayResource(Files.readAllBytes(file)), FINGERPRINT);
+
+        assertThat(result.mapped()).isFalse();
+        assertThat(ranges(loaded.index().search("refund invoice", 4))).isEqualTo(ranges(source.index().search("refund invoice", 4)));
+    }
+
+    @Test
+    void aSnapshotBuiltForOtherDocsSpaceOrChunkingIsIgnored() throws IOException {
+        FileSystemResource resource = new FileSystemResource(file);
+
+        assertThat(beans("e5", chunking(4)).snapshot().load(resource, "3:fedcba9876543210")).isNull();
+        assertThat(beans("nomic", chunking(4)).snapshot().load(resource, FINGERPRINT)).isNull();
+        Beans otherChunking = beans("e5", chunking(6));
+        assertThat(otherChunking.snapshot().load(resource, FINGERPRINT)).isNull();
+        assertThat(otherChunking.index().size()).isZero();
+        assertThat(otherChunking.store().documentNames()).isEmpty();
+    }
+
+    @Test
+    void missingForeignOrTruncatedFilesAreNotLoaded() throws IOException {
+        Beans loaded = beans("e5", chunking(4));
+        assertThat(loaded.snapshot().load(new FileSystemResource(dir.resolve("missing.bin")), FINGERPRINT)).isNull();
+
+        Path foreign = Files.writeString(dir.resolve("foreign.bin"), "not a snapshot");
+        assertThat(loaded.snapshot().load(new FileSystemResource(foreign), FINGERPRINT)).isNull();
+
+        byte[] bytes = Files.readAllBytes(file);
+        for (int length : new int[]{bytes.length - 4, bytes.length / 2}) {
+            Path truncated = Files.write(dir.resolve("truncated.bin"), Arrays.copyOf(bytes, length));
+            assertThatThrownBy(() -> loaded.snapshot().load(new FileSystemResource(truncated), FINGERPRINT))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageStartingWith("Truncated");
+        }
+        // Nothing is applied to the vector index before the whole file has parsed
+        assertThat(loaded.index().size()).isZero();
+    }
+}
@@ -0,0 +1,63 @@
+package com.ai.ollama.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MetadataFilterTest {
+
+    @Test
+    void parsesEveryOperatorWithTrimmedValuesAndLowercaseFields() {
+        MetadataFilter filter = MetadataFilter.parse(List.of(
+                "Collection = tenant-a", "tag=billing | invoices", "doc^=api/", "ext!=pdf|docx",
+                "modified>=2024-06-01", "size<10", "x.y_z>1", "w<=2"));
+
+        assertThat(filter.getClauses()).containsExactly(
+                new MetadataFilter.Clause("collection", MetadataFilter.Op.EQ, List.of("tenant-a")),
+                new MetadataFilter.Clause("tag", MetadataFilter.Op.EQ, List.of("billing", "invoices")),
+                new MetadataFilter.Clause("doc", MetadataFilter.Op.PREFIX, List.of("api/")),
+                new MetadataFilter.Clause("ext", MetadataFilter.Op.NE, List.of("pdf", "docx")),
+                new MetadataFilter.Clause("modified", MetadataFilter.Op.GE, List.of("2024-06-01")),
+                new MetadataFilter.Clause("size", MetadataFilter.Op.LT, List.of("10")),
+                new MetadataFilter.Clause("x.y_z", MetadataFilter.Op.GT, List.of("1")),
+                new MetadataFilter.Clause("w", MetadataFilter.Op.LE, List.of("2")));
+        assertThat(filter.toString()).startsWith("collection=tenant-a AND tag=billing|invoices AND doc^=api/");
+    }
+
+    @Test
+    void missingOrBlankExpressionsMeanNoFilter() {
+        assertThat(MetadataFilter.parse(null)).isSameAs(MetadataFilter.NONE);
+        assertThat(MetadataFilter.parse(List.of())).isSameAs(MetadataFilter.NONE);
+        assertThat(MetadataFilter.parse(Arrays.asList(" ", null))).isSameAs(MetadataFilter.NONE);
+        assertThat(MetadataFilter.NONE.isEmpty()).isTrue();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"tag", "tag=", "=billing", "1tag=x", "tag=|", "tag= | ", "tag~x", "modified>=2024-6-1",
+            "modified<yesterday", "size>1|2", "modified=notadate", "modified!=x", "modified=2024-06-01|later",
+            "modified^=2024"})
+    void rejectsInvalidExpressions(String expression) {
+        assertThatThrownBy(() -> MetadataFilter.parse(List.of("ext=md", expression)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void modifiedEqualityTakesValidTimes() {
+        MetadataFilter filter = MetadataFilter.parse(List.of("modified=2024-06-01|1717200000000", "modified!=2024-06-01T12:00:00Z"));
+
+        assertThat(filter.getClauses()).hasSize(2);
+    }
+
+    @Test
+    void timesParseAsIsoDatesInstantsOrEpochMillis() {
+        assertThat(MetadataFilter.parseTime("2024-06-01")).isEqualTo(1717200000000L);
+        assertThat(MetadataFilter.parseTime("2024-06-01T12:00:00Z")).isEqualTo(1717243200000L);
+        assertThat(MetadataFilter.parseTime("1717200000000")).isEqualTo(1717200000000L);
+    }
+}
@@ -0,0 +1,114 @@
+package com.ai.ollama.service;
+
+import com.ai.ollama.model.ChatResponse;
+import com.ai.ollama.model.RagRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RagJobServiceTest {
+
+    private final RagService ragService = mock(RagService.class);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger calls = new AtomicInteger();
+    private RagJobService jobs;
+
+    @BeforeEach
+    void setUp() {
+        // The first job blocks until released or interrupted, as RagService does while it waits on the model
+        when(ragService.chatWithDocs(any(), any())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == 1) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("RAG request cancelled");
+                }
+            }
+            return new ChatResponse("stub", "answer");
+        });
+        // One worker and one queue slot
+        jobs = new RagJobService(ragService, 1, 1, 60_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobs.stop();
+    }
+
+    private Map<String, Object> awaitStatus(String jobId, RagJobService.Status status) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        Map<String, Object> job = jobs.status(jobId);
+        while (job.get("status") != status && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            job = jobs.status(jobId);
+        }
+        assertThat(job.get("status")).isEqualTo(status);
+        return job;
+    }
+
+    private static String id(Map<String, Object> job) {
+        return (String) job.get("jobId");
+    }
+
+    @Test
+    void jobsRunToCompletion() throws InterruptedException {
+        release.countDown();
+        calls.set(1);
+
+        Map<String, Object> done = awaitStatus(id(jobs.submit(new RagRequest())), RagJobService.Status.DONE);
+
+        assertThat(((ChatResponse) done.get("response")).getResponse()).isEqualTo("answer");
+        assertThat(done.get("finishedAt")).isNotNull();
+    }
+
+    @Test
+    void cancellingAQueuedJobFreesItsSlotAndItNeverRuns() throws InterruptedException {
+        String running = id(jobs.submit(new RagRequest()));
+        awaitStatus(running, RagJobService.Status.RUNNING);
+        String queued = id(jobs.submit(new RagRequest()));
+        assertThatThrownBy(() -> jobs.submit(new RagRequest())).isInstanceOf(RejectedExecutionException.class);
+
+        assertThat(jobs.cancel(queued).get("status")).isEqualTo(RagJobService.Status.CANCELLED);
+        String next = id(jobs.submit(new RagRequest()));
+
+        release.countDown();
+        awaitStatus(running, RagJobService.Status.DONE);
+        awaitStatus(next, RagJobService.Status.DONE);
+        assertThat(calls).hasValue(2);
+        assertThat(jobs.status(queued).get("status")).isEqualTo(RagJobService.Status.CANCELLED);
+    }
+
+    @Test
+    void cancellingARunningJobInterruptsItAndFinishesItOnce() throws InterruptedException {
+        String running = id(jobs.submit(new RagRequest()));
+        awaitStatus(running, RagJobService.Status.RUNNING);
+
+        jobs.cancel(running);
+
+        Map<String, Object> cancelled = awaitStatus(running, RagJobService.Status.CANCELLED);
+        assertThat(cancelled.get("finishedAt")).isNotNull();
+        assertThat(cancelled.get("error")).isNull();
+        // A second cancel changes nothing
+        assertThat(jobs.cancel(running)).isEqualTo(cancelled);
+    }
+
+    @Test
+    void unknownJobsAreNull() {
+        assertThat(jobs.status("missing")).isNull();
+        assertThat(jobs.cancel("missing")).isNull();
+    }
+}
@@ -0,0 +1,52 @@
+package com.ai.ollama.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveCallsTest {
+
+    private static Throwable failure(Mono<?> mono) {
+        CompletableFuture<?> future = mono.toFuture();
+        return assertThat(future).failsWithin(Duration.ofSeconds(5))
+                .withThrowableOfType(ExecutionException.class)
+                .actual().getCause();
+    }
+
+    @Test
+    void theFirstValueWins() {
+        Mono<String> slow = Mono.just("slow").delayElement(Duration.ofSeconds(5));
+
+        assertThat(ReactiveCalls.firstWithValue(Mono.<String>empty(), Mono.just("b")).block()).isEqualTo("b");
+        assertThat(ReactiveCalls.firstWithValue(slow, Mono.just("b")).block()).isEqualTo("b");
+    }
+
+    @Test
+    void anEmptySourceDoesNotHideTheOtherSourcesFailure() {
+        Throwable error = failure(ReactiveCalls.firstWithValue(Mono.empty(), Mono.error(new TimeoutException("keywords"))));
+
+        assertThat(error).isInstanceOf(TimeoutException.class).hasMessage("keywords");
+        assertThat(error.getSuppressed()).isEmpty();
+    }
+
+    @Test
+    void bothFailingKeepsTheFirstErrorAndSuppressesTheSecond() {
+        Throwable error = failure(ReactiveCalls.firstWithValue(
+                Mono.error(new IllegalStateException("first")), Mono.error(new TimeoutException("second"))));
+
+        assertThat(error).isInstanceOf(IllegalStateException.class).hasMessage("first");
+        assertThat(error.getSuppressed()).singleElement().isInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    void bothEmptyFailsWithNoSuchElement() {
+        assertThat(failure(ReactiveCalls.firstWithValue(Mono.empty(), Mono.empty()))).isInstanceOf(NoSuchElementException.class);
+    }
+}
@@ -0,0 +1,147 @@
+package com.ai.ollama.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RerankerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private Reranker reranker;
+
+    // Stands in for /api/generate: the rating depends on the passage, "slow" passages miss the budget and
+    // "broken" ones fail
+    private static Mono<ClientResponse> generate(String body) {
+        String passage = body.substring(body.indexOf("Passage:"), body.indexOf("Rating:"));
+        if (passage.contains("broken")) return Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build());
+        String rating = passage.contains("alpha") ? "8" : passage.contains("delta") ? "2" : "10";
+        Mono<ClientResponse> response = Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body("{\"response\":\" " + rating + "\"}")
+                .build());
+        return passage.contains("slow") ? response.delayElement(Duration.ofSeconds(30)) : response;
+    }
+
+    @BeforeEach
+    void setUp() {
+        WebClient.Builder webClient = WebClient.builder().exchangeFunction(request -> {
+            MockClientHttpRequest captured = new MockClientHttpRequest(request.method(), request.url());
+            return request.writeTo(captured, ExchangeStrategies.withDefaults())
+                    .then(Mono.defer(captured::getBodyAsString))
+                    .flatMap(RerankerTest::generate);
+        });
+        ModelLifecycleManager models = mock(ModelLifecycleManager.class);
+        when(models.getKeepAlive()).thenReturn("5m");
+        reranker = new Reranker(webClient, models, new RagMetrics(registry));
+        ReflectionTestUtils.setField(reranker, "mode", "fusion");
+        ReflectionTestUtils.setField(reranker, "candidates", 24);
+        ReflectionTestUtils.setField(reranker, "keep", 4);
+        ReflectionTestUtils.setField(reranker, "budgetMs", 500L);
+        ReflectionTestUtils.setField(reranker, "lexicalWeight", 0.35);
+        ReflectionTestUtils.setField(reranker, "rerankModel", "reranker");
+        ReflectionTestUtils.setField(reranker, "concurrency", 4);
+        ReflectionTestUtils.setField(reranker, "baseUrl", "http://ollama");
+    }
+
+    private static VectorIndex.SearchResult hit(String doc, String snippet, double score) {
+        return new VectorIndex.SearchResult(doc, 1, 10, snippet, score);
+    }
+
+    private static List<String> docs(List<VectorIndex.SearchResult> results) {
+        return results.stream().map(r -> r.docName).toList();
+    }
+
+    private double fallbacks(String path) {
+        var counter = registry.find("rag.fallback").tag("path", path).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    @Test
+    void withoutLexicalWeightFusionKeepsTheCosineOrderRelativeToTheBest() {
+        List<VectorIndex.SearchResult> fused = Reranker.fuse(List.of("refund"), List.of(
+                hit("a.md", "refund policy", 0.40), hit("b.md", "shipping", 0.80), hit("c.md", "returns", 0.60)), 0.0);
+
+        assertThat(docs(fused)).containsExactly("b.md", "c.md", "a.md");
+        assertThat(fused.get(0).score).isEqualTo(1.0);
+        assertThat(fused.get(2).score).isEqualTo(0.5);
+    }
+
+    @Test
+    void rareQueryTermsOutweighCommonOnes() {
+        List<VectorIndex.SearchResult> candidates = List.of(
+                hit("common.md", "The invoice was sent.", 0.82),
+                hit("rare.md", "Refund the invoice within 14 days.", 0.80),
+                hit("none.md", "Unrelated text.", 0.81),
+                hit("also.md", "Another invoice.", 0.79));
+
+        List<VectorIndex.SearchResult> fused = Reranker.fuse(List.of("invoice refund", "of"), candidates, 0.5);
+
+        assertThat(docs(fused)).containsExactly("rare.md", "common.md", "also.md", "none.md");
+        // "of" is too short to count as a query term
+        assertThat(docs(Reranker.fuse(List.of("of"), candidates, 0.5))).containsExactly("common.md", "none.md", "rare.md", "also.md");
+    }
+
+    @Test
+    void offReturnsTheCandidatesUntouched() {
+        ReflectionTestUtils.setField(reranker, "mode", "off");
+        List<VectorIndex.SearchResult> candidates = List.of(hit("a.md", "x", 0.1), hit("b.md", "y", 0.9));
+
+        assertThat(reranker.candidateCount(8)).isEqualTo(8);
+        assertThat(reranker.rerank("q", List.of(), candidates)).isSameAs(candidates);
+    }
+
+    @Test
+    void fusionFetchesMoreCandidatesAndKeepsTheBest() {
+        List<VectorIndex.SearchResult> candidates = List.of(
+                hit("a.md", "x", 0.5), hit("b.md", "x", 0.9), hit("c.md", "x", 0.7), hit("d.md", "x", 0.6), hit("e.md", "x", 0.8));
+
+        assertThat(reranker.candidateCount(8)).isEqualTo(24);
+        assertThat(docs(reranker.rerank("q", List.of(), candidates))).containsExactly("b.md", "e.md", "c.md", "d.md");
+    }
+
+    @Test
+    void modelRatingsWithinTheBudgetGoFirstAndUnratedCandidatesFollowInFusedOrder() {
+        ReflectionTestUtils.setField(reranker, "mode", "model");
+        ReflectionTestUtils.setField(reranker, "keep", 5);
+        // Generous, since the first request also initializes the client
+        ReflectionTestUtils.setField(reranker, "budgetMs", 2000L);
+        List<VectorIndex.SearchResult> candidates = List.of(
+                hit("slow.md", "slow passage", 0.90),
+                hit("alpha.md", "alpha passage", 0.80),
+                hit("broken.md", "broken passage", 0.85),
+                hit("delta.md", "delta passage", 0.70),
+                hit("slow2.md", "slow passage too", 0.75));
+
+        List<VectorIndex.SearchResult> ranked = reranker.rerank("q", List.of(), candidates);
+
+        assertThat(docs(ranked)).containsExactly("alpha.md", "delta.md", "slow.md", "broken.md", "slow2.md");
+        assertThat(ranked.get(0).score).isEqualTo(1.8);
+        assertThat(fallbacks("rerank_partial")).isEqualTo(1);
+    }
+
+    @Test
+    void noRatingWithinTheBudgetFallsBackToTheFusedOrder() {
+        ReflectionTestUtils.setField(reranker, "mode", "model");
+        ReflectionTestUtils.setField(reranker, "budgetMs", 100L);
+        List<VectorIndex.SearchResult> candidates = List.of(hit("slow.md", "slow one", 0.6), hit("slow2.md", "slow two", 0.9));
+
+        assertThat(docs(reranker.rerank("q", List.of(), candidates))).containsExactly("slow2.md", "slow.md");
+        assertThat(fallbacks("rerank_budget")).isEqualTo(1);
+    }
+}
@@ -0,0 +1,97 @@
+package com.ai.ollama.service;
+
+import com.ai.ollama.utils.DocumentStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VectorIndexTest {
+
+    private final DocumentStore store = new DocumentStore(false);
+
+    private VectorIndex.SearchResult hit(String doc, int start, int end, double score) {
+        return new VectorIndex.SearchResult(doc, start, end, store, score);
+    }
+
+    private VectorIndex.SearchResult hit(String doc, int start, int end, double score, double... vector) {
+        return new VectorIndex.SearchResult(doc, start, end, store, score, vector);
+    }
+
+    private static List<String> ranges(List<VectorIndex.SearchResult> results) {
+        return results.stream().map(r -> r.docName + ":" + r.startLine + "-" + r.endLine + "@" + r.score).toList();
+    }
+
+    @Test
+    void overlappingAndTouchingRangesMergeUnderTheBestScore() {
+        List<VectorIndex.SearchResult> merged = VectorIndex.mergeOverlapping(List.of(
+                hit("a.md", 16, 35, 0.6),
+                hit("a.md", 1, 20, 0.8),
+                hit("a.md", 36, 40, 0.5),
+                hit("b.md", 1, 20, 0.9),
+                hit("a.md", 50, 60, 0.7)), 60);
+
+        assertThat(ranges(merged)).containsExactly("b.md:1-20@0.9", "a.md:1-40@0.8", "a.md:50-60@0.7");
+    }
+
+    @Test
+    void mergedRangesStopGrowingAtTheMaximumSpan() {
+        List<VectorIndex.SearchResult> windows = List.of(
+                hit("a.md", 1, 20, 0.9),
+                hit("a.md", 16, 35, 0.8),
+                hit("a.md", 31, 50, 0.7),
+                hit("a.md", 46, 65, 0.6),
+                hit("a.md", 61, 80, 0.5));
+
+        assertThat(ranges(VectorIndex.mergeOverlapping(windows, 40)))
+                .containsExactly("a.md:1-35@0.9", "a.md:31-65@0.7", "a.md:61-80@0.5");
+        // A single chunk longer than the span is kept as it is
+        assertThat(ranges(VectorIndex.mergeOverlapping(List.of(hit("a.md", 1, 100, 0.4)), 40)))
+                .containsExactly("a.md:1-100@0.4");
+    }
+
+    @Test
+    void eagerlyRenderedSnippetsAreNotMerged() {
+        List<VectorIndex.SearchResult> merged = VectorIndex.mergeOverlapping(List.of(
+                new VectorIndex.SearchResult("a.md", 1, 20, "rendered", 0.9),
+                hit("a.md", 10, 30, 0.5)), 60);
+
+        assertThat(ranges(merged)).containsExactly("a.md:1-20@0.9", "a.md:10-30@0.5");
+    }
+
+    @Test
+    void unionKeepsTheBetterScoreOfAChunkFoundTwice() {
+        List<VectorIndex.SearchResult> union = VectorIndex.union(
+                List.of(hit("a.md", 1, 20, 0.7), hit("b.md", 1, 20, 0.6)),
+                List.of(hit("a.md", 1, 20, 0.8), hit("c.md", 1, 20, 0.5)),
+                2, VectorIndex.SearchOptions.defaults());
+
+        assertThat(ranges(union)).containsExactly("a.md:1-20@0.8", "b.md:1-20@0.6");
+    }
+
+    @Test
+    void unionAppliesMmrAcrossBothLists() {
+        // The second list repeats near-duplicates of the first list's best chunk
+        List<VectorIndex.SearchResult> raw = List.of(hit("a.md", 1, 20, 0.90, 1, 0), hit("b.md", 1, 20, 0.80, 0, 1));
+        List<VectorIndex.SearchResult> keywords = List.of(hit("a.md", 41, 60, 0.89, 1, 0.01), hit("c.md", 1, 20, 0.88, 0.99, 0));
+
+        VectorIndex.SearchOptions options = VectorIndex.SearchOptions.defaults().mmr(0.5, 3);
+        assertThat(ranges(VectorIndex.union(raw, keywords, 2, options))).containsExactly("a.md:1-20@0.9", "b.md:1-20@0.8");
+        assertThat(ranges(VectorIndex.union(raw, keywords, 2, VectorIndex.SearchOptions.defaults())))
+                .containsExactly("a.md:1-20@0.9", "a.md:41-60@0.89");
+    }
+
+    @Test
+    void mmrPrefersDistinctChunksOverNearDuplicates() {
+        List<VectorIndex.SearchResult> candidates = List.of(
+                hit("a.md", 1, 20, 0.90, 1, 0, 0),
+                hit("a.md", 16, 35, 0.89, 0.99, 0.1, 0),
+                hit("b.md", 1, 20, 0.70, 0, 0, 1));
+
+        assertThat(ranges(VectorIndex.maximalMarginalRelevance(candidates, 2, 1.0)))
+                .containsExactly("a.md:1-20@0.9", "a.md:16-35@0.89");
+        assertThat(ranges(VectorIndex.maximalMarginalRelevance(candidates, 2, 0.5)))
+                .containsExactly("a.md:1-20@0.9", "b.md:1-20@0.7");
+    }
+}
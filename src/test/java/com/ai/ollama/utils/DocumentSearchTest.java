@@ -0,0 +1,152 @@
+package com.ai.ollama.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentSearchTest {
+
+    private DocumentSearch search;
+
+    @BeforeEach
+    void setUp() {
+        search = new DocumentSearch(new DocumentStore(false), 2);
+    }
+
+    @Test
+    void phraseMatchesConsecutiveTokensAcrossLines() {
+        search.indexDocument("a.md", List.of("The invoice must be", "approved by finance.", "Finance approved it."));
+
+        assertThat(search.searchKeywords(List.of("\"be approved by\""))).isEqualTo(Map.of("a.md", Set.of(1, 2)));
+        assertThat(search.searchKeywords(List.of("\"approved finance\""))).isEmpty();
+        assertThat(search.searchKeywords(List.of("\"by finance finance\""))).isEqualTo(Map.of("a.md", Set.of(2, 3)));
+    }
+
+    @Test
+    void phraseDoesNotMatchAcrossDocuments() {
+        search.indexDocument("a.md", List.of("closing the", "quarter"));
+        search.indexDocument("b.md", List.of("books are closed"));
+        search.indexDocument("c.md", List.of("the books"));
+
+        assertThat(search.searchKeywords(List.of("\"the books\""))).isEqualTo(Map.of("c.md", Set.of(1)));
+    }
+
+    @Test
+    void proximityMatchesWordsInAnyOrderWithinDistance() {
+        search.indexDocument("a.md", List.of("retention of audit logs is seven years"));
+        search.indexDocument("b.md", List.of("audit", "one two three four", "retention"));
+
+        assertThat(search.searchKeywords(List.of("\"audit retention\"~1"))).isEqualTo(Map.of("a.md", Set.of(1)));
+        assertThat(search.searchKeywords(List.of("\"audit retention\"~0"))).isEmpty();
+        assertThat(search.searchKeywords(List.of("\"audit retention\"~4")).keySet()).containsExactlyInAnyOrder("a.md", "b.md");
+        assertThat(search.searchKeywords(List.of("\"audit retention\"~4")).get("b.md")).containsExactlyInAnyOrder(1, 3);
+    }
+
+    @Test
+    void proximityCollectsEveryQualifyingWindowInADocument() {
+        search.indexDocument("a.md", List.of("alpha x beta", "filler filler filler filler", "gamma beta", "x alpha"));
+
+        // The second window spans lines 3 and 4
+        assertThat(search.searchKeywords(List.of("\"alpha beta\"~1"))).isEqualTo(Map.of("a.md", Set.of(1, 3, 4)));
+        assertThat(search.searchKeywords(List.of("\"alpha beta\"~0"))).isEmpty();
+        assertThat(search.searchKeywords(List.of("\"gamma alpha beta\"~1"))).isEqualTo(Map.of("a.md", Set.of(3, 4)));
+        assertThat(search.searchKeywords(List.of("\"alpha gamma\"~1"))).isEmpty();
+    }
+
+    @Test
+    void unquotedWordsFallBackFromPhraseToConfiguredProximity() {
+        search.indexDocument("a.md", List.of("logs for the audit are kept"));
+
+        // proximity is 2: "audit" and "logs" are two words apart
+        assertThat(search.searchKeywords(List.of("audit logs"))).isEqualTo(Map.of("a.md", Set.of(1)));
+        assertThat(search.searchKeywords(List.of("kept logs"))).isEmpty();
+    }
+
+    @Test
+    void misspelledWordsResolveToClosestTerm() {
+        search.indexDocument("a.md", List.of("quarterly reconciliation report"));
+
+        assertThat(search.searchKeywords(List.of("reconcilation"))).isEqualTo(Map.of("a.md", Set.of(1)));
+        assertThat(search.searchKeywords(List.of("\"quarterly reconcilation\""))).isEqualTo(Map.of("a.md", Set.of(1)));
+    }
+
+    @Test
+    void removedDocumentsAreNotFound() {
+        search.indexDocument("a.md", List.of("ledger entries"));
+        search.indexDocument("b.md", List.of("ledger totals and more words so nothing is compacted yet"));
+        search.removeDocument("a.md");
+
+        assertThat(search.searchKeywords(List.of("ledger"))).isEqualTo(Map.of("b.md", Set.of(1)));
+        assertThat(search.searchKeywords(List.of("\"ledger entries\""))).isEmpty();
+        assertThat(search.searchKeywords(List.of("\"ledger entries\"~3"))).isEmpty();
+    }
+
+    @Test
+    void termsOnlyLeftInRemovedDocumentsFallBackToLiveTerms() {
+        search.indexDocument("a.md", List.of("invoice"));
+        search.indexDocument("b.md", List.of("invoices are due within thirty days of receipt by the customer"));
+        search.removeDocument("a.md");
+
+        // "invoice" still has a tombstoned posting; the closest live term answers instead
+        assertThat(search.searchKeywords(List.of("invoice"))).isEqualTo(Map.of("b.md", Set.of(1)));
+        assertThat(search.searchKeywords(List.of("\"invoice are due\""))).isEqualTo(Map.of("b.md", Set.of(1)));
+    }
+
+    @Test
+    void reindexingReplacesTheDocument() {
+        search.indexDocument("a.md", List.of("alpha bravo", "gamma"));
+        search.indexDocument("a.md", List.of("gamma", "delta alpha"));
+
+        assertThat(search.searchKeywords(List.of("\"alpha bravo\""))).isEmpty();
+        assertThat(search.searchKeywords(List.of("bravo"))).isEmpty();
+        assertThat(search.searchKeywords(List.of("\"gamma delta\""))).isEqualTo(Map.of("a.md", Set.of(1, 2)));
+        assertThat(search.searchKeywords(List.of("alpha"))).isEqualTo(Map.of("a.md", Set.of(2)));
+    }
+
+    @Test
+    void repeatedReindexingCompactsTombstones() {
+        DocumentTrie trie = new DocumentTrie();
+        for (int round = 0; round < 50; round++) {
+            trie.removeDocument("a.md");
+            int id = trie.documentId("a.md");
+            char[] term = "status".toCharArray();
+            trie.add(trie.termId(term, term.length), id, round + 1);
+        }
+
+        assertThat(trie.searchDocuments("status")).isEqualTo(Map.of("a.md", List.of(50)));
+        assertThat(trie.searchPhrase(List.of("status"))).isEqualTo(Map.of("a.md", List.of(50)));
+    }
+
+    @Test
+    void seekFindsFirstEntryAtOrAfterTarget() {
+        Random random = new Random(7);
+        Postings p = new Postings();
+        int doc = 0;
+        int position = 0;
+        for (int i = 0; i < 2_000; i++) {
+            if (random.nextInt(10) == 0) {
+                doc += 1 + random.nextInt(3);
+                position = 0;
+            }
+            position += 1 + random.nextInt(4);
+            p.add(doc, 1, position);
+        }
+        for (int probe = 0; probe < 2_000; probe++) {
+            int from = random.nextInt(p.size + 1);
+            int targetDoc = random.nextInt(doc + 2);
+            int targetPosition = random.nextInt(200);
+            int expected = from;
+            while (expected < p.size && (p.docs[expected] < targetDoc
+                    || (p.docs[expected] == targetDoc && p.positions[expected] < targetPosition))) {
+                expected++;
+            }
+            assertThat(p.seek(from, targetDoc, targetPosition)).as("probe %d", probe).isEqualTo(expected);
+        }
+    }
+}
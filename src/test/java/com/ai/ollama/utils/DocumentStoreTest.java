@@ -0,0 +1,85 @@
+package com.ai.ollama.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentStoreTest {
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void linesRoundTripAcrossBlockBoundaries(boolean compress) {
+        DocumentStore store = new DocumentStore(compress);
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= DocumentStore.BLOCK_LINES * 2 + 3; i++) {
+            lines.add(i % 10 == 0 ? "" : "line " + i + " größe ✓");
+        }
+        store.put("a.md", lines);
+
+        assertThat(store.lineCount("a.md")).isEqualTo(lines.size());
+        assertThat(store.lines("a.md")).containsExactlyElementsOf(lines);
+        assertThat(store.line("a.md", DocumentStore.BLOCK_LINES)).isEqualTo("line 64 größe ✓");
+        assertThat(store.line("a.md", DocumentStore.BLOCK_LINES + 1)).isEqualTo("line 65 größe ✓");
+        assertThat(store.line("a.md", lines.size() + 1)).isNull();
+        assertThat(store.render("a.md", 64, 65)).isEqualTo("[line 64] line 64 größe ✓\n[line 65] line 65 größe ✓\n");
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void storesEmptyAndNullLines(boolean compress) {
+        DocumentStore store = new DocumentStore(compress);
+        DocumentStore.Writer writer = store.writer("a.md");
+        writer.addLine(null);
+        writer.addLine("");
+        writer.addLine("last");
+        writer.commit();
+        store.put("empty.md", List.of());
+
+        assertThat(store.lines("a.md")).containsExactly("", "", "last");
+        assertThat(store.lineCount("empty.md")).isZero();
+        assertThat(store.lines("empty.md")).isEmpty();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void storedBytesTrackTheStoredForm(boolean compress) {
+        DocumentStore store = new DocumentStore(compress);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) lines.add("the same repetitive line of text");
+        store.put("a.md", lines);
+
+        long raw = 32L * lines.size();
+        if (compress) {
+            assertThat(store.storedBytes()).isLessThan(raw / 4);
+        } else {
+            assertThat(store.storedBytes()).isGreaterThanOrEqualTo(raw);
+        }
+    }
+
+    @Test
+    void mappedDocumentIsUnaffectedByChangesToTheFile(@TempDir Path dir) throws IOException {
+        DocumentStore store = new DocumentStore(false);
+        ReflectionTestUtils.setField(store, "mapDir", dir.resolve("maps").toString());
+        Path file = dir.resolve("log.txt");
+        Files.writeString(file, "first line\r\nsecond line\nthird");
+        store.putMapped("log.txt", file);
+
+        // Truncated in place, as a rotated log is, before the change is applied
+        Files.writeString(file, "");
+
+        assertThat(store.lines("log.txt")).containsExactly("first line", "second line", "third");
+        try (var copies = Files.list(dir.resolve("maps"))) {
+            assertThat(copies).isEmpty();
+        }
+    }
+}
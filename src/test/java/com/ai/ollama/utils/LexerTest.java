@@ -0,0 +1,64 @@
+package com.ai.ollama.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LexerTest {
+
+    private static List<String> tokens(String input) {
+        List<String> out = new ArrayList<>();
+        new Lexer(input).forEachRemaining(out::add);
+        return out;
+    }
+
+    @Test
+    void splitsOnAnythingButLettersAndDigitsAndLowercases() {
+        assertThat(tokens("  Invoice #INV-2024/07, approved (by J.Smith)!"))
+                .containsExactly("invoice", "inv", "2024", "07", "approved", "by", "j", "smith");
+        assertThat(tokens("")).isEmpty();
+        assertThat(tokens(" ,;- ")).isEmpty();
+        assertThat(tokens(null)).isEmpty();
+    }
+
+    @Test
+    void keepsNonAsciiLettersDigitsAndSurrogatePairs() {
+        assertThat(tokens("Größe ÉTÉ naïve ١٢٣ 東京都 a😀b")).containsExactly("größe", "été", "naïve", "١٢٣", "東京都", "a😀b");
+    }
+
+    @Test
+    void advanceReusesOneBufferThatGrowsForLongTokens() {
+        String longWord = "x".repeat(100);
+        Lexer lexer = new Lexer("short " + longWord + " end");
+
+        assertThat(lexer.advance()).isTrue();
+        assertThat(new String(lexer.buffer(), 0, lexer.length())).isEqualTo("short");
+        assertThat(lexer.advance()).isTrue();
+        assertThat(new String(lexer.buffer(), 0, lexer.length())).isEqualTo(longWord);
+        assertThat(lexer.advance()).isTrue();
+        assertThat(new String(lexer.buffer(), 0, lexer.length())).isEqualTo("end");
+        assertThat(lexer.advance()).isFalse();
+        assertThat(lexer.length()).isZero();
+
+        lexer.reset("Again");
+        assertThat(lexer.next()).isEqualTo("again");
+        assertThat(lexer.hasNext()).isFalse();
+        assertThatThrownBy(lexer::next).isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void hasNextDoesNotConsumeTokens() {
+        Lexer lexer = new Lexer("one two");
+
+        assertThat(lexer.hasNext()).isTrue();
+        assertThat(lexer.hasNext()).isTrue();
+        assertThat(lexer.next()).isEqualTo("one");
+        assertThat(lexer.next()).isEqualTo("two");
+        assertThat(lexer.hasNext()).isFalse();
+    }
+}